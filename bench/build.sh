@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Construcción de las pruebas de rendimiento JMH (bench/target/benchmarks.jar) sin Maven ni red.
+#
+# Compila las fuentes del proyecto (src) junto con las pruebas (bench/src) usando el procesador de
+# anotaciones de JMH, que genera el código de cada prueba, y empaqueta todo con las dependencias de JMH
+# en un único JAR ejecutable.
+#
+# Los JAR de JMH se buscan en bench/lib y, si no están, en el repositorio local de Maven (~/.m2).
+# Basta con copiarlos una vez en bench/lib; a partir de ahí la construcción no necesita red:
+#   jmh-core-1.37.jar, jmh-generator-annprocess-1.37.jar, jopt-simple-5.0.4.jar, commons-math3-3.6.1.jar
+# Con --fetch se descargan de Maven Central a bench/lib (solo la primera vez).
+
+set -euo pipefail  # Termina si ocurre cualquier error, variable no definida o error en pipes.
+
+cd "$(dirname "$0")/.."  # Se ejecuta siempre desde la raíz del proyecto.
+
+JMH=1.37
+JARS=(
+  "org/openjdk/jmh/jmh-core/$JMH/jmh-core-$JMH.jar"
+  "org/openjdk/jmh/jmh-generator-annprocess/$JMH/jmh-generator-annprocess-$JMH.jar"
+  "net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar"
+  "org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+)
+
+mkdir -p bench/lib
+CP=""
+for j in "${JARS[@]}"; do
+  f="bench/lib/$(basename "$j")"
+  if [ ! -f "$f" ] && [ -f "$HOME/.m2/repository/$j" ]; then cp "$HOME/.m2/repository/$j" "$f"; fi
+  if [ ! -f "$f" ] && [ "${1:-}" = "--fetch" ]; then curl -fsSL -o "$f" "https://repo1.maven.org/maven2/$j"; fi
+  if [ ! -f "$f" ]; then
+    echo "Falta $f. Cópielo en bench/lib o ejecute 'bash bench/build.sh --fetch' con conexión." >&2
+    exit 1
+  fi
+  CP="$CP${CP:+:}$f"
+done
+
+rm -rf bench/target/classes
+mkdir -p bench/target/classes
+
+# Fuentes del proyecto y de las pruebas; el procesador de JMH genera las clases de cada @Benchmark
+find src bench/src -name '*.java' > bench/target/sources.list
+javac --release 11 -encoding UTF-8 -cp "$CP" -processorpath "$CP" -d bench/target/classes @bench/target/sources.list
+
+# JAR autónomo: se incluyen las clases de JMH y sus dependencias (sin firmas ni manifiestos ajenos)
+for j in "${JARS[@]}"; do
+  case "$j" in *annprocess*) continue;; esac
+  (cd bench/target/classes && jar xf "../../lib/$(basename "$j")")
+done
+rm -rf bench/target/classes/META-INF/MANIFEST.MF bench/target/classes/META-INF/*.SF bench/target/classes/META-INF/*.RSA bench/target/classes/META-INF/*.DSA
+
+jar cfe bench/target/benchmarks.jar org.openjdk.jmh.Main -C bench/target/classes .
+
+echo 'OK -> bench/target/benchmarks.jar (ejecutar con bash bench/run.sh)'
@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+# Ejecuta las pruebas de rendimiento JMH construidas con bench/build.sh.
+#
+# Mide el tiempo medio por operación y, con el perfilador gc de JMH, la memoria reservada
+# (gc.alloc.rate y gc.alloc.rate.norm: bytes por operación). Los resultados se guardan en JSON en
+# bench/results/<fecha>.json para compararlos entre versiones (p.ej. con https://jmh.morethan.io).
+#
+# Los argumentos se pasan a JMH. Ejemplos:
+#   bash bench/run.sh                                  # todas las pruebas
+#   bash bench/run.sh ParseBenchmark -p figuras=1000000 # solo lectura, con un millón de figuras
+#   bash bench/run.sh ExportBenchmark.svg -p perfil=completo -p mezcla=2:1:1
+
+set -euo pipefail  # Termina si ocurre cualquier error, variable no definida o error en pipes.
+
+cd "$(dirname "$0")/.."  # Se ejecuta siempre desde la raíz del proyecto.
+
+mkdir -p bench/results
+OUT="bench/results/$(date +%Y%m%d-%H%M%S).json"
+
+java -jar bench/target/benchmarks.jar -prof gc -rf json -rff "$OUT" "$@"
+
+echo "Resultados -> $OUT"
@@ -0,0 +1,21 @@
+package es.ad.r1;
+import java.io.*; import java.nio.ByteBuffer; import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Ida y vuelta por el formato BIN en memoria: se escribe la escena y se vuelve a leer completa.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinRoundTripBenchmark {
+
+    @Benchmark
+    public Escena idaYVuelta(EscenaBenchState s) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(s.bin.length);
+        BinSceneIO.write(s.escena, out);
+        return BinSceneIO.read(ByteBuffer.wrap(out.toByteArray()));
+    }
+}
@@ -0,0 +1,55 @@
+package es.ad.r1;
+import java.io.*; import java.nio.file.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Estado compartido de las pruebas JMH: una escena sintética (ver {@link SceneGenerator}) y la
+ * misma escena ya escrita en TXT, JSON y BIN, en memoria y en ficheros temporales.
+ *
+ * Parámetros (se cambian con -p nombre=valor):
+ * - figuras: número de figuras.
+ * - mezcla: pesos de rectángulos, círculos y líneas (p.ej. 2:1:1).
+ * - perfil: "simple" (sin atributos ni etiquetas) o "completo" (todas con atributos, la mitad con etiqueta).
+ */
+@State(Scope.Benchmark)
+public class EscenaBenchState {
+
+    @Param({ "100000" })
+    public int figuras;
+
+    @Param({ "1:1:1" })
+    public String mezcla;
+
+    @Param({ "simple", "completo" })
+    public String perfil;
+
+    Escena escena;
+    byte[] txt, json, bin;
+    Path dir, txtPath, jsonPath, binPath;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        String[] m = mezcla.split(":");
+        boolean completo = "completo".equals(perfil);
+        escena = new SceneGenerator(42, 10000, 10000)
+            .mezcla(Integer.parseInt(m[0]), Integer.parseInt(m[1]), Integer.parseInt(m[2]))
+            .atributos(completo ? 1 : 0).etiquetas(completo ? 0.5 : 0)
+            .escena(figuras);
+        dir = Files.createTempDirectory("escena-bench");
+        txtPath = dir.resolve("escena.txt"); jsonPath = dir.resolve("escena.json"); binPath = dir.resolve("escena.bin");
+        // El TXT se escribe con atributos y etiquetas para que el parser los procese
+        try (Writer w = Files.newBufferedWriter(txtPath)) {
+            w.write("dimensiones " + escena.getWidth() + " " + escena.getHeight() + "\n");
+            for (Figura f : escena.getFiguras()) { SceneGenerator.writeTxtLine(w, f); w.write('\n'); }
+        }
+        JsonSceneIO.write(escena, jsonPath, false);
+        BinSceneIO.serialize(escena, binPath);
+        txt = Files.readAllBytes(txtPath); json = Files.readAllBytes(jsonPath); bin = Files.readAllBytes(binPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        for (Path p : new Path[]{ txtPath, jsonPath, binPath }) Files.deleteIfExists(p);
+        Files.deleteIfExists(dir);
+    }
+}
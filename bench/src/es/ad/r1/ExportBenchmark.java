@@ -0,0 +1,48 @@
+package es.ad.r1;
+import java.io.*; import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Exportación de una escena en memoria a SVG, JSON, TXT y BIN. La salida se descarta (Writer y
+ * OutputStream nulos detrás del mismo FastWriter que usa la exportación a fichero), así que solo
+ * se mide la codificación y no el disco.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+
+    @Benchmark
+    public void svg(EscenaBenchState s) throws IOException {
+        try (Writer w = new FastWriter(Writer.nullWriter())) { SvgSceneIO.write(s.escena, w); }
+    }
+
+    @Benchmark
+    public void svgCss(EscenaBenchState s) throws IOException {
+        try (Writer w = new FastWriter(Writer.nullWriter())) {
+            SceneEncoder.encode(s.escena, new SvgSceneIO.Encoder(w, null, 1, SvgSceneIO.clases(s.escena)));
+        }
+    }
+
+    @Benchmark
+    public void json(EscenaBenchState s) throws IOException {
+        try (Writer w = new FastWriter(Writer.nullWriter())) { JsonSceneIO.write(s.escena, w, false); }
+    }
+
+    @Benchmark
+    public void jsonCompacto(EscenaBenchState s) throws IOException {
+        try (Writer w = new FastWriter(Writer.nullWriter())) { JsonSceneIO.write(s.escena, w, true); }
+    }
+
+    @Benchmark
+    public void txt(EscenaBenchState s) throws IOException {
+        try (Writer w = new FastWriter(Writer.nullWriter())) { TxtSceneIO.write(s.escena, w); }
+    }
+
+    @Benchmark
+    public void bin(EscenaBenchState s) throws IOException {
+        try (OutputStream o = new BufferedOutputStream(OutputStream.nullOutputStream(), 1 << 16)) { BinSceneIO.write(s.escena, o); }
+    }
+}
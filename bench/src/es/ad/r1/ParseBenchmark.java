@@ -0,0 +1,35 @@
+package es.ad.r1;
+import java.io.*; import java.nio.ByteBuffer; import java.nio.charset.StandardCharsets; import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Lectura de escenas: TXT (secuencial y en paralelo, desde fichero y desde un Reader), JSON y BIN.
+ * Cada operación lee la escena completa; el resultado se devuelve para que JMH no lo descarte.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Benchmark
+    public ParseResult txtFichero(EscenaBenchState s) throws IOException { return TxtSceneIO.parse(s.txtPath); }
+
+    @Benchmark
+    public ParseResult txtParalelo(EscenaBenchState s) throws IOException { return TxtSceneIO.parseParallel(s.txtPath); }
+
+    @Benchmark
+    public ParseResult txtColumnar(EscenaBenchState s) throws IOException { return TxtSceneIO.parseColumnar(s.txtPath); }
+
+    @Benchmark
+    public ParseResult txtReader(EscenaBenchState s) throws IOException {
+        return TxtSceneIO.parse(new InputStreamReader(new ByteArrayInputStream(s.txt), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public ParseResult json(EscenaBenchState s) throws IOException { return JsonSceneIO.read(s.jsonPath); }
+
+    @Benchmark
+    public Escena bin(EscenaBenchState s) throws IOException { return BinSceneIO.read(ByteBuffer.wrap(s.bin)); }
+}
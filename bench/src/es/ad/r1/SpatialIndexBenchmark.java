@@ -0,0 +1,118 @@
+package es.ad.r1;
+import java.util.*; import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Consultas sobre {@link SpatialIndex}: ventana (viewport de 1024x768), hit-test y los 10 vecinos más
+ * cercanos en puntos aleatorios, y construcción del índice. La escena es aleatoria (reproducible) y por
+ * columnas, con una densidad parecida en cualquier tamaño (~1 figura por cada 1000 px²).
+ *
+ * Al preparar la escena, las primeras consultas se comprueban contra un recorrido lineal de todas las
+ * figuras; si alguna no coincide la prueba falla.
+ *
+ * Parámetros (se cambian con -p nombre=valor):
+ * - figuras: número de figuras (con 10000000 hace falta -jvmArgs -Xmx3g).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+    /** Escena, índice y puntos de consulta precalculados (se recorren en orden). */
+    @State(Scope.Benchmark)
+    public static class Indice {
+        /** Puntos de consulta distintos */
+        private static final int PUNTOS = 4096;
+        /** Consultas que se comprueban contra el recorrido lineal */
+        private static final int COMPROBADAS = 20;
+
+        @Param({ "1000000" })
+        public int figuras;
+
+        EscenaColumnar escena;
+        SpatialIndex indice;
+        int lado;
+        int[] x = new int[PUNTOS], y = new int[PUNTOS];
+        double[] px = new double[PUNTOS], py = new double[PUNTOS];
+        private int siguiente;
+
+        @Setup(Level.Trial)
+        public void preparar(){
+            lado = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(1000, (long) Math.sqrt(figuras * 1000.0)));
+            Random rnd = new Random(42);
+            escena = new EscenaColumnar(lado, lado, figuras);
+            for (int i = 0; i < figuras; i++) {
+                int x = rnd.nextInt(lado), y = rnd.nextInt(lado), sw = rnd.nextInt(5);
+                int fill = rnd.nextBoolean() ? rnd.nextInt(1 << 24) : ColorRGB.NONE;
+                Figura f;
+                switch (rnd.nextInt(3)) {
+                    case 0: f = new Rectangulo(x, y, 1 + rnd.nextInt(40), 1 + rnd.nextInt(40), 0); f.setFillRgb(fill); break;
+                    case 1: f = new Circulo(x, y, 1 + rnd.nextInt(20), 0); f.setFillRgb(fill); break;
+                    default: f = new Linea(x, y, x + rnd.nextInt(81) - 40, y + rnd.nextInt(81) - 40, 0);
+                }
+                f.setStrokeWidth(sw); f.setStrokeOpacity(1.0); f.setFillOpacity(1.0);
+                escena.add(f);
+            }
+            indice = SpatialIndex.build(escena);
+            Random q = new Random(2);
+            for (int i = 0; i < PUNTOS; i++) { x[i] = q.nextInt(lado); y[i] = q.nextInt(lado); px[i] = q.nextDouble() * lado; py[i] = q.nextDouble() * lado; }
+            for (int i = 0; i < COMPROBADAS; i++) {
+                if (!comprobar(escena, indice.query(x[i], y[i], x[i] + 1023, y[i] + 767), x[i], y[i], x[i] + 1023, y[i] + 767,
+                               indice.hitTest(px[i], py[i]), indice.nearest(px[i], py[i], 10), px[i], py[i]))
+                    throw new IllegalStateException("La consulta " + i + " no coincide con el recorrido lineal");
+            }
+        }
+
+        /** @return Posición del siguiente punto de consulta. */
+        int siguiente(){ int i = siguiente; siguiente = (i + 1) & (PUNTOS - 1); return i; }
+    }
+
+    @Benchmark
+    public int[] ventana(Indice s){
+        int i = s.siguiente();
+        return s.indice.query(s.x[i], s.y[i], s.x[i] + 1023, s.y[i] + 767);
+    }
+
+    @Benchmark
+    public int hitTest(Indice s){
+        int i = s.siguiente();
+        return s.indice.hitTest(s.px[i], s.py[i]);
+    }
+
+    @Benchmark
+    public int[] vecinos(Indice s){
+        int i = s.siguiente();
+        return s.indice.nearest(s.px[i], s.py[i], 10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SpatialIndex construir(Indice s){
+        SpatialIndex idx = SpatialIndex.build(s.escena);
+        idx.detach();
+        return idx;
+    }
+
+    // Repite las consultas recorriendo todas las figuras
+    private static boolean comprobar(EscenaColumnar e, int[] ventana, int x0, int y0, int x1, int y1, int hit, int[] knn, double px, double py){
+        List<Integer> esperadas = new ArrayList<>();
+        int esperadoHit = -1;
+        double[] dist = new double[e.size()];
+        List<Figura> figuras = e.getFiguras();
+        for (int i = 0; i < e.size(); i++) {
+            Figura f = figuras.get(i);
+            int m = f.getStrokeMargin();
+            if ((long) f.getMinX() - m <= x1 && (long) f.getMaxX() + m >= x0 && (long) f.getMinY() - m <= y1 && (long) f.getMaxY() + m >= y0) esperadas.add(i);
+            if (f.hitTest(px, py)) esperadoHit = i;
+            dist[i] = Math.max(0, f.distanceTo(px, py) - Math.max(0, f.getStrokeWidth()) / 2.0);
+        }
+        boolean ok = esperadoHit == hit && esperadas.equals(Arrays.stream(ventana).boxed().collect(java.util.stream.Collectors.toList()));
+        // Vecinos: mismas distancias (los empates pueden resolverse con otra figura)
+        double[] orden = dist.clone();
+        Arrays.sort(orden);
+        for (int j = 0; j < knn.length; j++) ok &= dist[knn[j]] == orden[j];
+        return ok && knn.length == Math.min(10, e.size());
+    }
+}
@@ -0,0 +1,175 @@
+package es.ad.r1;
+import java.io.*; import java.nio.file.*; import java.util.*; import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean; import java.util.stream.*;
+
+/**
+ * Conversión por lotes de un directorio (o un patrón glob) de escenas.
+ *
+ * Cada fichero (.txt, .json o .bin) se lee, se valida y se exporta a todos los formatos en su
+ * propio subdirectorio de salida, igual que import-txt, pero todos los ficheros se procesan en
+ * la misma JVM y en un pool de hilos configurable, sin pagar el arranque y el calentamiento de
+ * la JVM por cada fichero. Muestra el rendimiento de cada fichero y el total, y escribe un único
+ * validacion.txt con los informes de todos los ficheros.
+ */
+public class BatchConverter {
+
+    /** Extensiones que se procesan al recibir un directorio */
+    static final String[] EXTENSIONES = { ".txt", ".json", ".bin" };
+
+    /** Resultado de procesar un fichero. */
+    static final class Resultado {
+        final Path in;
+        /** OK, ERRORES (validación), FALLO (excepción) u OMITIDO (tras --fail-fast) */
+        String estado = "OMITIDO";
+        String informe = "";
+        int figuras;
+        long bytes, nanos;
+        Resultado(Path in){ this.in = in; }
+        boolean fallido(){ return "ERRORES".equals(estado) || "FALLO".equals(estado); }
+    }
+
+    private BatchConverter(){}
+
+    /**
+     * Procesa todos los ficheros de entrada.
+     *
+     * @param input    Directorio o patrón glob (p.ej. data/*.txt).
+     * @param out      Directorio de salida (un subdirectorio por fichero).
+     * @param threads  Número de hilos de trabajo.
+     * @param failFast true para no empezar más ficheros tras el primero con errores.
+     * @param args     Argumentos de la línea de comandos (se pasan a la lectura, p.ej. --parallel).
+     * @return Número de ficheros con errores o fallidos.
+     * @throws IOException Si no se puede leer la entrada o escribir el resumen.
+     */
+    public static int run(String input, Path out, int threads, boolean failFast, String[] args) throws IOException {
+        List<Path> files = entradas(input);
+        Files.createDirectories(out);
+        if (files.isEmpty()) { System.out.println("No hay escenas en " + input); return 0; }
+        Map<Path,String> bases = bases(files);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        AtomicBoolean parar = new AtomicBoolean();
+        List<Future<Resultado>> futuros = new ArrayList<>();
+        long t0 = System.nanoTime();
+        try {
+            for (Path f : files) futuros.add(pool.submit(() -> procesar(f, out.resolve(bases.get(f)), bases.get(f), failFast, parar, args)));
+            List<Resultado> res = new ArrayList<>();
+            for (Future<Resultado> fu : futuros) {
+                try { res.add(fu.get()); }
+                catch (InterruptedException ex) { Thread.currentThread().interrupt(); throw new InterruptedIOException(); }
+                catch (ExecutionException ex) { throw new IOException(ex.getCause()); }
+            }
+            return resumen(res, out, System.nanoTime() - t0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Lista los ficheros de un directorio o los que cumplen un patrón glob, ordenados por nombre
+    static List<Path> entradas(String input) throws IOException {
+        Path p = Paths.get(input);
+        if (Files.isDirectory(p)) {
+            try (Stream<Path> s = Files.list(p)) {
+                return s.filter(f -> Files.isRegularFile(f) && esEscena(f)).sorted().collect(Collectors.toList());
+            }
+        }
+        // Patrón: directorio fijo + glob sobre la parte final (p.ej. data/*.txt)
+        Path dir = p.getParent() != null ? p.getParent() : Paths.get(".");
+        String glob = p.getFileName() != null ? p.getFileName().toString() : "*";
+        if (!Files.isDirectory(dir)) throw new NoSuchFileException(input);
+        PathMatcher m = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(f -> Files.isRegularFile(f) && m.matches(f.getFileName())).sorted().collect(Collectors.toList());
+        }
+    }
+
+    static boolean esEscena(Path f){
+        String n = f.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String ext : EXTENSIONES) if (n.endsWith(ext)) return true;
+        return false;
+    }
+
+    // Nombre base de cada fichero (sin extensión); si dos coinciden se conserva la extensión
+    private static Map<Path,String> bases(List<Path> files){
+        Map<String,Integer> usos = new HashMap<>();
+        for (Path f : files) usos.merge(sinExtension(f), 1, Integer::sum);
+        Map<Path,String> bases = new HashMap<>();
+        for (Path f : files) {
+            String b = sinExtension(f);
+            bases.put(f, usos.get(b) > 1 ? f.getFileName().toString().replace('.', '_') : b);
+        }
+        return bases;
+    }
+
+    static String sinExtension(Path f){
+        String n = f.getFileName().toString();
+        int dot = n.lastIndexOf('.');
+        return dot > 0 ? n.substring(0, dot) : n;
+    }
+
+    // Lee, valida y exporta un fichero en su subdirectorio
+    private static Resultado procesar(Path in, Path dir, String base, boolean failFast, AtomicBoolean parar, String[] args) {
+        Resultado r = new Resultado(in);
+        if (parar.get()) return r;
+        long t0 = System.nanoTime();
+        try {
+            r.bytes = Files.size(in);
+            ParseResult pr = Main.leer(in, args, Main.salidas(dir, base));
+            ValidationReport rep = pr.getReport();
+            r.informe = rep.toText();
+            r.figuras = pr.getEscena().getFiguras().size();
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve("validacion.txt"), r.informe);
+            if (rep.hasErrors()) {
+                r.estado = "ERRORES";
+            } else {
+                Main.exportAll(pr.getEscena(), dir, base);
+                r.estado = "OK";
+            }
+        } catch (Exception ex) {
+            r.estado = "FALLO";
+            r.informe = "[ERROR] " + ex + "\n";
+        }
+        r.nanos = System.nanoTime() - t0;
+        if (failFast && r.fallido()) parar.set(true);
+        synchronized (System.out) {
+            System.out.println(String.format(Locale.ROOT, "[%s] %s: %d figuras, %s en %.1f ms (%s)",
+                r.estado, in.getFileName(), r.figuras, tamano(r.bytes), r.nanos / 1e6, ritmo(r.bytes, r.figuras, r.nanos)));
+        }
+        return r;
+    }
+
+    // Escribe el validacion.txt conjunto e imprime el total; devuelve los ficheros fallidos
+    private static int resumen(List<Resultado> res, Path out, long nanos) throws IOException {
+        int ok = 0, errores = 0, fallos = 0, omitidos = 0, figuras = 0;
+        long bytes = 0;
+        StringBuilder sb = new StringBuilder();
+        for (Resultado r : res) {
+            switch (r.estado) {
+                case "OK": ok++; break;
+                case "ERRORES": errores++; break;
+                case "FALLO": fallos++; break;
+                default: omitidos++;
+            }
+            if (!"OMITIDO".equals(r.estado)) { figuras += r.figuras; bytes += r.bytes; }
+            sb.append("== ").append(r.in).append(" [").append(r.estado).append("]\n").append(r.informe).append('\n');
+        }
+        String total = String.format(Locale.ROOT, "%d ficheros: %d OK, %d con errores, %d fallidos, %d omitidos. %d figuras, %s en %.2f s (%s)",
+            res.size(), ok, errores, fallos, omitidos, figuras, tamano(bytes), nanos / 1e9, ritmo(bytes, figuras, nanos));
+        sb.append("== Total\n").append(total).append('\n');
+        Path val = out.resolve("validacion.txt");
+        Files.writeString(val, sb.toString());
+        System.out.println("Total: " + total);
+        System.out.println("Resumen de validación en " + val.toAbsolutePath());
+        return errores + fallos;
+    }
+
+    private static String tamano(long bytes){
+        return bytes < 1024 * 1024 ? String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0)
+            : String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private static String ritmo(long bytes, int figuras, long nanos){
+        double s = Math.max(nanos, 1) / 1e9;
+        return String.format(Locale.ROOT, "%.1f MB/s, %.0f figuras/s", bytes / (1024.0 * 1024) / s, figuras / s);
+    }
+}
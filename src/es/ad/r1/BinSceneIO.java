@@ -1,51 +1,364 @@
 package es.ad.r1;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntFunction;
 
 /**
  * Clase de utilidades para la serialización y deserialización binaria de objetos Escena.
- * 
- * Permite guardar una instancia de Escena en un archivo y recuperarla posteriormente,
- * utilizando la serialización estándar de Java. Los métodos usan streams con buffering
- * para mejorar el rendimiento en operaciones de disco.
+ *
+ * Guarda la escena en un formato binario compacto y versionado:
+ * <pre>
+ *   cabecera : magic "ESCB" (int), versión (short), flags (short), ancho, alto, nº de figuras (int)
+ *   figuras  : un registro de tamaño fijo por figura (RECORD_SIZE bytes)
+ *              tipo (byte), 4 coordenadas (int), stroke, fill (color empaquetado, int),
+ *              grosor (int), opacidad de borde y de relleno (double), índice de etiqueta (int, -1 = sin etiqueta)
+ *   etiquetas: nº de cadenas (int) y, para cada una, longitud (int) y bytes UTF-8
+ * </pre>
+ * Los colores que no son #rrggbb (p.ej. "red" o "#FF0000", ver {@link Figura#setStroke(String)}) se
+ * guardan en la misma tabla de cadenas que las etiquetas y el registro lleva ColorRGB.TEXTO | índice.
+ * Los registros de tamaño fijo permiten localizar cualquier figura sin leer las anteriores y las
+ * etiquetas repetidas se guardan una sola vez. Los ficheros antiguos generados con la serialización
+ * estándar de Java se siguen pudiendo leer. Los métodos usan streams y buffers para mejorar el
+ * rendimiento en operaciones de disco.
  */
 public class BinSceneIO {
 
+    /** Identificador del formato ("ESCB") */
+    static final int MAGIC = 0x45534342;
+    /** Versión actual del formato */
+    static final short VERSION = 1;
+    /** Tamaño de la cabecera en bytes */
+    static final int HEADER_SIZE = 20;
+    /** Tamaño de cada registro de figura en bytes */
+    static final int RECORD_SIZE = 49;
+    /** Tipos de figura en los registros */
+    static final byte RECT = 1, CIRC = 2, LINEA = 3;
+    /** Cabecera de un flujo de serialización estándar de Java (formato antiguo) */
+    private static final int JAVA_STREAM_MAGIC = 0xACED0005;
+
     /**
      * Serializa un objeto Escena y lo guarda en el archivo especificado.
      * Si el directorio padre del archivo no existe, lo crea automáticamente.
-     * 
+     *
      * @param e   La instancia de Escena a serializar.
      * @param out Ruta del archivo destino donde se guardará el objeto.
      * @throws IOException Si ocurre un error de E/S durante la operación.
      */
     public static void serialize(Escena e, Path out) throws IOException {
+        try (SceneEncoder enc = encoder(out)) {
+            SceneEncoder.encode(e, enc);
+        }
+    }
+
+    /**
+     * Escribe la escena en formato binario en un flujo de salida (no lo cierra).
+     *
+     * @param e   Escena a escribir.
+     * @param out Flujo de salida.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, OutputStream out) throws IOException {
+        SceneEncoder.encode(e, new Encoder(out));
+    }
+
+    /**
+     * Crea un codificador binario que escribe en el archivo indicado.
+     * Si el directorio padre del archivo no existe, lo crea automáticamente.
+     *
+     * @param out Ruta del archivo destino.
+     * @return Codificador; al cerrarlo se cierra el archivo.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public static SceneEncoder encoder(Path out) throws IOException {
         Path parent = out.getParent();
         if (parent != null) Files.createDirectories(parent);
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new BufferedOutputStream(
-                        Files.newOutputStream(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
-                )
-        )) {
-            oos.writeObject(e);
+        return new Encoder(new BufferedOutputStream(
+            Files.newOutputStream(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 16));
+    }
+
+    /**
+     * Codificador binario en streaming: la cabecera lleva el número de figuras anunciado en
+     * begin, los registros se escriben según llegan y la tabla de etiquetas al terminar.
+     */
+    static final class Encoder implements SceneEncoder {
+        private final DataOutputStream dos;
+        private final Map<String,Integer> indices = new HashMap<>();
+        private final List<String> etiquetas = new ArrayList<>();
+        /** Figuras anunciadas en la cabecera y figuras escritas */
+        private int count, n;
+
+        Encoder(OutputStream out){ this.dos = new DataOutputStream(out); }
+
+        @Override
+        public void begin(int width, int height, int count) throws IOException {
+            this.count = count;
+            dos.writeInt(MAGIC);
+            dos.writeShort(VERSION);
+            dos.writeShort(0);
+            dos.writeInt(width);
+            dos.writeInt(height);
+            dos.writeInt(count);
+        }
+
+        @Override
+        public void figura(Figura f) throws IOException {
+            writeFigura(dos, f, indices, etiquetas);
+            n++;
+        }
+
+        @Override
+        public void end() throws IOException {
+            if (n != count) throw new IOException("Se han escrito " + n + " figuras y la cabecera indica " + count);
+            writeLabels(dos, etiquetas);
+            dos.flush();
+        }
+
+        @Override
+        public void close() throws IOException { dos.close(); }
+    }
+
+    // Escribe el registro de tamaño fijo de una figura; su etiqueta y sus colores de texto se añaden a la tabla de cadenas
+    static void writeFigura(DataOutput out, Figura f, Map<String,Integer> indices, List<String> tabla) throws IOException {
+        int lbl = f.getLabel() != null ? indice(f.getLabel(), indices, tabla) : -1;
+        if (f instanceof Rectangulo) {
+            Rectangulo r = (Rectangulo) f;
+            out.writeByte(RECT); out.writeInt(r.x); out.writeInt(r.y); out.writeInt(r.width); out.writeInt(r.height);
+        } else if (f instanceof Circulo) {
+            Circulo c = (Circulo) f;
+            out.writeByte(CIRC); out.writeInt(c.cx); out.writeInt(c.cy); out.writeInt(c.r); out.writeInt(0);
+        } else if (f instanceof Linea) {
+            Linea l = (Linea) f;
+            out.writeByte(LINEA); out.writeInt(l.x1); out.writeInt(l.y1); out.writeInt(l.x2); out.writeInt(l.y2);
+        } else {
+            throw new IOException("Tipo de figura no soportado: " + f.getClass().getName());
+        }
+        out.writeInt(color(f.getStrokeRgb(), f.getStroke(), indices, tabla));
+        out.writeInt(color(f.getFillRgb(), f.getFill(), indices, tabla));
+        out.writeInt(f.getStrokeWidth());
+        out.writeDouble(f.getStrokeOpacity());
+        out.writeDouble(f.getFillOpacity());
+        out.writeInt(lbl);
+    }
+
+    // Índice de una cadena en la tabla, añadiéndola si es nueva
+    private static int indice(String s, Map<String,Integer> indices, List<String> tabla){
+        Integer idx = indices.get(s);
+        if (idx == null) { idx = tabla.size(); indices.put(s, idx); tabla.add(s); }
+        return idx;
+    }
+
+    // Color tal como se guarda en el registro: un color de texto pasa a TEXTO | índice en la tabla de cadenas
+    private static int color(int c, String texto, Map<String,Integer> indices, List<String> tabla){
+        return ColorRGB.isTexto(c) ? ColorRGB.TEXTO | indice(texto, indices, tabla) : c;
+    }
+
+    // Cadena k de la tabla; un índice fuera de la tabla indica un fichero corrupto
+    private static String cadena(IntFunction<String> labels, int k) throws IOException {
+        try {
+            return labels.apply(k);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Índice de etiqueta no válido: " + k, ex);
+        }
+    }
+
+    // Escribe la tabla de etiquetas al final del fichero
+    static void writeLabels(DataOutput out, List<String> etiquetas) throws IOException {
+        out.writeInt(etiquetas.size());
+        for (String s : etiquetas) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
         }
     }
 
     /**
      * Deserializa un objeto Escena desde el archivo especificado.
-     * 
+     * Acepta el formato binario actual y el formato antiguo de serialización estándar de Java.
+     *
      * @param in Ruta del archivo origen desde donde se leerá el objeto.
      * @return La instancia de Escena recuperada del archivo.
-     * @throws IOException Si ocurre un error de E/S o si la clase no se encuentra.
+     * @throws IOException Si ocurre un error de E/S, el formato no se reconoce o la clase no se encuentra.
      */
     public static Escena deserialize(Path in) throws IOException {
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new BufferedInputStream(
-                        Files.newInputStream(in, StandardOpenOption.READ)
-                )
-        )) {
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            while (head.hasRemaining() && ch.read(head) >= 0) { }
+            head.flip();
+            if (head.remaining() >= 4 && head.getInt(0) == JAVA_STREAM_MAGIC) return deserializeLegacy(in);
+            int count = checkHeader(head);
+            Escena e = new Escena(head.getInt(8), head.getInt(12));
+            // Tabla de etiquetas (tras los registros) y después los registros por bloques
+            long labelsPos = HEADER_SIZE + (long) count * RECORD_SIZE;
+            if (ch.size() < labelsPos + 4) throw new EOFException("Fichero BIN truncado");
+            String[] etiquetas = readLabels(ch.map(FileChannel.MapMode.READ_ONLY, labelsPos, ch.size() - labelsPos));
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            ch.position(HEADER_SIZE);
+            for (int i = 0; i < count; ) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), (long) (count - i) * RECORD_SIZE));
+                while (buf.hasRemaining()) if (ch.read(buf) < 0) throw new EOFException("Fichero BIN truncado");
+                buf.flip();
+                for (; buf.hasRemaining(); i++) e.add(readFigura(buf, k -> etiquetas[k]));
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Abre una escena binaria proyectando el fichero en memoria, sin decodificar las figuras.
+     * Las dimensiones y el número de figuras están disponibles al instante; cada figura se
+     * decodifica desde el MappedByteBuffer solo cuando se accede a ella (get o iteración),
+     * por lo que el tiempo de apertura y la memoria usada dependen de lo que se consulta y no
+     * del tamaño del fichero. La escena devuelta es de solo lectura.
+     * Los ficheros en el formato antiguo (serialización Java) se leen completos con {@link #deserialize(Path)}.
+     *
+     * @param in Ruta del archivo BIN.
+     * @return Escena de solo lectura respaldada por el fichero.
+     * @throws IOException Si ocurre un error de E/S o el formato no es válido.
+     */
+    public static Escena open(Path in) throws IOException {
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            while (head.hasRemaining() && ch.read(head) >= 0) { }
+            head.flip();
+            if (head.remaining() >= 4 && head.getInt(0) == JAVA_STREAM_MAGIC) return deserializeLegacy(in);
+            int count = checkHeader(head);
+            long labelsPos = HEADER_SIZE + (long) count * RECORD_SIZE;
+            if (ch.size() < labelsPos + 4) throw new EOFException("Fichero BIN truncado");
+            return new MappedEscena(ch, head.getInt(8), head.getInt(12), count, labelsPos);
+        }
+    }
+
+    /**
+     * Lee una escena en formato binario desde un buffer en memoria (posición 0).
+     *
+     * @param buf Buffer con el contenido completo del fichero.
+     * @return Escena leída.
+     * @throws IOException Si el formato no es válido.
+     */
+    public static Escena read(ByteBuffer buf) throws IOException {
+        if (buf.remaining() >= 4 && buf.getInt(buf.position()) == JAVA_STREAM_MAGIC) {
+            byte[] b = new byte[buf.remaining()];
+            buf.get(b);
+            return deserializeLegacy(new ByteArrayInputStream(b));
+        }
+        return readActual(buf);
+    }
+
+    /**
+     * Como {@link #read(ByteBuffer)} pero solo acepta el formato binario actual: el formato antiguo
+     * (serialización Java) se rechaza sin deserializar nada. Es la lectura para datos no fiables
+     * (p.ej. los recibidos por red en SceneServer).
+     *
+     * @param buf Buffer con el contenido completo del fichero.
+     * @return Escena leída.
+     * @throws IOException Si el formato no es el binario actual o no es válido.
+     */
+    static Escena readActual(ByteBuffer buf) throws IOException {
+        if (buf.remaining() >= 4 && buf.getInt(buf.position()) == JAVA_STREAM_MAGIC)
+            throw new IOException("Formato BIN antiguo (serialización Java) no admitido");
+        ByteBuffer b = buf.slice();
+        int count = checkHeader(b);
+        Escena e = new Escena(b.getInt(8), b.getInt(12));
+        long labelsPos = HEADER_SIZE + (long) count * RECORD_SIZE;
+        if (b.limit() < labelsPos + 4) throw new EOFException("Fichero BIN truncado");
+        b.position((int) labelsPos);
+        String[] etiquetas = readLabels(b.slice());
+        b.position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) e.add(readFigura(b, k -> etiquetas[k]));
+        return e;
+    }
+
+    // Comprueba magic y versión; devuelve el número de figuras
+    static int checkHeader(ByteBuffer head) throws IOException {
+        if (head.limit() < HEADER_SIZE || head.getInt(0) != MAGIC) throw new IOException("Formato BIN desconocido");
+        short v = head.getShort(4);
+        if (v != VERSION) throw new IOException("Versión de formato BIN no soportada: " + v);
+        int count = head.getInt(16);
+        if (count < 0) throw new IOException("Número de figuras no válido: " + count);
+        return count;
+    }
+
+    // Lee la tabla de etiquetas desde la posición actual del buffer. Los tamaños se comprueban contra
+    // los bytes que quedan antes de reservar nada: un fichero corrupto no puede pedir más memoria que su tamaño
+    static String[] readLabels(ByteBuffer b) throws IOException {
+        try {
+            int n = b.getInt();
+            if (n < 0 || n > b.remaining() / 4) throw new IOException("Tabla de etiquetas no válida: " + n + " cadenas");
+            String[] out = new String[n];
+            for (int i = 0; i < out.length; i++) {
+                int len = b.getInt();
+                if (len < 0 || len > b.remaining()) throw new IOException("Tabla de etiquetas no válida: cadena de " + len + " bytes");
+                byte[] s = new byte[len];
+                b.get(s);
+                out[i] = new String(s, StandardCharsets.UTF_8);
+            }
+            return out;
+        } catch (RuntimeException ex) {
+            throw new IOException("Tabla de etiquetas no válida", ex);
+        }
+    }
+
+    /**
+     * Decodifica el registro de figura situado en la posición actual del buffer y avanza RECORD_SIZE bytes.
+     *
+     * @param b      Buffer posicionado al inicio de un registro.
+     * @param labels Resuelve el índice de etiqueta a su texto.
+     * @return Figura decodificada.
+     * @throws IOException Si el tipo de figura no es válido.
+     */
+    static Figura readFigura(ByteBuffer b, IntFunction<String> labels) throws IOException {
+        Figura f = readFigura(b, b.position(), labels);
+        b.position(b.position() + RECORD_SIZE);
+        return f;
+    }
+
+    /**
+     * Decodifica el registro de figura que empieza en la posición absoluta pos, sin mover el buffer.
+     *
+     * @param b      Buffer con los registros.
+     * @param pos    Posición del registro.
+     * @param labels Resuelve el índice de etiqueta a su texto.
+     * @return Figura decodificada.
+     * @throws IOException Si el tipo de figura no es válido.
+     */
+    static Figura readFigura(ByteBuffer b, int pos, IntFunction<String> labels) throws IOException {
+        byte tipo = b.get(pos);
+        int a = b.getInt(pos+1), c = b.getInt(pos+5), d = b.getInt(pos+9), g = b.getInt(pos+13), stroke = b.getInt(pos+17), fill = b.getInt(pos+21);
+        Figura f;
+        switch (tipo) {
+            case RECT:  f = new Rectangulo(a, c, d, g, stroke); break;
+            case CIRC:  f = new Circulo(a, c, d, stroke); break;
+            case LINEA: f = new Linea(a, c, d, g, stroke); break;
+            default: throw new IOException("Tipo de figura desconocido en BIN: " + tipo);
+        }
+        // Los colores de texto (TEXTO | índice) se resuelven en la tabla de cadenas
+        if (ColorRGB.isTexto(stroke)) f.setStroke(cadena(labels, stroke & ~ColorRGB.TEXTO)); else f.setStrokeRgb(stroke);
+        if (ColorRGB.isTexto(fill)) f.setFill(cadena(labels, fill & ~ColorRGB.TEXTO)); else f.setFillRgb(fill);
+        f.setStrokeWidth(b.getInt(pos+25));
+        f.setStrokeOpacity(b.getDouble(pos+29));
+        f.setFillOpacity(b.getDouble(pos+37));
+        int lbl = b.getInt(pos+45);
+        if (lbl >= 0) f.setLabel(cadena(labels, lbl));
+        return f;
+    }
+
+    // Lee un fichero antiguo generado con ObjectOutputStream
+    private static Escena deserializeLegacy(Path in) throws IOException {
+        try (InputStream is = Files.newInputStream(in, StandardOpenOption.READ)) {
+            return deserializeLegacy(is);
+        }
+    }
+
+    // Lee una escena con la serialización estándar de Java (formato anterior a la versión 1)
+    private static Escena deserializeLegacy(InputStream in) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(in))) {
             try {
                 return (Escena) ois.readObject();
             } catch (ClassNotFoundException ex) {
@@ -1,4 +1,5 @@
 package es.ad.r1;
+import java.io.IOException;
 
 /**
  * Representa una figura geométrica de tipo círculo.
@@ -17,6 +18,8 @@ public class Circulo extends Figura {
     public int cy;
     /** Radio del círculo */
     public int r;
+    /** Color de borde por defecto */
+    public static final int DEFAULT_STROKE = 0x1a73e8;
 
     /**
      * Constructor del círculo.
@@ -24,61 +27,77 @@ public class Circulo extends Figura {
      * @param cx    Coordenada X del centro.
      * @param cy    Coordenada Y del centro.
      * @param r     Radio del círculo.
-     * @param color Color del borde (stroke). Si es nulo, se usa un color por defecto.
+     * @param color Color del borde (stroke), que se conserva tal cual aunque no sea #RRGGBB. Si es nulo, se usa un color por defecto.
      */
     public Circulo(int cx, int cy, int r, String color) {
+        this(cx, cy, r, DEFAULT_STROKE);
+        if (color != null) setStroke(color);
+    }
+
+    /**
+     * Constructor del círculo con el color ya empaquetado.
+     * 
+     * @param cx    Coordenada X del centro.
+     * @param cy    Coordenada Y del centro.
+     * @param r     Radio del círculo.
+     * @param color Color del borde (0xRRGGBB). Si no es un color RGB (p.ej. ColorRGB.INVALID), se usa el color por defecto.
+     */
+    public Circulo(int cx, int cy, int r, int color) {
         this.cx = cx;
         this.cy = cy;
         this.r = r;
-        this.stroke = color != null ? color : "#1a73e8";
+        this.stroke = ColorRGB.isRgb(color) ? color : DEFAULT_STROKE;
     }
 
     /**
-     * Devuelve una representación en texto plano del círculo.
-     * @return Cadena con los datos del círculo.
+     * Escribe la representación en texto plano del círculo en el destino.
+     * @param out Destino de la salida.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String toTxt() {
-        return String.format("circulo %d %d %d %s", cx, cy, r, stroke);
+    public void writeTxt(Appendable out) throws IOException {
+        out.append("circulo "); Fmt.num(out, cx); out.append(' '); Fmt.num(out, cy);
+        out.append(' '); Fmt.num(out, r); out.append(' '); ColorRGB.append(out, stroke, strokeTexto);
     }
 
     /**
-     * Devuelve una representación SVG del círculo.
-     * @return Cadena SVG que describe el círculo.
+     * Escribe la representación SVG del círculo en el destino.
+     * @param out   Destino de la salida.
+     * @param clase Clase CSS con el estilo, o null para escribirlo en atributos.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String toSvg() {
-        return String.format(
-            "<circle cx=\"%d\" cy=\"%d\" r=\"%d\" stroke=\"%s\" stroke-width=\"%d\" stroke-opacity=\"%s\" fill=\"%s\" fill-opacity=\"%s\"/>",
-            cx, cy, r, stroke, strokeWidth, fmt01(strokeOpacity), fill, fmt01(fillOpacity)
-        );
+    public void writeSvg(Appendable out, String clase) throws IOException {
+        out.append("<circle cx=\""); Fmt.num(out, cx); out.append("\" cy=\""); Fmt.num(out, cy);
+        out.append("\" r=\""); Fmt.num(out, r);
+        out.append('"'); writeStyleAttrs(out, clase, true); out.append("/>");
     }
 
     /**
-     * Devuelve una etiqueta SVG para el círculo, mostrando su descripción.
-     * @return Cadena SVG con la etiqueta del círculo.
+     * Escribe la etiqueta SVG del círculo en el destino, mostrando su descripción.
+     * @param out Destino de la salida.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String labelSvg() {
-        String t = label != null ? label : String.format("Circ (%d,%d,r=%d)", cx, cy, r);
-        return String.format("<text class=\"lbl\" x=\"%d\" y=\"%d\">%s</text>", cx + r + 8, cy, esc(t));
+    public void writeLabelSvg(Appendable out) throws IOException {
+        openLabel(out, cx + r + 8, cy);
+        if (label != null) Fmt.xml(out, label);
+        else {
+            out.append("Circ ("); Fmt.num(out, cx); out.append(','); Fmt.num(out, cy);
+            out.append(",r="); Fmt.num(out, r); out.append(')');
+        }
+        out.append("</text>");
     }
 
-    /**
-     * Normaliza un valor double entre 0 y 1 para atributos SVG.
-     * @param v Valor a normalizar.
-     * @return Cadena con el valor entre 0 y 1.
-     */
-    private String fmt01(double v) {
-        return String.valueOf(Math.max(0, Math.min(1, v)));
-    }
+    @Override public int getMinX(){ return sat((long) cx - Math.abs((long) r)); }
+    @Override public int getMinY(){ return sat((long) cy - Math.abs((long) r)); }
+    @Override public int getMaxX(){ return sat((long) cx + Math.abs((long) r)); }
+    @Override public int getMaxY(){ return sat((long) cy + Math.abs((long) r)); }
 
-    /**
-     * Escapa caracteres especiales para texto SVG.
-     * @param s Cadena a escapar.
-     * @return Cadena escapada.
-     */
-    private String esc(String s) {
-        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    /** Distancia al círculo: 0 dentro si tiene relleno; si no, a la circunferencia. */
+    @Override
+    public double distanceTo(double px, double py){
+        double d = Math.hypot(px - cx, py - cy) - Math.abs((double) r);
+        return fill != ColorRGB.NONE ? Math.max(0, d) : Math.abs(d);
     }
 }
@@ -0,0 +1,152 @@
+package es.ad.r1;
+
+/**
+ * Utilidades para colores empaquetados en un int (0xRRGGBB).
+ *
+ * Las figuras guardan sus colores como enteros de 24 bits en lugar de cadenas "#RRGGBB":
+ * el color se valida y decodifica una sola vez al leerlo y los escritores (TXT, SVG, JSON)
+ * lo vuelven a formatear a partir del entero. El valor especial {@link #NONE} representa
+ * el relleno "none".
+ *
+ * Los colores que no se pueden empaquetar sin cambiarlos (un nombre como "red", "#FF0000" en
+ * mayúsculas o cualquier otro texto aceptado) se conservan tal cual: el valor empaquetado es
+ * {@link #TEXTO} y el texto original lo guarda quien tiene el color (la figura o la escena), que
+ * lo pasa a {@link #append(Appendable, int, String)} al escribirlo. No hay ninguna tabla global.
+ */
+public final class ColorRGB {
+
+    /** Sin color ("none"), usado para el relleno. */
+    public static final int NONE = -1;
+    /** Resultado de parse cuando el texto no es un color #RRGGBB. */
+    public static final int INVALID = -2;
+
+    /**
+     * Color guardado como texto original. Los formatos que guardan el texto aparte (BIN,
+     * EscenaColumnar) usan los bits bajos para el índice del texto en su tabla: ver {@link #isTexto(int)}.
+     */
+    public static final int TEXTO = 0x40000000;
+
+    /** Valor de cada dígito hexadecimal ASCII, o -1 si el carácter no lo es. */
+    private static final byte[] HEX = new byte[128];
+    /** Dígitos hexadecimales en minúsculas para formatear. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    static {
+        java.util.Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 10; i++) HEX['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) { HEX['a' + i] = (byte) (10 + i); HEX['A' + i] = (byte) (10 + i); }
+    }
+
+    private ColorRGB(){}
+
+    /**
+     * Decodifica un color #RRGGBB.
+     * @param s Texto del color.
+     * @return Color empaquetado, o {@link #INVALID} si no tiene el formato #RRGGBB.
+     */
+    public static int parse(CharSequence s){
+        if (s.length() != 7 || s.charAt(0) != '#') return INVALID;
+        int v = 0, bad = 0;
+        for (int i = 1; i < 7; i++) {
+            char c = s.charAt(i);
+            int d = c < 128 ? HEX[c] : -1;
+            bad |= d; v = (v << 4) | (d & 15);
+        }
+        return bad < 0 ? INVALID : v;
+    }
+
+    /**
+     * Decodifica un color #RRGGBB directamente sobre un buffer de caracteres.
+     * @return Color empaquetado, o {@link #INVALID} si la región [s,e) no es un color.
+     */
+    static int parse(char[] b, int s, int e){
+        if (e - s != 7 || b[s] != '#') return INVALID;
+        int v = 0, bad = 0;
+        for (int i = s + 1; i < e; i++) {
+            char c = b[i];
+            int d = c < 128 ? HEX[c] : -1;
+            bad |= d; v = (v << 4) | (d & 15);
+        }
+        return bad < 0 ? INVALID : v;
+    }
+
+    /**
+     * Indica si un color se puede empaquetar sin cambiar su texto: #rrggbb con los dígitos en minúsculas.
+     * Los demás (p.ej. "red" o "#FF0000") se guardan como {@link #TEXTO} con el texto original aparte.
+     * @param s Texto del color.
+     * @return true si {@link #parse(CharSequence)} lo empaqueta y {@link #toString(int)} lo devuelve igual.
+     */
+    public static boolean exacto(String s){
+        if (parse(s) == INVALID) return false;
+        for (int i = 1; i < 7; i++) if (s.charAt(i) >= 'A' && s.charAt(i) <= 'F') return false;
+        return true;
+    }
+
+    /**
+     * Como {@link #exacto(String)} sobre la región [s,e) de un buffer ya decodificada con parse.
+     * @param c Resultado de {@link #parse(char[], int, int)} para la región.
+     */
+    static boolean exacto(char[] b, int s, int e, int c){
+        if (c == INVALID) return false;
+        for (int i = s + 1; i < e; i++) if (b[i] >= 'A' && b[i] <= 'F') return false;
+        return true;
+    }
+
+    /** @return true si el valor es un color guardado como texto original (con o sin índice en los bits bajos). */
+    public static boolean isTexto(int c){ return (c & 0xC0000000) == TEXTO; }
+
+    /**
+     * Convierte un texto #RRGGBB en color.
+     * @param s Texto "#RRGGBB".
+     * @return Color empaquetado.
+     * @throws IllegalArgumentException Si el texto no es un color válido.
+     */
+    public static int rgb(String s){
+        int c = parse(s);
+        if (c == INVALID) throw new IllegalArgumentException("Color no válido: " + s);
+        return c;
+    }
+
+    /**
+     * Convierte un texto en color, aceptando también "none".
+     * @param s Texto "#RRGGBB" o "none".
+     * @return Color empaquetado o {@link #NONE}.
+     * @throws IllegalArgumentException Si el texto no es un color válido.
+     */
+    public static int valueOf(String s){
+        return "none".equals(s) ? NONE : rgb(s);
+    }
+
+    /** @return true si el valor es un color RGB (no NONE ni INVALID). */
+    public static boolean isRgb(int c){ return (c & 0xFF000000) == 0; }
+
+    /** @return Color en formato "#rrggbb" o "none" (también para un color de texto, cuyo texto no se conoce aquí). */
+    public static String toString(int c){
+        if (!isRgb(c)) return "none";
+        char[] out = new char[7];
+        out[0] = '#';
+        for (int i = 6; i >= 1; i--) { out[i] = DIGITS[c & 15]; c >>>= 4; }
+        return new String(out);
+    }
+
+    /**
+     * Color como texto: el texto original si es un color de texto, si no como {@link #toString(int)}.
+     * @param texto Texto original del color (solo se usa si c es {@link #TEXTO}).
+     */
+    public static String toString(int c, String texto){ return isTexto(c) && texto != null ? texto : toString(c); }
+
+    /** Añade el color ("#rrggbb" o "none") al destino sin crear cadenas intermedias. */
+    public static void append(Appendable out, int c) throws java.io.IOException {
+        if (!isRgb(c)) { out.append("none"); return; }
+        out.append('#');
+        for (int sh = 20; sh >= 0; sh -= 4) out.append(DIGITS[(c >>> sh) & 15]);
+    }
+
+    /**
+     * Añade el color al destino: el texto original si es un color de texto, si no como {@link #append(Appendable, int)}.
+     * @param texto Texto original del color (solo se usa si c es {@link #TEXTO}).
+     */
+    public static void append(Appendable out, int c, String texto) throws java.io.IOException {
+        if (isTexto(c) && texto != null) out.append(texto); else append(out, c);
+    }
+}
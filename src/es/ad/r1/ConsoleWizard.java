@@ -101,7 +101,7 @@ public class ConsoleWizard {
             System.out.print(label + " [" + def + "]: ");
             String s = sc.next().trim();
             if (s.isEmpty()) return def;
-            if (s.matches("#[0-9a-fA-F]{6}")) return s;
+            if (ColorRGB.parse(s) != ColorRGB.INVALID) return s;
             System.out.println("→ Formato #RRGGBB.");
         }
     }
@@ -116,7 +116,10 @@ public class ConsoleWizard {
     private void style(Scanner sc, Figura f) {
         System.out.print("fill (#RRGGBB|none) [" + f.getFill() + "]: ");
         String fill = sc.next().trim();
-        if (!fill.isEmpty()) f.setFill(fill);
+        if (!fill.isEmpty()) {
+            if ("none".equals(fill) || ColorRGB.parse(fill) != ColorRGB.INVALID) f.setFill(fill);
+            else System.out.println("→ Formato #RRGGBB o none.");
+        }
 
         System.out.print("sw (grosor) [" + f.getStrokeWidth() + "]: ");
         String sw = sc.next().trim();
@@ -1,6 +1,7 @@
 package es.ad.r1;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * Representa una escena gráfica compuesta por figuras geométricas.
@@ -17,6 +18,8 @@ public class Escena implements Serializable {
     private int height;
     /** Lista de figuras que forman la escena */
     private List<Figura> figuras = new ArrayList<>();
+    /** Observadores avisados con el índice de cada figura añadida (p.ej. un SpatialIndex); no se serializan */
+    private transient List<IntConsumer> observadores;
 
     /**
      * Constructor de la escena.
@@ -32,6 +35,13 @@ public class Escena implements Serializable {
     /** @return Alto de la escena en píxeles */
     public int getHeight(){ return height; }
 
+    /**
+     * Cambia el tamaño de la escena (los formatos en los que puede llegar después de las figuras, como JSON).
+     * @param width  Ancho de la escena.
+     * @param height Alto de la escena.
+     */
+    void setDimensiones(int width, int height){ this.width=width; this.height=height; }
+
     /** @return Lista de figuras de la escena */
     public List<Figura> getFiguras(){ return figuras; }
 
@@ -39,5 +49,22 @@ public class Escena implements Serializable {
      * Añade una figura a la escena.
      * @param f Figura a añadir.
      */
-    public void add(Figura f){ figuras.add(f); }
+    public void add(Figura f){ figuras.add(f); notificar(figuras.size()-1); }
+
+    /**
+     * Registra un observador que recibe el índice de cada figura añadida con {@link #add(Figura)}.
+     * @param l Observador.
+     */
+    public void addListener(IntConsumer l){
+        if (observadores == null) observadores = new ArrayList<>();
+        observadores.add(l);
+    }
+
+    /** @param l Observador a quitar. */
+    public void removeListener(IntConsumer l){ if (observadores != null) observadores.remove(l); }
+
+    /** Avisa a los observadores de que se ha añadido la figura index. */
+    protected void notificar(int index){
+        if (observadores != null) for (IntConsumer l : observadores) l.accept(index);
+    }
 }
@@ -0,0 +1,286 @@
+package es.ad.r1;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Escena con almacenamiento por columnas para escenas muy grandes.
+ *
+ * En lugar de un objeto Figura por figura, guarda cada atributo en un array de primitivos:
+ * el tipo (byte), las cuatro coordenadas, los colores empaquetados y el grosor (int), y las
+ * etiquetas como índice a un diccionario de textos distintos (los colores que no son #rrggbb
+ * guardan ColorRGB.TEXTO | índice a otro diccionario de la escena). Las opacidades suelen tomar muy
+ * pocos valores, así que se guardan como índice de 16 bits a una paleta de doubles (o como
+ * double si hay más de 65536 valores distintos), con el valor exacto para que la exportación
+ * sea idéntica. Una figura ocupa unos 37 bytes en lugar de los más de 100 de un objeto Figura,
+ * sin contar las etiquetas.
+ *
+ * {@link #getFiguras()} devuelve una vista de lista que construye cada Figura al acceder a ella,
+ * de modo que los escritores existentes funcionan sin cambios. Las figuras devueltas son copias:
+ * para modificar una figura hay que volver a asignarla con set. Los recorridos que solo necesitan
+ * los datos pueden usar los accesores por índice sin crear objetos (p.ej. SpatialIndex); los
+ * lectores y escritores de formatos siguen pasando por una Figura temporal por figura, así que
+ * lo que se ahorra es memoria retenida, no memoria reservada.
+ */
+public final class EscenaColumnar extends Escena {
+    private static final long serialVersionUID = 1L;
+
+    /** Códigos de tipo de figura (los mismos que en el formato BIN) */
+    public static final byte RECTANGULO = BinSceneIO.RECT, CIRCULO = BinSceneIO.CIRC, LINEA = BinSceneIO.LINEA;
+
+    /** Número de figuras */
+    private int n;
+    private byte[] tipos;
+    /** Coordenadas: x, y, width, height / cx, cy, r, 0 / x1, y1, x2, y2 */
+    private int[] a, b, c, d;
+    private int[] strokes, fills, grosores;
+    private final Paleta strokeOpacities = new Paleta(), fillOpacities = new Paleta();
+    /** Índice de la etiqueta de cada figura en el diccionario (-1 = sin etiqueta) */
+    private int[] etiquetas;
+    /** Diccionario de etiquetas distintas */
+    private final Diccionario textos = new Diccionario();
+    /** Diccionario de los textos de color que no son #rrggbb */
+    private final Diccionario colores = new Diccionario();
+    /** Vista de lista sobre las columnas */
+    private transient List<Figura> vista;
+
+    /**
+     * @param width  Ancho de la escena.
+     * @param height Alto de la escena.
+     */
+    public EscenaColumnar(int width, int height){ this(width, height, 1024); }
+
+    /**
+     * @param width     Ancho de la escena.
+     * @param height    Alto de la escena.
+     * @param capacidad Número de figuras previsto (evita copias al crecer).
+     */
+    public EscenaColumnar(int width, int height, int capacidad){
+        super(width, height);
+        reservar(Math.max(16, capacidad));
+    }
+
+    /** @return Vista de lista que construye cada figura al acceder a ella */
+    @Override
+    public List<Figura> getFiguras(){
+        if (vista == null) vista = new Vista();
+        return vista;
+    }
+
+    /** Añade una figura copiando sus atributos a las columnas. */
+    @Override
+    public void add(Figura f){
+        if (n == tipos.length) reservar(n + (n >> 1));
+        set(n++, f);
+        notificar(n - 1);
+    }
+
+    /** Reduce las columnas al número de figuras actual (libera el hueco reservado al crecer). */
+    public void trimToSize(){
+        if (n < tipos.length) reservar(Math.max(16, n));
+    }
+
+    /** @return Número de figuras */
+    public int size(){ return n; }
+    /** @return Tipo de la figura i (RECTANGULO, CIRCULO o LINEA) */
+    public byte tipo(int i){ return tipos[check(i)]; }
+    /** @return Primera coordenada de la figura i (x, cx o x1) */
+    public int a(int i){ return a[check(i)]; }
+    /** @return Segunda coordenada de la figura i (y, cy o y1) */
+    public int b(int i){ return b[check(i)]; }
+    /** @return Tercera coordenada de la figura i (width, r o x2) */
+    public int c(int i){ return c[check(i)]; }
+    /** @return Cuarta coordenada de la figura i (height, 0 o y2) */
+    public int d(int i){ return d[check(i)]; }
+    /** @return Color del borde empaquetado de la figura i (ColorRGB.TEXTO | índice si es un texto: ver colorText) */
+    public int stroke(int i){ return strokes[check(i)]; }
+    /** @return Color de relleno empaquetado de la figura i (ColorRGB.TEXTO | índice si es un texto: ver colorText) */
+    public int fill(int i){ return fills[check(i)]; }
+    /** @return Grosor del borde de la figura i */
+    public int strokeWidth(int i){ return grosores[check(i)]; }
+    /** @return Opacidad del borde de la figura i */
+    public double strokeOpacity(int i){ return strokeOpacities.get(check(i)); }
+    /** @return Opacidad del relleno de la figura i */
+    public double fillOpacity(int i){ return fillOpacities.get(check(i)); }
+    /** @return Etiqueta de la figura i o null */
+    public String label(int i){ int k = etiquetas[check(i)]; return k < 0 ? null : textos.get(k); }
+    /** @return Índice de la etiqueta de la figura i en el diccionario (-1 = sin etiqueta) */
+    public int labelIndex(int i){ return etiquetas[check(i)]; }
+    /** @return Número de etiquetas distintas */
+    public int labelCount(){ return textos.size(); }
+    /** @return Etiqueta k del diccionario */
+    public String labelText(int k){ return textos.get(Objects.checkIndex(k, textos.size())); }
+    /** @return Texto de un color guardado como ColorRGB.TEXTO | índice (devuelto por stroke o fill) */
+    public String colorText(int c){
+        if (!ColorRGB.isTexto(c)) throw new IllegalArgumentException("No es un color de texto: " + c);
+        return colores.get(Objects.checkIndex(c & ~ColorRGB.TEXTO, colores.size()));
+    }
+
+    /** Construye la figura i a partir de las columnas. */
+    private Figura figura(int i){
+        Figura f;
+        switch (tipos[i]) {
+            case RECTANGULO: f = new Rectangulo(a[i], b[i], c[i], d[i], strokes[i]); break;
+            case CIRCULO:    f = new Circulo(a[i], b[i], c[i], strokes[i]); break;
+            default:         f = new Linea(a[i], b[i], c[i], d[i], strokes[i]);
+        }
+        if (ColorRGB.isTexto(strokes[i])) f.setStroke(colorText(strokes[i])); else f.setStrokeRgb(strokes[i]);
+        if (ColorRGB.isTexto(fills[i])) f.setFill(colorText(fills[i])); else f.setFillRgb(fills[i]);
+        f.setStrokeWidth(grosores[i]);
+        f.setStrokeOpacity(strokeOpacities.get(i));
+        f.setFillOpacity(fillOpacities.get(i));
+        int k = etiquetas[i];
+        if (k >= 0) f.setLabel(textos.get(k));
+        return f;
+    }
+
+    /** Copia los atributos de la figura a la posición i. */
+    private void set(int i, Figura f){
+        if (f instanceof Rectangulo) {
+            Rectangulo r = (Rectangulo) f;
+            tipos[i] = RECTANGULO; a[i] = r.x; b[i] = r.y; c[i] = r.width; d[i] = r.height;
+        } else if (f instanceof Circulo) {
+            Circulo ci = (Circulo) f;
+            tipos[i] = CIRCULO; a[i] = ci.cx; b[i] = ci.cy; c[i] = ci.r; d[i] = 0;
+        } else if (f instanceof Linea) {
+            Linea l = (Linea) f;
+            tipos[i] = LINEA; a[i] = l.x1; b[i] = l.y1; c[i] = l.x2; d[i] = l.y2;
+        } else {
+            throw new IllegalArgumentException("Tipo de figura no soportado: " + f.getClass().getName());
+        }
+        strokes[i] = color(f.getStrokeRgb(), f.getStroke());
+        fills[i] = color(f.getFillRgb(), f.getFill());
+        grosores[i] = f.getStrokeWidth();
+        strokeOpacities.set(i, f.getStrokeOpacity());
+        fillOpacities.set(i, f.getFillOpacity());
+        etiquetas[i] = indice(f.getLabel());
+    }
+
+    private int indice(String label){ return label == null ? -1 : textos.indice(label); }
+
+    // Color tal como se guarda en la columna: un color de texto pasa a TEXTO | índice en el diccionario de colores
+    private int color(int c, String texto){ return ColorRGB.isTexto(c) ? ColorRGB.TEXTO | colores.indice(texto) : c; }
+
+    private int check(int i){ return Objects.checkIndex(i, n); }
+
+    // Amplía todas las columnas a la capacidad indicada
+    private void reservar(int cap){
+        tipos = tipos == null ? new byte[cap] : Arrays.copyOf(tipos, cap);
+        a = crecer(a, cap); b = crecer(b, cap); c = crecer(c, cap); d = crecer(d, cap);
+        strokes = crecer(strokes, cap); fills = crecer(fills, cap); grosores = crecer(grosores, cap);
+        etiquetas = crecer(etiquetas, cap);
+        strokeOpacities.reservar(cap);
+        fillOpacities.reservar(cap);
+    }
+
+    private static int[] crecer(int[] x, int cap){ return x == null ? new int[cap] : Arrays.copyOf(x, cap); }
+
+    /**
+     * Columna de doubles con pocos valores distintos: cada posición guarda un índice de 16 bits
+     * a la paleta de valores. Si aparecen más de 65536 valores distintos pasa a guardar los valores.
+     */
+    private static final class Paleta implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private char[] indices = new char[0];
+        private double[] paleta = new double[4];
+        private int distintos;
+        /** Posición de cada valor en la paleta (por sus bits, para distinguir -0.0 y los NaN) */
+        private final Map<Long,Integer> posiciones = new HashMap<>();
+        /** Valores tal cual (solo cuando la paleta se ha desbordado) */
+        private double[] valores;
+
+        double get(int i){ return valores != null ? valores[i] : paleta[indices[i]]; }
+
+        void set(int i, double v){
+            if (valores != null) { valores[i] = v; return; }
+            Integer k = posiciones.get(Double.doubleToRawLongBits(v));
+            if (k == null) {
+                if (distintos == 1 << 16) { desbordar(); valores[i] = v; return; }
+                if (distintos == paleta.length) paleta = Arrays.copyOf(paleta, distintos * 2);
+                k = distintos++;
+                paleta[k] = v;
+                posiciones.put(Double.doubleToRawLongBits(v), k);
+            }
+            indices[i] = (char) (int) k;
+        }
+
+        void reservar(int cap){
+            if (valores != null) valores = Arrays.copyOf(valores, cap);
+            else indices = Arrays.copyOf(indices, cap);
+        }
+
+        // Pasa de índices a valores
+        private void desbordar(){
+            valores = new double[indices.length];
+            for (int i = 0; i < indices.length; i++) valores[i] = paleta[indices[i]];
+            indices = null; paleta = null; posiciones.clear();
+        }
+    }
+
+    /**
+     * Diccionario de textos sin un objeto por entrada: los caracteres de todas las etiquetas van
+     * seguidos en un único array y la búsqueda usa una tabla hash de direccionamiento abierto.
+     */
+    private static final class Diccionario implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private char[] datos = new char[256];
+        /** inicios[k] es la posición de la etiqueta k en datos; inicios[n] el final de la última */
+        private int[] inicios = new int[17];
+        private int n, usados;
+        /** Tabla hash: índice de etiqueta + 1 (0 = libre); su tamaño es potencia de 2 */
+        private int[] tabla = new int[32];
+
+        int size(){ return n; }
+
+        String get(int k){ return new String(datos, inicios[k], inicios[k + 1] - inicios[k]); }
+
+        /** Devuelve el índice del texto, añadiéndolo si no estaba. */
+        int indice(String s){
+            int mask = tabla.length - 1;
+            for (int h = s.hashCode() & mask; ; h = (h + 1) & mask) {
+                int k = tabla[h] - 1;
+                if (k < 0) break;
+                if (igual(k, s)) return k;
+            }
+            int len = s.length();
+            if (usados + len > datos.length) datos = Arrays.copyOf(datos, Math.max(usados + len, datos.length + (datos.length >> 1)));
+            s.getChars(0, len, datos, usados);
+            if (n + 1 == inicios.length) inicios = Arrays.copyOf(inicios, inicios.length + (inicios.length >> 1));
+            usados += len;
+            inicios[++n] = usados;
+            if (2 * n > tabla.length) rehash(); else insertar(n - 1, s.hashCode());
+            return n - 1;
+        }
+
+        private boolean igual(int k, String s){
+            int p = inicios[k], len = inicios[k + 1] - p;
+            if (len != s.length()) return false;
+            for (int i = 0; i < len; i++) if (datos[p + i] != s.charAt(i)) return false;
+            return true;
+        }
+
+        private void insertar(int k, int hash){
+            int mask = tabla.length - 1, h = hash & mask;
+            while (tabla[h] != 0) h = (h + 1) & mask;
+            tabla[h] = k + 1;
+        }
+
+        private void rehash(){
+            tabla = new int[tabla.length * 2];
+            for (int k = 0; k < n; k++) {
+                int hash = 0;
+                for (int i = inicios[k]; i < inicios[k + 1]; i++) hash = 31 * hash + datos[i];
+                insertar(k, hash);
+            }
+        }
+    }
+
+    /** Lista de acceso aleatorio sobre las columnas. */
+    private final class Vista extends AbstractList<Figura> implements RandomAccess {
+        @Override public Figura get(int i){ return figura(check(i)); }
+        @Override public int size(){ return n; }
+        @Override public Figura set(int i, Figura f){ Figura old = figura(check(i)); EscenaColumnar.this.set(i, f); return old; }
+        @Override public boolean add(Figura f){ EscenaColumnar.this.add(f); modCount++; return true; }
+    }
+}
@@ -0,0 +1,66 @@
+package es.ad.r1;
+
+/**
+ * Estilo de pintado de una figura: borde (color, grosor y opacidad) y relleno (color y opacidad).
+ *
+ * Se usa como clave para agrupar figuras con el mismo aspecto al exportar a SVG. Las opacidades
+ * se comparan por sus bits, igual que se escriben. Los estilos de solo borde (líneas) no incluyen
+ * el relleno y nunca coinciden con los de una figura con relleno. Los colores guardados como texto
+ * (ColorRGB.TEXTO) se comparan por su texto.
+ */
+final class Estilo {
+    final int stroke, strokeWidth, fill;
+    /** Texto de los colores que valen ColorRGB.TEXTO; si no, null */
+    final String strokeTexto, fillTexto;
+    final double strokeOpacity, fillOpacity;
+    /** false si el estilo es solo de borde */
+    final boolean relleno;
+
+    Estilo(int stroke, String strokeTexto, int strokeWidth, double strokeOpacity, int fill, String fillTexto, double fillOpacity, boolean relleno){
+        this.stroke = stroke; this.strokeTexto = strokeTexto; this.strokeWidth = strokeWidth; this.strokeOpacity = strokeOpacity;
+        this.fill = fill; this.fillTexto = fillTexto; this.fillOpacity = fillOpacity; this.relleno = relleno;
+    }
+
+    /** Estilo completo de una figura. */
+    static Estilo of(Figura f){
+        return new Estilo(f.stroke, f.strokeTexto, f.getStrokeWidth(), f.getStrokeOpacity(), f.fill, f.fillTexto, f.getFillOpacity(), true);
+    }
+
+    /** Estilo con el que se pinta la figura: solo el borde si es una línea. */
+    static Estilo svg(Figura f){ return f instanceof Linea ? borde(f) : of(f); }
+
+    /** Estilo de borde de una figura, sin relleno (líneas). */
+    static Estilo borde(Figura f){
+        return new Estilo(f.stroke, f.strokeTexto, f.getStrokeWidth(), f.getStrokeOpacity(), ColorRGB.NONE, null, 0, false);
+    }
+
+    /** Escribe las propiedades CSS del estilo (stroke:...;fill-opacity:...). */
+    void writeCss(Appendable out) throws java.io.IOException {
+        out.append("stroke:"); ColorRGB.append(out, stroke, strokeTexto);
+        out.append(";stroke-width:"); Fmt.num(out, strokeWidth);
+        out.append(";stroke-opacity:"); Fmt.opacity(out, strokeOpacity);
+        if (!relleno) return;
+        out.append(";fill:"); ColorRGB.append(out, fill, fillTexto);
+        out.append(";fill-opacity:"); Fmt.opacity(out, fillOpacity);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if (!(o instanceof Estilo)) return false;
+        Estilo e = (Estilo) o;
+        return stroke == e.stroke && strokeWidth == e.strokeWidth && fill == e.fill && relleno == e.relleno
+            && java.util.Objects.equals(strokeTexto, e.strokeTexto) && java.util.Objects.equals(fillTexto, e.fillTexto)
+            && Double.doubleToLongBits(strokeOpacity) == Double.doubleToLongBits(e.strokeOpacity)
+            && Double.doubleToLongBits(fillOpacity) == Double.doubleToLongBits(e.fillOpacity);
+    }
+
+    @Override
+    public int hashCode(){
+        int h = stroke * 31 + strokeWidth;
+        h = h * 31 + fill;
+        h = h * 31 + java.util.Objects.hash(strokeTexto, fillTexto);
+        h = h * 31 + Double.hashCode(strokeOpacity);
+        h = h * 31 + Double.hashCode(fillOpacity);
+        return relleno ? h : ~h;
+    }
+}
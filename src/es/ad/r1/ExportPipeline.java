@@ -0,0 +1,116 @@
+package es.ad.r1;
+import java.io.*; import java.util.*; import java.util.concurrent.*;
+
+/**
+ * Exportación de una escena a varios formatos en una sola pasada.
+ *
+ * El hilo que llama recorre las figuras de la escena una única vez y las reparte en lotes a
+ * todos los codificadores. Cada codificador tiene su propio hilo escritor y una cola acotada
+ * de lotes, de modo que los formatos se escriben a la vez y la memoria usada no depende del
+ * tamaño de la escena: si un escritor se retrasa, el recorrido espera a que haya hueco en su
+ * cola. El tiempo total tiende al del formato más lento en lugar de a la suma de todos.
+ *
+ * Los lotes se comparten entre los escritores, que solo leen las figuras.
+ */
+public final class ExportPipeline {
+
+    /** Figuras por lote */
+    private static final int BATCH = 1024;
+    /** Lotes pendientes por escritor */
+    private static final int QUEUE = 8;
+    /** Lote que indica el final de la escena */
+    private static final Figura[] FIN = new Figura[0];
+    /** Lote que indica que el recorrido ha fallado: se cierra sin terminar el documento */
+    private static final Figura[] ABORT = new Figura[0];
+
+    /** Hilos de los escritores (se crean según se necesitan y no impiden terminar la JVM) */
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "export-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ExportPipeline(){}
+
+    /**
+     * Exporta la escena a todos los codificadores a la vez y los cierra al terminar.
+     *
+     * @param e        Escena a exportar.
+     * @param encoders Codificadores destino (uno por formato).
+     * @throws IOException Si alguno de los codificadores falla (se propaga el primer error; un Error,
+     *                     p.ej. OutOfMemoryError, se relanza tal cual).
+     */
+    public static void export(Escena e, List<SceneEncoder> encoders) throws IOException {
+        int w = e.getWidth(), h = e.getHeight(), count = e.getFiguras().size();
+        List<BlockingQueue<Figura[]>> colas = new ArrayList<>();
+        List<Future<?>> escritores = new ArrayList<>();
+        for (SceneEncoder enc : encoders) {
+            BlockingQueue<Figura[]> q = new ArrayBlockingQueue<>(QUEUE);
+            colas.add(q);
+            escritores.add(WRITERS.submit(() -> { escribir(enc, q, w, h, count); return null; }));
+        }
+        try {
+            // Recorre la escena una sola vez y entrega cada lote a todas las colas
+            Figura[] lote = new Figura[Math.min(BATCH, Math.max(1, count))];
+            int n = 0;
+            for (Figura f : e.getFiguras()) {
+                lote[n++] = f;
+                if (n == lote.length) { repartir(colas, lote); lote = new Figura[lote.length]; n = 0; }
+            }
+            if (n > 0) repartir(colas, Arrays.copyOf(lote, n));
+            repartir(colas, FIN);
+        } catch (InterruptedException ex) {
+            abortar(colas);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (RuntimeException | Error ex) {
+            abortar(colas);
+            throw ex;
+        }
+        Throwable error = null;
+        for (Future<?> f : escritores) {
+            try { f.get(); }
+            catch (InterruptedException ex) { Thread.currentThread().interrupt(); throw new InterruptedIOException(); }
+            catch (ExecutionException ex) {
+                if (error == null) error = ex.getCause(); else error.addSuppressed(ex.getCause());
+            }
+        }
+        if (error instanceof Error) throw (Error) error;
+        if (error != null) throw error instanceof IOException ? (IOException) error : new IOException(error);
+    }
+
+    // Entrega el lote a cada escritor, esperando si su cola está llena
+    private static void repartir(List<BlockingQueue<Figura[]>> colas, Figura[] lote) throws InterruptedException {
+        for (BlockingQueue<Figura[]> q : colas) q.put(lote);
+    }
+
+    // Descarta los lotes pendientes y avisa a cada escritor de que debe cerrar sin terminar
+    private static void abortar(List<BlockingQueue<Figura[]>> colas){
+        for (BlockingQueue<Figura[]> q : colas) { q.clear(); q.offer(ABORT); }
+    }
+
+    // Hilo escritor: codifica los lotes de su cola hasta el final y cierra el codificador.
+    // Si falla (también con un Error, p.ej. OutOfMemoryError), sigue vaciando la cola para no
+    // bloquear al hilo que reparte y relanza el error al terminar.
+    private static void escribir(SceneEncoder enc, BlockingQueue<Figura[]> q, int w, int h, int count) throws Exception {
+        Throwable error = null;
+        try {
+            try { enc.begin(w, h, count); }
+            catch (Throwable ex) { error = ex; }
+            Figura[] lote;
+            while ((lote = q.take()) != FIN && lote != ABORT) {
+                if (error != null) continue;
+                try { for (Figura f : lote) enc.figura(f); }
+                catch (Throwable ex) { error = ex; }
+            }
+            if (error == null && lote == FIN) enc.end();
+        } catch (Throwable ex) {
+            if (error == null) error = ex;
+        } finally {
+            try { enc.close(); }
+            catch (Throwable ex) { if (error == null) error = ex; else error.addSuppressed(ex); }
+        }
+        if (error instanceof Error) throw (Error) error;
+        if (error != null) throw (Exception) error;
+    }
+}
@@ -0,0 +1,83 @@
+package es.ad.r1;
+import java.io.*;
+
+/**
+ * Writer con buffer propio y sin sincronización para los escritores de escenas.
+ *
+ * A diferencia de BufferedWriter, convierte los enteros a texto directamente en su buffer
+ * ({@link #num(int)}) y copia las subcadenas sin crear objetos intermedios. No es seguro para
+ * su uso desde varios hilos a la vez.
+ */
+final class FastWriter extends Writer {
+    private final Writer out;
+    private final char[] buf;
+    private int n;
+
+    /** @param out Destino al que se vuelca el buffer. */
+    FastWriter(Writer out){ this(out, 1 << 16); }
+
+    /**
+     * @param out  Destino al que se vuelca el buffer.
+     * @param size Tamaño del buffer en caracteres.
+     */
+    FastWriter(Writer out, int size){ this.out = out; this.buf = new char[size]; }
+
+    /** Añade un entero en decimal sin crear cadenas. */
+    void num(int v) throws IOException {
+        if (buf.length - n < 11) flushBuffer();
+        if (v == Integer.MIN_VALUE) { write("-2147483648"); return; }
+        if (v < 0) { buf[n++] = '-'; v = -v; }
+        int len = v < 10 ? 1 : v < 100 ? 2 : v < 1000 ? 3 : v < 10000 ? 4 : v < 100000 ? 5
+            : v < 1000000 ? 6 : v < 10000000 ? 7 : v < 100000000 ? 8 : v < 1000000000 ? 9 : 10;
+        for (int i = n + len - 1; i >= n; i--) { buf[i] = (char) ('0' + v % 10); v /= 10; }
+        n += len;
+    }
+
+    @Override public void write(int c) throws IOException {
+        if (n == buf.length) flushBuffer();
+        buf[n++] = (char) c;
+    }
+
+    @Override public void write(char[] c, int off, int len) throws IOException {
+        if (len > buf.length) { flushBuffer(); out.write(c, off, len); return; }
+        if (buf.length - n < len) flushBuffer();
+        System.arraycopy(c, off, buf, n, len);
+        n += len;
+    }
+
+    @Override public void write(String s, int off, int len) throws IOException {
+        while (len > 0) {
+            if (n == buf.length) flushBuffer();
+            int k = Math.min(len, buf.length - n);
+            s.getChars(off, off + k, buf, n);
+            n += k; off += k; len -= k;
+        }
+    }
+
+    @Override public void write(String s) throws IOException { write(s, 0, s.length()); }
+
+    @Override public FastWriter append(char c) throws IOException { write(c); return this; }
+
+    @Override public FastWriter append(CharSequence s) throws IOException {
+        String str = String.valueOf(s);
+        write(str, 0, str.length());
+        return this;
+    }
+
+    @Override public FastWriter append(CharSequence s, int start, int end) throws IOException {
+        if (s instanceof String) { write((String) s, start, end - start); return this; }
+        for (int i = start; i < end; i++) write(s.charAt(i));
+        return this;
+    }
+
+    // Vuelca el buffer al destino
+    private void flushBuffer() throws IOException {
+        if (n > 0) { out.write(buf, 0, n); n = 0; }
+    }
+
+    @Override public void flush() throws IOException { flushBuffer(); out.flush(); }
+
+    @Override public void close() throws IOException {
+        try { flushBuffer(); } finally { out.close(); }
+    }
+}
@@ -1,5 +1,5 @@
 package es.ad.r1;
-import java.io.Serializable;
+import java.io.*;
 
 /**
  * Clase abstracta que representa una figura geométrica genérica.
@@ -7,7 +7,9 @@ import java.io.Serializable;
  * Define atributos comunes como color de borde (stroke), color de relleno (fill),
  * grosor del borde, opacidad del borde y del relleno, y una etiqueta descriptiva.
  * Proporciona métodos getter y setter para estos atributos.
- * Es serializable para poder guardarse y recuperarse en disco.
+ * Los colores se guardan empaquetados en un int (ver {@link ColorRGB}).
+ * Es serializable para poder guardarse y recuperarse en disco; en el flujo serializado
+ * los colores siguen escribiéndose como cadenas, compatibles con ficheros antiguos.
  * 
  * Las subclases deben implementar los métodos para exportar la figura en texto plano,
  * en formato SVG y para generar una etiqueta SVG descriptiva.
@@ -15,10 +17,22 @@ import java.io.Serializable;
 public abstract class Figura implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    /** Color del borde en formato hexadecimal (#RRGGBB) */
-    protected String stroke="#000000";
-    /** Color de relleno en formato hexadecimal (#RRGGBB) o "none" */
-    protected String fill="none";
+    /** Campos del formato serializado (los colores se guardan como texto #RRGGBB) */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("stroke", String.class),
+        new ObjectStreamField("fill", String.class),
+        new ObjectStreamField("strokeWidth", int.class),
+        new ObjectStreamField("strokeOpacity", double.class),
+        new ObjectStreamField("fillOpacity", double.class),
+        new ObjectStreamField("label", String.class)
+    };
+
+    /** Color del borde empaquetado (0xRRGGBB), o ColorRGB.TEXTO si se conserva como texto */
+    protected int stroke=0x000000;
+    /** Color de relleno empaquetado (0xRRGGBB), ColorRGB.NONE, o ColorRGB.TEXTO si se conserva como texto */
+    protected int fill=ColorRGB.NONE;
+    /** Texto original del borde y del relleno cuando no son #rrggbb (el color vale ColorRGB.TEXTO); si no, null */
+    protected String strokeTexto, fillTexto;
     /** Grosor del borde */
     protected int strokeWidth=3;
     /** Opacidad del borde (0.0 a 1.0) */
@@ -28,15 +42,30 @@ public abstract class Figura implements Serializable {
     /** Etiqueta descriptiva de la figura */
     protected String label=null;
 
-    /** @return Color del borde */
-    public String getStroke(){ return stroke; }
-    /** @param v Color del borde */
-    public void setStroke(String v){ stroke=v; }
+    /** @return Color del borde (#rrggbb, o el texto original si no era #rrggbb) */
+    public String getStroke(){ return ColorRGB.toString(stroke, strokeTexto); }
+    /** @param v Color del borde (#rrggbb se empaqueta; otro texto se conserva tal cual) */
+    public void setStroke(String v){
+        String s=String.valueOf(v);
+        if (ColorRGB.exacto(s)) { stroke=ColorRGB.parse(s); strokeTexto=null; } else { stroke=ColorRGB.TEXTO; strokeTexto=s; }
+    }
+    /** @return Color del borde empaquetado (ColorRGB.TEXTO si es un texto: ver getStroke) */
+    public int getStrokeRgb(){ return stroke; }
+    /** @param v Color del borde empaquetado (los colores de texto se asignan con setStroke) */
+    public void setStrokeRgb(int v){ stroke=v; strokeTexto=null; }
 
-    /** @return Color de relleno */
-    public String getFill(){ return fill; }
-    /** @param v Color de relleno */
-    public void setFill(String v){ fill=v; }
+    /** @return Color de relleno (#rrggbb o none) */
+    public String getFill(){ return ColorRGB.toString(fill, fillTexto); }
+    /** @param v Color de relleno (#rrggbb se empaqueta, none; otro texto se conserva tal cual) */
+    public void setFill(String v){
+        String s=String.valueOf(v);
+        if ("none".equals(s)) { fill=ColorRGB.NONE; fillTexto=null; }
+        else if (ColorRGB.exacto(s)) { fill=ColorRGB.parse(s); fillTexto=null; } else { fill=ColorRGB.TEXTO; fillTexto=s; }
+    }
+    /** @return Color de relleno empaquetado, ColorRGB.NONE o ColorRGB.TEXTO si es un texto (ver getFill) */
+    public int getFillRgb(){ return fill; }
+    /** @param v Color de relleno empaquetado o ColorRGB.NONE (los colores de texto se asignan con setFill) */
+    public void setFillRgb(int v){ fill=v; fillTexto=null; }
 
     /** @return Grosor del borde */
     public int getStrokeWidth(){ return strokeWidth; }
@@ -58,21 +87,170 @@ public abstract class Figura implements Serializable {
     /** @param v Etiqueta descriptiva */
     public void setLabel(String v){ label=v; }
 
+    // Escribe los colores como texto para mantener el formato serializado original
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField pf = out.putFields();
+        pf.put("stroke", getStroke());
+        pf.put("fill", getFill());
+        pf.put("strokeWidth", strokeWidth);
+        pf.put("strokeOpacity", strokeOpacity);
+        pf.put("fillOpacity", fillOpacity);
+        pf.put("label", label);
+        out.writeFields();
+    }
+
+    // Lee los colores como texto; los que no son #rrggbb se conservan tal cual
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField gf = in.readFields();
+        setStroke(String.valueOf(gf.get("stroke", "#000000")));
+        setFill(String.valueOf(gf.get("fill", "none")));
+        strokeWidth = gf.get("strokeWidth", 3);
+        strokeOpacity = gf.get("strokeOpacity", 1.0);
+        fillOpacity = gf.get("fillOpacity", 1.0);
+        label = (String) gf.get("label", null);
+    }
+
     /**
      * Devuelve una representación en texto plano de la figura.
      * @return Cadena con los datos de la figura.
      */
-    public abstract String toTxt();
+    public String toTxt(){
+        StringBuilder sb=new StringBuilder(48);
+        try{ writeTxt(sb); }catch(IOException ex){ throw new UncheckedIOException(ex); }
+        return sb.toString();
+    }
+
+    /**
+     * Escribe la representación en texto plano de la figura directamente en el destino.
+     * @param out Destino (Writer, StringBuilder...).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public abstract void writeTxt(Appendable out) throws IOException;
 
     /**
      * Devuelve una representación SVG de la figura.
      * @return Cadena SVG que describe la figura.
      */
-    public abstract String toSvg();
+    public String toSvg(){
+        StringBuilder sb=new StringBuilder(160);
+        try{ writeSvg(sb); }catch(IOException ex){ throw new UncheckedIOException(ex); }
+        return sb.toString();
+    }
 
     /**
      * Devuelve una etiqueta SVG descriptiva para la figura.
      * @return Cadena SVG con la etiqueta de la figura.
      */
-    public abstract String labelSvg();
+    public String labelSvg(){
+        StringBuilder sb=new StringBuilder(64);
+        try{ writeLabelSvg(sb); }catch(IOException ex){ throw new UncheckedIOException(ex); }
+        return sb.toString();
+    }
+
+    /**
+     * Escribe la representación SVG de la figura directamente en el destino, sin crear cadenas intermedias.
+     * @param out Destino (Writer, StringBuilder...).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public void writeSvg(Appendable out) throws IOException { writeSvg(out, null); }
+
+    /**
+     * Escribe la representación SVG de la figura con su estilo en una clase CSS en lugar de en atributos.
+     * @param out   Destino (Writer, StringBuilder...).
+     * @param clase Clase CSS con el estilo de la figura, o null para escribir el estilo en atributos.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public abstract void writeSvg(Appendable out, String clase) throws IOException;
+
+    /**
+     * Escribe la etiqueta SVG de la figura directamente en el destino.
+     * @param out Destino (Writer, StringBuilder...).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public abstract void writeLabelSvg(Appendable out) throws IOException;
+
+    /** @return Menor X de la caja que contiene la geometría de la figura (sin el grosor del borde) */
+    public abstract int getMinX();
+    /** @return Menor Y de la caja que contiene la geometría de la figura (sin el grosor del borde) */
+    public abstract int getMinY();
+    /** @return Mayor X de la caja que contiene la geometría de la figura (sin el grosor del borde) */
+    public abstract int getMaxX();
+    /** @return Mayor Y de la caja que contiene la geometría de la figura (sin el grosor del borde) */
+    public abstract int getMaxY();
+
+    /**
+     * Distancia de un punto a la parte pintada de la figura, sin contar el grosor del borde:
+     * 0 en el interior si tiene relleno; si no, la distancia al contorno.
+     * @param x Coordenada X del punto.
+     * @param y Coordenada Y del punto.
+     * @return Distancia (0 o mayor).
+     */
+    public abstract double distanceTo(double x, double y);
+
+    /**
+     * Indica si un punto cae sobre la figura tal como se pinta: en el relleno o a menos de
+     * la mitad del grosor del borde del contorno.
+     * @param x Coordenada X del punto.
+     * @param y Coordenada Y del punto.
+     * @return true si el punto toca la figura.
+     */
+    public boolean hitTest(double x, double y){ return distanceTo(x, y) <= Math.max(0, strokeWidth) / 2.0; }
+
+    /** @return Mitad del grosor del borde redondeada hacia arriba (lo que el borde sobresale de la geometría) */
+    public int getStrokeMargin(){ return strokeMargin(strokeWidth); }
+
+    // Mitad del grosor del borde redondeada hacia arriba (0 si no hay borde)
+    static int strokeMargin(int strokeWidth){ return strokeWidth <= 0 ? 0 : (strokeWidth + 1) / 2; }
+
+    // Recorta un valor long al rango de int (las coordenadas calculadas pueden desbordar)
+    static int sat(long v){ return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, v)); }
+
+    // Distancia de un punto al rectángulo [x0,x1]x[y0,y1]: 0 dentro; con hueco, al contorno
+    static double distanceToBox(double x, double y, double x0, double y0, double x1, double y1, boolean relleno){
+        double dx = Math.max(Math.max(x0 - x, x - x1), 0), dy = Math.max(Math.max(y0 - y, y - y1), 0);
+        if (dx > 0 || dy > 0 || relleno) return Math.hypot(dx, dy);
+        return Math.min(Math.min(x - x0, x1 - x), Math.min(y - y0, y1 - y));
+    }
+
+    // Distancia de un punto al segmento (x1,y1)-(x2,y2)
+    static double distanceToSegment(double x, double y, double x1, double y1, double x2, double y2){
+        double dx = x2 - x1, dy = y2 - y1, len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / len2));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+
+    // Escribe los atributos SVG de borde: stroke, stroke-width y stroke-opacity
+    protected void writeStrokeAttrs(Appendable out) throws IOException { strokeAttrs(out, stroke, strokeTexto, strokeWidth, strokeOpacity); }
+
+    // Escribe los atributos SVG de relleno: fill y fill-opacity
+    protected void writeFillAttrs(Appendable out) throws IOException { fillAttrs(out, fill, fillTexto, fillOpacity); }
+
+    // Escribe el estilo de la figura: la clase CSS si se indica o los atributos de borde (y de relleno)
+    protected void writeStyleAttrs(Appendable out, String clase, boolean relleno) throws IOException {
+        if (clase != null) { out.append(" class=\"").append(clase).append('"'); return; }
+        writeStrokeAttrs(out);
+        if (relleno) writeFillAttrs(out);
+    }
+
+    // Atributos SVG de borde para un estilo dado (también los usan los elementos agrupados de SvgSceneIO)
+    static void strokeAttrs(Appendable out, int stroke, String strokeTexto, int strokeWidth, double strokeOpacity) throws IOException {
+        out.append(" stroke=\""); ColorRGB.append(out, stroke, strokeTexto);
+        out.append("\" stroke-width=\""); Fmt.num(out, strokeWidth);
+        out.append("\" stroke-opacity=\""); Fmt.opacity(out, strokeOpacity);
+        out.append('"');
+    }
+
+    // Atributos SVG de relleno para un estilo dado
+    static void fillAttrs(Appendable out, int fill, String fillTexto, double fillOpacity) throws IOException {
+        out.append(" fill=\""); ColorRGB.append(out, fill, fillTexto);
+        out.append("\" fill-opacity=\""); Fmt.opacity(out, fillOpacity);
+        out.append('"');
+    }
+
+    // Abre el elemento <text> de la etiqueta en la posición indicada
+    protected static void openLabel(Appendable out, int x, int y) throws IOException {
+        out.append("<text class=\"lbl\" x=\""); Fmt.num(out, x);
+        out.append("\" y=\""); Fmt.num(out, y);
+        out.append("\">");
+    }
 }
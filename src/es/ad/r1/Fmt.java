@@ -0,0 +1,85 @@
+package es.ad.r1;
+import java.io.IOException;
+
+/**
+ * Formateo rápido para los escritores de escenas (TXT, SVG y JSON).
+ *
+ * Sustituye a String.format en las rutas de exportación: los enteros, colores, opacidades y
+ * textos escapados se añaden directamente al destino, sin analizar cadenas de formato ni crear
+ * cadenas intermedias. Con un {@link FastWriter} o un StringBuilder como destino no se reserva
+ * memoria por valor escrito.
+ */
+final class Fmt {
+
+    /** Textos de las opacidades con hasta tres decimales (k/1000), calculados la primera vez que se usan */
+    private static final String[] OPACIDADES = new String[1001];
+    /** Dígitos hexadecimales para escapar caracteres de control en JSON */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Fmt(){}
+
+    /** Añade un entero en decimal. */
+    static void num(Appendable out, int v) throws IOException {
+        if (out instanceof FastWriter) ((FastWriter) out).num(v);
+        else if (out instanceof StringBuilder) ((StringBuilder) out).append(v);
+        else out.append(Integer.toString(v));
+    }
+
+    /**
+     * Añade una opacidad limitada al rango [0,1] con el mismo texto que String.valueOf(double).
+     * Los valores habituales (hasta tres decimales) se toman de una caché, sin crear cadenas.
+     */
+    static void opacity(Appendable out, double v) throws IOException {
+        double c = Math.max(0, Math.min(1, v));
+        long k = Math.round(c * 1000);
+        if (k / 1000.0 == c) {
+            String s = OPACIDADES[(int) k];
+            if (s == null) OPACIDADES[(int) k] = s = String.valueOf(c);
+            out.append(s);
+        } else {
+            out.append(String.valueOf(c));
+        }
+    }
+
+    /** Añade un texto escapando los caracteres especiales de XML (&amp;, &lt; y &gt;). */
+    static void xml(Appendable out, String s) throws IOException {
+        int from = 0, n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            String rep = c == '&' ? "&amp;" : c == '<' ? "&lt;" : c == '>' ? "&gt;" : null;
+            if (rep == null) continue;
+            if (i > from) out.append(s, from, i);
+            out.append(rep);
+            from = i + 1;
+        }
+        if (from == 0) out.append(s);
+        else if (from < n) out.append(s, from, n);
+    }
+
+    /**
+     * Añade el contenido de una cadena JSON (sin las comillas) escapando comillas, barras
+     * invertidas y caracteres de control.
+     */
+    static void json(Appendable out, String s) throws IOException {
+        int from = 0, n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            if (i > from) out.append(s, from, i);
+            switch (c) {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                default:
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 15]);
+            }
+            from = i + 1;
+        }
+        if (from == 0) out.append(s);
+        else if (from < n) out.append(s, from, n);
+    }
+}
@@ -0,0 +1,557 @@
+package es.ad.r1;
+import java.io.*; import java.nio.*; import java.nio.channels.FileChannel; import java.nio.charset.*;
+import java.nio.file.*; import java.util.*;
+
+/**
+ * Reexportación incremental de una escena TXT (import-txt --incremental).
+ *
+ * Junto a las salidas se guarda un índice (base.idx) con un hash de cada línea del TXT, la línea
+ * de la que sale cada figura, la posición en bytes del fragmento de cada figura en las salidas de
+ * texto (TXT exportado, JSON y SVG) y las incidencias de validación. En la siguiente ejecución se
+ * compara el TXT con el índice (prefijo y sufijo de líneas comunes), se parsean solo las líneas
+ * cambiadas y se sustituyen sus fragmentos en las salidas: en el sitio si ocupan lo mismo, o
+ * copiando el resto del fichero alrededor del fragmento nuevo. En el BIN los registros son de
+ * tamaño fijo y las etiquetas nuevas se añaden al final de la tabla existente.
+ *
+ * Si no hay índice, no corresponde a las salidas, cambia la cabecera o cambia una parte grande
+ * del fichero, se hace la exportación completa (que también crea el índice).
+ */
+public final class IncrementalExport {
+
+    private static final int MAGIC = 0x45534349; // "ESCI"
+    private static final int VERSION = 1;
+    /** Salidas de texto con fragmentos por figura */
+    private static final int TXT = 0, JSON = 1, SVG = 2, SALIDAS = 3;
+    /** Longitud del separador entre figuras del JSON con formato (",\n") */
+    private static final int JSON_SEP = 2;
+    /** Líneas cambiadas a partir de las que compensa la exportación completa */
+    private static final int MIN_COMPLETA = 1024;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+    /** Estado guardado en el índice */
+    private static final class Indice {
+        /** Hash de cada línea del TXT */
+        long[] hashes;
+        /** Línea (desde 0) de cada figura */
+        int[] lineas;
+        List<ValidationReport.Issue> incidencias = new ArrayList<>();
+        /** true si las salidas corresponden al TXT indexado (no había errores) */
+        boolean exportado;
+        /** Por salida: inicio del fragmento de cada figura; el último valor es el inicio del pie */
+        long[][] offsets = new long[SALIDAS][];
+        /** Por salida: tamaño total del fichero */
+        long[] longitud = new long[SALIDAS];
+    }
+
+    /** Líneas del TXT: hash y posición de inicio de cada una */
+    private static final class Fuente {
+        long[] hashes = new long[1024];
+        /** inicios[n] es el tamaño del fichero */
+        long[] inicios = new long[1025];
+        int n;
+
+        void add(long hash, long inicio){
+            if (n == hashes.length) {
+                hashes = Arrays.copyOf(hashes, n * 2);
+                inicios = Arrays.copyOf(inicios, n * 2 + 1);
+            }
+            hashes[n] = hash; inicios[n++] = inicio;
+        }
+    }
+
+    /** Resultado de una actualización: informe, modo empleado y duración. */
+    static final class Resultado {
+        final ValidationReport report;
+        /** completo, incremental (con las líneas cambiadas) o sin cambios */
+        final String modo;
+        final long nanos;
+        Resultado(ValidationReport report, String modo, long nanos){ this.report = report; this.modo = modo; this.nanos = nanos; }
+    }
+
+    private IncrementalExport(){}
+
+    /**
+     * Importa el TXT y actualiza las salidas en el directorio, de forma incremental si es posible.
+     * Escribe también validacion.txt y el índice base.idx, y muestra el resultado por consola.
+     *
+     * @param in   Escena TXT de entrada.
+     * @param out  Directorio de salida.
+     * @param base Nombre base de los archivos.
+     * @return Informe de validación de la escena completa.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ValidationReport run(Path in, Path out, String base) throws IOException {
+        Resultado r = actualizar(in, out, base);
+        if (r.report.hasErrors()) {
+            System.out.println("Se han detectado errores. Revise " + out.resolve("validacion.txt").toAbsolutePath());
+        } else {
+            System.out.println(String.format(Locale.ROOT, "OK (%s). Exportados JSON/SVG/TXT/BIN en %s en %.1f ms",
+                r.modo, out.toAbsolutePath(), r.nanos / 1e6));
+        }
+        return r.report;
+    }
+
+    // Igual que run pero sin escribir en la consola
+    static Resultado actualizar(Path in, Path out, String base) throws IOException {
+        long t0 = System.nanoTime();
+        Files.createDirectories(out);
+        Fuente src;
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) { src = escanear(ch); }
+        Indice idx = leerIndice(out.resolve(base + ".idx"));
+        ValidationReport report = null;
+        String modo = "completo";
+        if (idx != null && idx.exportado && salidasValidas(idx, out, base)) {
+            int old = idx.hashes.length, p = 0, s = 0;
+            while (p < old && p < src.n && idx.hashes[p] == src.hashes[p]) p++;
+            while (s < old - p && s < src.n - p && idx.hashes[old - 1 - s] == src.hashes[src.n - 1 - s]) s++;
+            int cambiadas = src.n - s - p;
+            if (p == old && p == src.n) {
+                report = informe(idx.incidencias, 0, idx.incidencias.size(), 0);
+                modo = "sin cambios";
+            } else if (p > 0 && cambiadas <= Math.max(MIN_COMPLETA, src.n / 4)) {
+                report = incremental(in, out, base, src, idx, p, s);
+                if (report != null) modo = "incremental: " + Math.max(cambiadas, old - s - p) + " líneas cambiadas";
+            }
+        }
+        if (report == null) report = completo(in, out, base, src);
+        Files.writeString(out.resolve("validacion.txt"), report.toText());
+        return new Resultado(report, modo, System.nanoTime() - t0);
+    }
+
+    // Parsea todo el TXT y, si no hay errores, exporta todos los formatos guardando las posiciones
+    private static ValidationReport completo(Path in, Path out, String base, Fuente src) throws IOException {
+        ValidationReport report = new ValidationReport();
+        Escena[] e = { new Escena(0,0) };
+        int[][] lineas = { new int[1024] };
+        try (Reader r = TxtSceneIO.openReader(in)) {
+            TxtSceneIO.parse(r, new TxtSceneIO.Handler() {
+                public void dimensiones(int width, int height){ e[0] = new Escena(width,height); }
+                public void figura(Figura f){ figura(f, 0); }
+                public void figura(Figura f, int line){
+                    int k = e[0].getFiguras().size();
+                    if (k == lineas[0].length) lineas[0] = Arrays.copyOf(lineas[0], k * 2);
+                    lineas[0][k] = line - 1;
+                    e[0].add(f);
+                }
+                public void incidencia(ValidationReport.Issue issue){ }
+            }, report);
+        }
+        Indice idx = new Indice();
+        idx.hashes = Arrays.copyOf(src.hashes, src.n);
+        idx.lineas = Arrays.copyOf(lineas[0], e[0].getFiguras().size());
+        idx.incidencias.addAll(report.issues());
+        idx.exportado = !report.hasErrors();
+        if (idx.exportado) exportar(e[0], out, base, idx);
+        escribirIndice(out.resolve(base + ".idx"), idx);
+        return report;
+    }
+
+    // Exporta la escena a todas las salidas anotando dónde empieza cada figura en las de texto
+    private static void exportar(Escena e, Path out, String base, Indice idx) throws IOException {
+        int n = e.getFiguras().size();
+        Captura[] cap = new Captura[SALIDAS];
+        Writer[] w = new Writer[SALIDAS];
+        try (SceneEncoder bin = BinSceneIO.encoder(out.resolve(base + ".bin"))) {
+            try {
+                for (int k = 0; k < SALIDAS; k++) {
+                    cap[k] = new Captura(k, 0);
+                    w[k] = new FastWriter(new OutputStreamWriter(Files.newOutputStream(salida(out, base, k)), StandardCharsets.UTF_8.newEncoder()));
+                    idx.offsets[k] = new long[n + 1];
+                }
+                for (int k = 0; k < SALIDAS; k++) idx.offsets[k][0] = emitir(w[k], cap[k].begin(e.getWidth(), e.getHeight(), n));
+                bin.begin(e.getWidth(), e.getHeight(), n);
+                int i = 0;
+                for (Figura f : e.getFiguras()) {
+                    for (int k = 0; k < SALIDAS; k++) idx.offsets[k][i + 1] = idx.offsets[k][i] + emitir(w[k], cap[k].figura(f));
+                    bin.figura(f);
+                    i++;
+                }
+                for (int k = 0; k < SALIDAS; k++) idx.longitud[k] = idx.offsets[k][n] + emitir(w[k], cap[k].end());
+                bin.end();
+            } finally {
+                for (Writer x : w) if (x != null) x.close();
+            }
+        }
+        Files.copy(salida(out, base, TXT), out.resolve(base + ".txt"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long emitir(Writer w, String s) throws IOException {
+        w.write(s);
+        return utf8(s);
+    }
+
+    /**
+     * Parsea solo las líneas cambiadas y sustituye sus figuras en las salidas.
+     * @return Informe de la escena completa, o null si hay que hacer la exportación completa.
+     */
+    private static ValidationReport incremental(Path in, Path out, String base, Fuente src, Indice idx, int p, int s) throws IOException {
+        int oldLines = idx.hashes.length, finOld = oldLines - s, finNew = src.n - s, delta = finNew - finOld;
+        // Figuras que salen de las líneas cambiadas: [f0, f1) en el índice
+        int f0 = primera(idx.lineas, p), f1 = primera(idx.lineas, finOld), oldN = idx.lineas.length;
+        List<Figura> nuevas = new ArrayList<>();
+        int[] nuevasLineas;
+        ValidationReport parcial = new ValidationReport();
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+            CharsetDecoder dec = StandardCharsets.UTF_8.newDecoder();
+            TxtSceneIO.Handler h = new TxtSceneIO.Handler() {
+                public void dimensiones(int width, int height){ }
+                public void figura(Figura f){ figura(f, 0); }
+                public void figura(Figura f, int line){ nuevas.add(f); }
+                public void incidencia(ValidationReport.Issue issue){ }
+            };
+            List<Integer> lineasFig = new ArrayList<>();
+            for (int k = p; k < finNew; k++) {
+                int antes = nuevas.size();
+                CharBuffer cb = dec.reset().decode(linea(ch, src, k));
+                TxtSceneIO.parseLines(cb.array(), cb.limit(), k + 1, h, parcial);
+                for (int j = antes; j < nuevas.size(); j++) lineasFig.add(k);
+            }
+            nuevasLineas = lineasFig.stream().mapToInt(Integer::intValue).toArray();
+        } catch (CharacterCodingException ex) {
+            return null;
+        }
+        // Informe: incidencias anteriores a la zona cambiada, las de la zona y las posteriores desplazadas
+        List<ValidationReport.Issue> prev = idx.incidencias;
+        int a = 0;
+        while (a < prev.size() && prev.get(a).line <= p) a++;
+        int b = a;
+        while (b < prev.size() && prev.get(b).line <= finOld) b++;
+        ValidationReport report = informe(prev, 0, a, 0);
+        report.merge(parcial, 0);
+        for (int i = b; i < prev.size(); i++) report.add(prev.get(i), delta);
+        if (report.hasErrors()) {
+            // Las salidas dejan de corresponder al TXT: la próxima ejecución sin errores las regenera
+            idx.hashes = Arrays.copyOf(src.hashes, src.n);
+            idx.exportado = false;
+            idx.incidencias = new ArrayList<>(report.issues());
+            escribirIndice(out.resolve(base + ".idx"), idx);
+            return report;
+        }
+        int m = nuevas.size(), newN = oldN - (f1 - f0) + m;
+        for (int k = 0; k < SALIDAS; k++) sustituir(out, base, idx, k, f0, f1, nuevas);
+        sustituirBin(out.resolve(base + ".bin"), f0, f1, oldN, nuevas);
+        // Líneas de las figuras en el TXT nuevo
+        int[] lineas = new int[newN];
+        System.arraycopy(idx.lineas, 0, lineas, 0, f0);
+        System.arraycopy(nuevasLineas, 0, lineas, f0, m);
+        for (int i = f1; i < oldN; i++) lineas[f0 + m + i - f1] = idx.lineas[i] + delta;
+        idx.lineas = lineas;
+        idx.hashes = Arrays.copyOf(src.hashes, src.n);
+        idx.incidencias = new ArrayList<>(report.issues());
+        escribirIndice(out.resolve(base + ".idx"), idx);
+        return report;
+    }
+
+    // Reescribe en una salida de texto los fragmentos de las figuras [f0, f1) con las figuras nuevas
+    private static void sustituir(Path out, String base, Indice idx, int k, int f0, int f1, List<Figura> nuevas) throws IOException {
+        long[] off = idx.offsets[k];
+        int oldN = off.length - 1, m = nuevas.size();
+        long ini = off[f0], fin = f1 == oldN ? idx.longitud[k] : off[f1];
+        // En el JSON la figura que sigue a las cambiadas lleva separador salvo si es la primera:
+        // lo pierde si pasa a ser la primera y lo gana si deja de serlo
+        boolean quitarSep = k == JSON && f1 < oldN && f1 > 0 && f0 + m == 0;
+        boolean ponerSep = k == JSON && f1 < oldN && f1 == 0 && m > 0;
+        if (quitarSep) fin += JSON_SEP;
+        Captura cap = new Captura(k, f0);
+        StringBuilder sb = new StringBuilder();
+        long[] rel = new long[m + 1];
+        for (int j = 0; j < m; j++) {
+            String x = cap.figura(nuevas.get(j));
+            sb.append(x);
+            rel[j + 1] = rel[j] + utf8(x);
+        }
+        if (f1 == oldN) sb.append(cap.end());
+        if (ponerSep) sb.append(",\n");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        long dif = bytes.length - (fin - ini);
+        Path path = salida(out, base, k), copia = out.resolve(base + ".txt");
+        sustituir(path, ini, fin, bytes, idx.longitud[k]);
+        // base.txt es una copia del TXT exportado: se le aplica el mismo cambio si sigue siéndolo
+        if (k == TXT) {
+            if (Files.isRegularFile(copia) && Files.size(copia) == idx.longitud[k]) sustituir(copia, ini, fin, bytes, idx.longitud[k]);
+            else Files.copy(path, copia, StandardCopyOption.REPLACE_EXISTING);
+        }
+        long[] nuevo = new long[oldN - (f1 - f0) + m + 1];
+        System.arraycopy(off, 0, nuevo, 0, f0 + 1);
+        for (int j = 0; j <= m; j++) nuevo[f0 + j] = ini + rel[j];
+        for (int i = f1 + 1; i <= oldN; i++) nuevo[f0 + m + i - f1] = off[i] + dif;
+        idx.offsets[k] = nuevo;
+        idx.longitud[k] += dif;
+    }
+
+    // Sustituye los bytes [ini, fin) del fichero por los indicados
+    private static void sustituir(Path path, long ini, long fin, byte[] bytes, long longitud) throws IOException {
+        if (bytes.length == fin - ini) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) { escribir(ch, ByteBuffer.wrap(bytes), ini); }
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel src = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            copiar(src, 0, ini, dst);
+            escribir(dst, ByteBuffer.wrap(bytes), ini);
+            dst.position(ini + bytes.length);
+            copiar(src, fin, longitud - fin, dst);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Reescribe los registros [f0, f1) del BIN; las etiquetas nuevas se añaden al final de la tabla
+    private static void sustituirBin(Path path, int f0, int f1, int oldN, List<Figura> nuevas) throws IOException {
+        long recs = BinSceneIO.HEADER_SIZE + (long) oldN * BinSceneIO.RECORD_SIZE;
+        ByteBuffer head = ByteBuffer.allocate(BinSceneIO.HEADER_SIZE);
+        String[] tabla;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            leer(ch, head, 0);
+            ByteBuffer labels = ByteBuffer.allocate((int) (ch.size() - recs));
+            leer(ch, labels, recs);
+            labels.flip();
+            tabla = BinSceneIO.readLabels(labels);
+        }
+        List<String> etiquetas = new ArrayList<>(Arrays.asList(tabla));
+        Map<String,Integer> indices = new HashMap<>();
+        for (int i = tabla.length - 1; i >= 0; i--) indices.put(tabla[i], i);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(nuevas.size() * BinSceneIO.RECORD_SIZE);
+        DataOutputStream dos = new DataOutputStream(bos);
+        for (Figura f : nuevas) BinSceneIO.writeFigura(dos, f, indices, etiquetas);
+        byte[] registros = bos.toByteArray();
+        long ini = BinSceneIO.HEADER_SIZE + (long) f0 * BinSceneIO.RECORD_SIZE;
+        if (nuevas.size() == f1 - f0 && etiquetas.size() == tabla.length) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) { escribir(ch, ByteBuffer.wrap(registros), ini); }
+            return;
+        }
+        bos.reset();
+        BinSceneIO.writeLabels(dos, etiquetas);
+        byte[] labels = bos.toByteArray();
+        head.putInt(16, oldN - (f1 - f0) + nuevas.size());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel src = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            head.clear();
+            dst.write(head);
+            copiar(src, BinSceneIO.HEADER_SIZE, ini - BinSceneIO.HEADER_SIZE, dst);
+            dst.write(ByteBuffer.wrap(registros));
+            long fin = BinSceneIO.HEADER_SIZE + (long) f1 * BinSceneIO.RECORD_SIZE;
+            copiar(src, fin, recs - fin, dst);
+            dst.write(ByteBuffer.wrap(labels));
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Comprueba que las salidas existen y tienen el tamaño registrado en el índice
+    private static boolean salidasValidas(Indice idx, Path out, String base) throws IOException {
+        for (int k = 0; k < SALIDAS; k++) {
+            Path p = salida(out, base, k);
+            if (!Files.isRegularFile(p) || Files.size(p) != idx.longitud[k]) return false;
+        }
+        Path bin = out.resolve(base + ".bin");
+        if (!Files.isRegularFile(bin) || Files.size(bin) < BinSceneIO.HEADER_SIZE) return false;
+        try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(BinSceneIO.HEADER_SIZE);
+            leer(ch, head, 0);
+            head.flip();
+            return BinSceneIO.checkHeader(head) == idx.lineas.length
+                && ch.size() >= BinSceneIO.HEADER_SIZE + (long) idx.lineas.length * BinSceneIO.RECORD_SIZE + 4;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static Path salida(Path out, String base, int k){
+        return out.resolve(k == TXT ? base + "_export.txt" : k == JSON ? base + ".json" : base + ".svg");
+    }
+
+    private static ValidationReport informe(List<ValidationReport.Issue> issues, int from, int to, int lineOffset){
+        ValidationReport r = new ValidationReport();
+        for (int i = from; i < to; i++) r.add(issues.get(i), lineOffset);
+        return r;
+    }
+
+    // Primera figura cuya línea es >= line (las líneas están en orden)
+    private static int primera(int[] lineas, int line){
+        int lo = 0, hi = lineas.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lineas[mid] < line) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Recorre el TXT calculando el hash FNV-1a de cada línea (sin el terminador) y dónde empieza
+    private static Fuente escanear(FileChannel ch) throws IOException {
+        Fuente f = new Fuente();
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        byte[] a = buf.array();
+        long pos = 0, inicio = 0, h = FNV_OFFSET;
+        boolean enLinea = false, cr = false;
+        for (int r; (r = ch.read(buf)) > 0; buf.clear(), pos += r) {
+            for (int i = 0; i < r; i++) {
+                byte c = a[i];
+                if (c == '\n' && cr) { cr = false; inicio = pos + i + 1; continue; }
+                cr = false;
+                if (c == '\n' || c == '\r') {
+                    f.add(h, inicio);
+                    h = FNV_OFFSET; enLinea = false; inicio = pos + i + 1; cr = c == '\r';
+                } else {
+                    h = (h ^ (c & 0xff)) * FNV_PRIME;
+                    enLinea = true;
+                }
+            }
+        }
+        if (enLinea) f.add(h, inicio);
+        f.inicios[f.n] = pos;
+        return f;
+    }
+
+    // Bytes de la línea k del TXT sin su terminador
+    private static ByteBuffer linea(FileChannel ch, Fuente src, int k) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate((int) (src.inicios[k + 1] - src.inicios[k]));
+        leer(ch, b, src.inicios[k]);
+        int lim = b.position();
+        if (lim > 0 && b.get(lim - 1) == '\n') lim--;
+        if (lim > 0 && b.get(lim - 1) == '\r') lim--;
+        b.flip();
+        b.limit(lim);
+        return b;
+    }
+
+    private static void leer(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int r = ch.read(b, pos);
+            if (r < 0) throw new EOFException();
+            pos += r;
+        }
+    }
+
+    private static void escribir(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    private static void copiar(FileChannel src, long pos, long count, FileChannel dst) throws IOException {
+        while (count > 0) {
+            long r = src.transferTo(pos, count, dst);
+            if (r <= 0) throw new EOFException();
+            pos += r; count -= r;
+        }
+    }
+
+    // Longitud en UTF-8 de una cadena
+    static long utf8(CharSequence s){
+        long n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) { n += 4; i++; }
+            else n += 3;
+        }
+        return n;
+    }
+
+    // Índice: cabecera, hashes de línea, línea de cada figura, posiciones por salida e incidencias
+    private static void escribirIndice(Path path, Indice idx) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            ByteBuffer b = ByteBuffer.allocate(1 << 16);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(idx.exportado);
+            out.writeInt(idx.hashes.length);
+            for (long h : idx.hashes) { if (b.remaining() < 8) volcar(b, out); b.putLong(h); }
+            volcar(b, out);
+            out.writeInt(idx.lineas.length);
+            for (int l : idx.lineas) { if (b.remaining() < 4) volcar(b, out); b.putInt(l); }
+            volcar(b, out);
+            if (idx.exportado) {
+                for (int k = 0; k < SALIDAS; k++) {
+                    long[] off = idx.offsets[k];
+                    out.writeLong(off[0]);
+                    for (int i = 1; i < off.length; i++) { if (b.remaining() < 4) volcar(b, out); b.putInt((int) (off[i] - off[i - 1])); }
+                    volcar(b, out);
+                    out.writeLong(idx.longitud[k]);
+                }
+            }
+            out.writeInt(idx.incidencias.size());
+            for (ValidationReport.Issue i : idx.incidencias) {
+                out.writeInt(i.line);
+                cadena(out, i.severity);
+                cadena(out, i.message);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void cadena(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static void volcar(ByteBuffer b, OutputStream out) throws IOException {
+        out.write(b.array(), 0, b.position());
+        b.clear();
+    }
+
+    // Lee el índice; devuelve null si no existe o no es válido. Se lee completo en memoria (no se proyecta):
+    // escribirIndice lo sustituye después con Files.move, y una proyección abierta lo impide en algunos sistemas
+    private static Indice leerIndice(Path path) {
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (b.getInt() != MAGIC || b.getInt() != VERSION) return null;
+            Indice idx = new Indice();
+            idx.exportado = b.get() != 0;
+            idx.hashes = new long[b.getInt()];
+            b.asLongBuffer().get(idx.hashes);
+            b.position(b.position() + idx.hashes.length * 8);
+            idx.lineas = new int[b.getInt()];
+            b.asIntBuffer().get(idx.lineas);
+            b.position(b.position() + idx.lineas.length * 4);
+            if (idx.exportado) {
+                for (int k = 0; k < SALIDAS; k++) {
+                    long[] off = idx.offsets[k] = new long[idx.lineas.length + 1];
+                    off[0] = b.getLong();
+                    for (int i = 1; i < off.length; i++) off[i] = off[i - 1] + b.getInt();
+                    idx.longitud[k] = b.getLong();
+                }
+            }
+            for (int i = 0, n = b.getInt(); i < n; i++) {
+                int line = b.getInt();
+                String severity = cadena(b);
+                idx.incidencias.add(new ValidationReport.Issue(line, severity, cadena(b)));
+            }
+            return idx;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static String cadena(ByteBuffer b){
+        byte[] s = new byte[b.getInt()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    /** Codificador de una salida de texto que devuelve lo que escribe cada llamada. */
+    private static final class Captura {
+        private final StringWriter sw = new StringWriter(256);
+        private final FastWriter fw = new FastWriter(sw, 1024);
+        private final SceneEncoder enc;
+
+        /** @param escritas Figuras ya escritas antes de la primera que se codifica (para el JSON). */
+        Captura(int salida, int escritas){
+            enc = salida == TXT ? new TxtSceneIO.Encoder(fw) : salida == JSON ? new JsonSceneIO.Encoder(fw, false, escritas) : new SvgSceneIO.Encoder(fw);
+        }
+
+        String begin(int w, int h, int n) throws IOException { enc.begin(w, h, n); return take(); }
+        String figura(Figura f) throws IOException { enc.figura(f); return take(); }
+        String end() throws IOException { enc.end(); return take(); }
+
+        private String take() throws IOException {
+            fw.flush();
+            String s = sw.toString();
+            sw.getBuffer().setLength(0);
+            return s;
+        }
+    }
+}
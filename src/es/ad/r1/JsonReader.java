@@ -0,0 +1,312 @@
+package es.ad.r1;
+import java.io.IOException; import java.io.Reader;
+
+/**
+ * Analizador JSON en streaming (pull parser) para leer escenas.
+ *
+ * Cada llamada a {@link #next()} devuelve el siguiente elemento del documento sin construir
+ * ningún árbol en memoria: el texto de cadenas y números se guarda en un buffer reutilizable
+ * y solo se convierte a String cuando el lector lo pide. Guarda la línea y la columna de cada
+ * elemento para poder informar de la posición de los errores.
+ */
+final class JsonReader {
+
+    /** Elementos del documento JSON. */
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END }
+
+    /** Error de sintaxis JSON con la posición en la que se ha detectado. */
+    static final class SyntaxException extends IOException {
+        private static final long serialVersionUID = 1L;
+        final int line, column;
+        SyntaxException(String msg, int line, int column){ super(msg); this.line = line; this.column = column; }
+    }
+
+    // Estados de la pila de contenedores
+    private static final int EMPTY_DOCUMENT = 0, NONEMPTY_DOCUMENT = 1, EMPTY_OBJECT = 2, NONEMPTY_OBJECT = 3,
+        OBJECT_VALUE = 4, EMPTY_ARRAY = 5, NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+    private final char[] buf = new char[16 * 1024];
+    private int pos, lim;
+    /** Caracteres leídos antes del inicio de buf */
+    private long base;
+    /** Línea actual y posición absoluta en la que empieza */
+    private int line = 1;
+    private long lineStart;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+
+    /** Último elemento leído y su posición */
+    private Token token;
+    private int tokLine, tokColumn;
+    /** Texto de la última cadena, nombre o número */
+    private char[] val = new char[64];
+    private int valLen;
+
+    /** Resultado de la última conversión correcta con toInt. */
+    int intValue;
+    /** Resultado de la última conversión correcta con toDouble. */
+    double doubleValue;
+
+    JsonReader(Reader in){ this.in = in; }
+
+    /** @return Línea del último elemento leído (desde 1). */
+    int line(){ return tokLine; }
+
+    /** @return Columna del último elemento leído (desde 1). */
+    int column(){ return tokColumn; }
+
+    /**
+     * Avanza al siguiente elemento del documento.
+     * @return Elemento leído ({@link Token#END} al terminar el documento).
+     * @throws SyntaxException Si el documento no es JSON válido.
+     */
+    Token next() throws IOException {
+        int c = skipSpace();
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                if (c == ']') { depth--; return token = Token.END_ARRAY; }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                return value(c);
+            case NONEMPTY_ARRAY:
+                if (c == ']') { depth--; return token = Token.END_ARRAY; }
+                if (c != ',') throw syntax("Se esperaba ',' o ']'");
+                return value(skipSpace());
+            case EMPTY_OBJECT:
+                if (c == '}') { depth--; return token = Token.END_OBJECT; }
+                return name(c);
+            case NONEMPTY_OBJECT:
+                if (c == '}') { depth--; return token = Token.END_OBJECT; }
+                if (c != ',') throw syntax("Se esperaba ',' o '}'");
+                return name(skipSpace());
+            case OBJECT_VALUE:
+                if (c != ':') throw syntax("Se esperaba ':'");
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return value(skipSpace());
+            case EMPTY_DOCUMENT:
+                if (c < 0) return token = Token.END;
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return value(c);
+            default:
+                if (c < 0) return token = Token.END;
+                throw syntax("Contenido después del final del documento");
+        }
+    }
+
+    /**
+     * Salta el valor del elemento actual: si es el inicio de un objeto o un array,
+     * avanza hasta su cierre. Los valores simples ya están consumidos.
+     */
+    void skipCurrent() throws IOException {
+        if (token != Token.BEGIN_OBJECT && token != Token.BEGIN_ARRAY) return;
+        for (int n = 1; n > 0; ) {
+            Token t = next();
+            if (t == Token.BEGIN_OBJECT || t == Token.BEGIN_ARRAY) n++;
+            else if (t == Token.END_OBJECT || t == Token.END_ARRAY) n--;
+        }
+    }
+
+    /** Lee y salta el valor que sigue a un nombre. */
+    void skipValue() throws IOException { next(); skipCurrent(); }
+
+    /** @return Texto del último elemento (los contenedores se resumen como {...} o [...]). */
+    String text(){
+        if (token == Token.BEGIN_OBJECT) return "{...}";
+        if (token == Token.BEGIN_ARRAY) return "[...]";
+        return new String(val, 0, valLen);
+    }
+
+    /** @return true si el texto de la última cadena o nombre es exactamente el indicado. */
+    boolean textEquals(String s){
+        if (valLen != s.length()) return false;
+        for (int i = 0; i < valLen; i++) if (val[i] != s.charAt(i)) return false;
+        return true;
+    }
+
+    /**
+     * Convierte el último número (o cadena con un número, como en el JSON antiguo) a entero.
+     * @return false si no es un entero válido.
+     */
+    boolean toInt(){
+        if (token != Token.NUMBER && token != Token.STRING) return false;
+        int i = 0;
+        boolean neg = valLen > 0 && val[0] == '-';
+        if (neg) i++;
+        if (i == valLen) return false;
+        long v = 0;
+        for (; i < valLen; i++) {
+            char c = val[i];
+            if (c < '0' || c > '9') return toIntSlow();
+            v = v * 10 + (c - '0');
+            if (v > 2147483648L) return false;
+        }
+        if (neg) v = -v;
+        if (v > Integer.MAX_VALUE) return false;
+        intValue = (int) v;
+        return true;
+    }
+
+    // Números con decimales o exponente (p.ej. 10.0 o 1e2): se aceptan si son enteros exactos
+    private boolean toIntSlow(){
+        if (!toDouble()) return false;
+        double d = doubleValue;
+        if (d != Math.rint(d) || d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) return false;
+        intValue = (int) d;
+        return true;
+    }
+
+    /**
+     * Convierte el último número (o cadena con un número) a double.
+     * @return false si no es un número válido.
+     */
+    boolean toDouble(){
+        if (token != Token.NUMBER && token != Token.STRING) return false;
+        try { doubleValue = Double.parseDouble(new String(val, 0, valLen)); return true; }
+        catch (NumberFormatException ex) { return false; }
+    }
+
+    /** Crea un error de sintaxis en la posición del último elemento. */
+    SyntaxException syntax(String msg){ return new SyntaxException(msg, tokLine, tokColumn); }
+
+    // Lee un nombre de atributo (cadena seguida de ':')
+    private Token name(int c) throws IOException {
+        if (c != '"') throw syntax(c < 0 ? "Fin de fichero inesperado" : "Se esperaba un nombre entre comillas");
+        string();
+        stack[depth - 1] = OBJECT_VALUE;
+        return token = Token.NAME;
+    }
+
+    // Lee un valor empezando por el carácter c
+    private Token value(int c) throws IOException {
+        switch (c) {
+            case '{': push(EMPTY_OBJECT); return token = Token.BEGIN_OBJECT;
+            case '[': push(EMPTY_ARRAY); return token = Token.BEGIN_ARRAY;
+            case '"': string(); return token = Token.STRING;
+            case 't': literal("true"); return token = Token.BOOLEAN;
+            case 'f': literal("false"); return token = Token.BOOLEAN;
+            case 'n': literal("null"); return token = Token.NULL;
+            case -1: throw syntax("Fin de fichero inesperado");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) { number(c); return token = Token.NUMBER; }
+                throw syntax("Carácter inesperado '" + (char) c + "'");
+        }
+    }
+
+    private void push(int state){
+        if (depth == stack.length) stack = java.util.Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = state;
+    }
+
+    // Comprueba una palabra reservada cuyo primer carácter ya se ha leído
+    private void literal(String word) throws IOException {
+        valLen = 0;
+        add(word.charAt(0));
+        for (int i = 1; i < word.length(); i++) {
+            if (read() != word.charAt(i)) throw syntax("Valor no válido (se esperaba " + word + ")");
+            add(word.charAt(i));
+        }
+        if (isWordChar(peek())) throw syntax("Valor no válido (se esperaba " + word + ")");
+    }
+
+    // Lee un número (el primer carácter ya se ha leído) comprobando la gramática JSON
+    private void number(int c) throws IOException {
+        valLen = 0;
+        add((char) c);
+        if (c == '-') { c = read(); if (c < '0' || c > '9') throw syntax("Número no válido"); add((char) c); }
+        if (c != '0') digits();
+        if (peek() == '.') { add((char) read()); if (digits() == 0) throw syntax("Número no válido"); }
+        int p = peek();
+        if (p == 'e' || p == 'E') {
+            add((char) read());
+            p = peek();
+            if (p == '+' || p == '-') add((char) read());
+            if (digits() == 0) throw syntax("Número no válido");
+        }
+        if (isWordChar(peek())) throw syntax("Número no válido");
+    }
+
+    // Añade los dígitos siguientes; devuelve cuántos ha leído
+    private int digits() throws IOException {
+        int n = 0;
+        for (int p = peek(); p >= '0' && p <= '9'; p = peek()) { add((char) read()); n++; }
+        return n;
+    }
+
+    private static boolean isWordChar(int c){
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '.' || c == '_';
+    }
+
+    // Lee una cadena (la comilla inicial ya se ha leído) resolviendo los escapes
+    private void string() throws IOException {
+        valLen = 0;
+        for (;;) {
+            int c = read();
+            if (c == '"') return;
+            if (c < 0) throw syntax("Cadena sin terminar");
+            if (c < 0x20) throw syntax("Carácter de control sin escapar en una cadena");
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"': case '\\': case '/': break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'u':
+                        int u = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(read(), 16);
+                            if (d < 0) throw syntax("Escape \\u no válido");
+                            u = (u << 4) | d;
+                        }
+                        c = u;
+                        break;
+                    default: throw syntax("Escape no válido en una cadena");
+                }
+            }
+            add((char) c);
+        }
+    }
+
+    private void add(char c){
+        if (valLen == val.length) val = java.util.Arrays.copyOf(val, valLen * 2);
+        val[valLen++] = c;
+    }
+
+    // Salta espacios y saltos de línea; devuelve el siguiente carácter (consumido) y guarda su posición
+    private int skipSpace() throws IOException {
+        for (;;) {
+            if (pos == lim && !fill()) { mark(); return -1; }
+            char c = buf[pos];
+            if (c == '\n') { pos++; line++; lineStart = base + pos; }
+            else if (c == ' ' || c == '\t' || c == '\r') pos++;
+            else { mark(); pos++; return c; }
+        }
+    }
+
+    // Guarda la posición del elemento que empieza en pos
+    private void mark(){ tokLine = line; tokColumn = (int) (base + pos - lineStart) + 1; }
+
+    private int peek() throws IOException {
+        if (pos == lim && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos == lim && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    // Lee más caracteres en el buffer; devuelve false al final del fichero
+    private boolean fill() throws IOException {
+        base += lim;
+        pos = lim = 0;
+        int r;
+        while ((r = in.read(buf, 0, buf.length)) == 0) { }
+        if (r < 0) return false;
+        lim = r;
+        return true;
+    }
+}
@@ -1,47 +1,374 @@
 package es.ad.r1;
-import java.io.IOException; import java.nio.file.*;
+import java.io.*; import java.nio.channels.*; import java.nio.charset.StandardCharsets; import java.nio.file.*;
+import es.ad.r1.JsonReader.Token;
+/**
+ * Clase de utilidades para importar y exportar escenas en formato JSON.
+ *
+ * El documento se escribe en streaming, figura a figura, sobre un {@link FastWriter}, por lo que
+ * la memoria usada no depende del tamaño de la escena. Las coordenadas, grosores y opacidades se
+ * emiten como números JSON y cada figura incluye también sus opacidades y su etiqueta (si tiene).
+ * El modo compacto omite todos los espacios y saltos de línea, pensado para otros programas.
+ *
+ * La lectura usa un analizador en streaming ({@link JsonReader}) que construye las figuras según
+ * aparecen, sin crear un árbol del documento, y valida los datos igual que {@link TxtSceneIO}:
+ * las incidencias se registran en el {@link ValidationReport} con su línea y columna. También
+ * acepta el JSON antiguo, con los números escritos entre comillas.
+ */
 public class JsonSceneIO {
 
     /**
      * Escribe una escena en formato JSON en el archivo especificado.
-     * 
+     *
      * @param e    Escena a serializar.
      * @param path Ruta del archivo destino.
      * @throws IOException Si ocurre un error de E/S.
      */
     public static void write(Escena e, Path path) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\n  \"escena\": {\n");
-        sb.append("    \"dimensiones\": [").append(e.getWidth()).append(", ").append(e.getHeight()).append("],\n");
-        sb.append("    \"figuras\": [\n");
-        // Recorre todas las figuras de la escena y las serializa según su tipo
-        for (int i = 0; i < e.getFiguras().size(); i++) {
-            Figura f = e.getFiguras().get(i);
-            sb.append("      {");
-            // Según el tipo de figura, añade los atributos correspondientes
-            if (f instanceof Rectangulo) {
-                Rectangulo r = (Rectangulo) f;
-                sb.append("\"rectangulo\": {\"x\":\"").append(r.x).append("\",\"y\":\"").append(r.y)
-                  .append("\",\"width\":\"").append(r.width).append("\",\"height\":\"").append(r.height)
-                  .append("\",\"stroke-width\":\"").append(f.getStrokeWidth()).append("\",\"stroke\":\"").append(f.getStroke())
-                  .append("\",\"fill\":\"").append(f.getFill()).append("\"}");
-            } else if (f instanceof Circulo) {
-                Circulo c = (Circulo) f;
-                sb.append("\"circulo\": {\"cx\":\"").append(c.cx).append("\",\"cy\":\"").append(c.cy)
-                  .append("\",\"r\":\"").append(c.r).append("\",\"stroke-width\":\"").append(f.getStrokeWidth())
-                  .append("\",\"stroke\":\"").append(f.getStroke()).append("\",\"fill\":\"").append(f.getFill()).append("\"}");
-            } else if (f instanceof Linea) {
-                Linea l = (Linea) f;
-                sb.append("\"linea\": {\"x1\":\"").append(l.x1).append("\",\"y1\":\"").append(l.y1)
-                  .append("\",\"x2\":\"").append(l.x2).append("\",\"y2\":\"").append(l.y2)
-                  .append("\",\"stroke-width\":\"").append(f.getStrokeWidth()).append("\",\"stroke\":\"").append(f.getStroke()).append("\"}");
+        write(e, path, false);
+    }
+
+    /**
+     * Escribe una escena en formato JSON en el archivo especificado.
+     *
+     * @param e       Escena a serializar.
+     * @param path    Ruta del archivo destino.
+     * @param compact true para omitir espacios y saltos de línea.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, Path path, boolean compact) throws IOException {
+        try (SceneEncoder enc = encoder(path, compact)) {
+            SceneEncoder.encode(e, enc);
+        }
+    }
+
+    /**
+     * Escribe una escena en formato JSON en un canal (por ejemplo, un socket o un FileChannel).
+     *
+     * @param e       Escena a serializar.
+     * @param ch      Canal destino (no se cierra).
+     * @param compact true para omitir espacios y saltos de línea.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, WritableByteChannel ch, boolean compact) throws IOException {
+        write(e, new FastWriter(Channels.newWriter(ch, StandardCharsets.UTF_8.newEncoder(), -1)), compact);
+    }
+
+    /**
+     * Escribe una escena en formato JSON en un Writer, figura a figura.
+     *
+     * @param e       Escena a serializar.
+     * @param out     Destino (no se cierra).
+     * @param compact true para omitir espacios y saltos de línea.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, Writer out, boolean compact) throws IOException {
+        SceneEncoder.encode(e, new Encoder(out, compact));
+    }
+
+    /**
+     * Crea un codificador JSON que escribe en el archivo indicado.
+     *
+     * @param path    Ruta del archivo destino.
+     * @param compact true para omitir espacios y saltos de línea.
+     * @return Codificador; al cerrarlo se cierra el archivo.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public static SceneEncoder encoder(Path path, boolean compact) throws IOException {
+        return new Encoder(new FastWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder())), compact);
+    }
+
+    /** Codificador JSON en streaming: la coma se escribe antes de cada figura salvo la primera. */
+    static final class Encoder implements SceneEncoder {
+        private final Writer out;
+        private final boolean compact;
+        /** Figuras escritas */
+        private int n;
+
+        Encoder(Writer out, boolean compact){ this(out, compact, 0); }
+
+        /** Continúa un documento en el que ya hay escritas las figuras indicadas (para reescribir solo una parte). */
+        Encoder(Writer out, boolean compact, int written){ this.out = out; this.compact = compact; this.n = written; }
+
+        @Override
+        public void begin(int width, int height, int count) throws IOException {
+            out.write(compact ? "{\"escena\":{\"dimensiones\":[" : "{\n  \"escena\": {\n    \"dimensiones\": [");
+            Fmt.num(out, width); out.write(compact ? "," : ", "); Fmt.num(out, height);
+            out.write(compact ? "],\"figuras\":[" : "],\n    \"figuras\": [\n");
+        }
+
+        @Override
+        public void figura(Figura f) throws IOException {
+            if (n++ > 0) out.write(compact ? "," : ",\n");
+            if (!compact) out.write("      ");
+            out.write('{');
+            writeFigura(out, f, compact ? ":" : ": ");
+            out.write('}');
+        }
+
+        @Override
+        public void end() throws IOException {
+            if (!compact && n > 0) out.write('\n');
+            out.write(compact ? "]}}" : "    ]\n  }\n}\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    // Escribe el objeto de una figura: {"tipo": {atributos}}
+    private static void writeFigura(Writer out, Figura f, String sep) throws IOException {
+        // Según el tipo de figura, añade los atributos correspondientes
+        if (f instanceof Rectangulo) {
+            Rectangulo r = (Rectangulo) f;
+            out.write("\"rectangulo\""); out.write(sep);
+            out.write("{\"x\":"); Fmt.num(out, r.x); out.write(",\"y\":"); Fmt.num(out, r.y);
+            out.write(",\"width\":"); Fmt.num(out, r.width); out.write(",\"height\":"); Fmt.num(out, r.height);
+        } else if (f instanceof Circulo) {
+            Circulo c = (Circulo) f;
+            out.write("\"circulo\""); out.write(sep);
+            out.write("{\"cx\":"); Fmt.num(out, c.cx); out.write(",\"cy\":"); Fmt.num(out, c.cy);
+            out.write(",\"r\":"); Fmt.num(out, c.r);
+        } else if (f instanceof Linea) {
+            Linea l = (Linea) f;
+            out.write("\"linea\""); out.write(sep);
+            out.write("{\"x1\":"); Fmt.num(out, l.x1); out.write(",\"y1\":"); Fmt.num(out, l.y1);
+            out.write(",\"x2\":"); Fmt.num(out, l.x2); out.write(",\"y2\":"); Fmt.num(out, l.y2);
+        } else {
+            throw new IOException("Tipo de figura no soportado en JSON: " + f.getClass().getName());
+        }
+        out.write(",\"stroke-width\":"); Fmt.num(out, f.getStrokeWidth());
+        out.write(",\"stroke\":\""); color(out, f.getStrokeRgb(), f.getStroke()); out.write('"');
+        // Las líneas no tienen relleno
+        if (!(f instanceof Linea)) { out.write(",\"fill\":\""); color(out, f.getFillRgb(), f.getFill()); out.write('"'); }
+        out.write(",\"stroke-opacity\":"); opacity(out, f.getStrokeOpacity());
+        if (!(f instanceof Linea)) { out.write(",\"fill-opacity\":"); opacity(out, f.getFillOpacity()); }
+        if (f.getLabel() != null) { out.write(",\"label\":\""); Fmt.json(out, f.getLabel()); out.write('"'); }
+        out.write('}');
+    }
+
+    // Color empaquetado, o su texto original escapado si no es #rrggbb
+    private static void color(Writer out, int c, String texto) throws IOException {
+        if (ColorRGB.isTexto(c)) Fmt.json(out, texto); else ColorRGB.append(out, c);
+    }
+
+    // Opacidad en [0,1] como número JSON (NaN no es un número JSON válido: se escribe null)
+    private static void opacity(Writer out, double v) throws IOException {
+        if (Double.isNaN(v)) out.write("null"); else Fmt.opacity(out, v);
+    }
+
+    /**
+     * Lee una escena JSON y construye la Escena junto a su informe de validación.
+     *
+     * @param path Ruta del archivo JSON.
+     * @return ParseResult con la escena y el informe de validación.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult read(Path path) throws IOException { return read(path, new ValidationReport()); }
+
+    /**
+     * Lee una escena JSON desde un fichero registrando las incidencias en el informe indicado.
+     * 
+     * @param path   Fichero JSON.
+     * @param report Informe de validación destino.
+     * @return ParseResult con la escena y el informe.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult read(Path path, ValidationReport report) throws IOException {
+        try (Reader in = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8.newDecoder())) {
+            return read(in, report);
+        }
+    }
+
+    /**
+     * Lee una escena JSON desde un Reader (no lo cierra). Los errores de sintaxis detienen la
+     * lectura y se registran en el informe con su posición.
+     *
+     * @param in Origen del documento.
+     * @return ParseResult con la escena y el informe de validación.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult read(Reader in) throws IOException { return read(in, new ValidationReport()); }
+
+    // Lectura desde un Reader con un informe dado
+    static ParseResult read(Reader in, ValidationReport report) throws IOException {
+        JsonReader j = new JsonReader(in);
+        // Las figuras se añaden según se leen; las dimensiones se asignan al encontrarlas (pueden ir después)
+        Escena e = new Escena(0,0);
+        try {
+            Token t = j.next();
+            if (t == Token.END) { report.error(1, "Fichero vacío."); return new ParseResult(e, report); }
+            if (t != Token.BEGIN_OBJECT) throw j.syntax("Se esperaba '{'");
+            boolean escena = false;
+            while (j.next() == Token.NAME) {
+                if (j.textEquals("escena")) { escena = true; escena(j, report, e); }
+                else { warn(j, report, "Atributo desconocido", j.text()); j.skipValue(); }
+            }
+            j.next();
+            if (!escena) report.error(1, "Falta el objeto \"escena\".");
+        } catch (JsonReader.SyntaxException ex) {
+            report.error(ex.line, ex.column, ex.getMessage(), null);
+        }
+        return new ParseResult(e, report);
+    }
+
+    // Lee el objeto "escena": asigna sus dimensiones a la escena y le añade las figuras
+    private static void escena(JsonReader j, ValidationReport report, Escena e) throws IOException {
+        if (j.next() != Token.BEGIN_OBJECT) { error(j, report, "\"escena\" debe ser un objeto", null); j.skipCurrent(); return; }
+        int[] dim = null;
+        int line = j.line(), col = j.column();
+        while (j.next() == Token.NAME) {
+            if (j.textEquals("dimensiones")) {
+                dim = dimensiones(j, report);
+                if (dim != null) e.setDimensiones(dim[0], dim[1]);
+            } else if (j.textEquals("figuras")) {
+                if (j.next() != Token.BEGIN_ARRAY) { error(j, report, "\"figuras\" debe ser un array", null); j.skipCurrent(); continue; }
+                for (Token t; (t = j.next()) != Token.END_ARRAY; ) {
+                    if (t == Token.BEGIN_OBJECT) figura(j, report, e);
+                    else { error(j, report, "Se esperaba un objeto de figura", j.text()); j.skipCurrent(); }
+                }
+            } else {
+                warn(j, report, "Atributo desconocido", j.text());
+                j.skipValue();
             }
-            sb.append("}");
-            if (i < e.getFiguras().size() - 1) sb.append(",");
-            sb.append("\n");
         }
-        sb.append("    ]\n  }\n}\n");
-        // Escribe el contenido generado en el archivo destino
-        Files.writeString(path, sb.toString());
+        if (dim == null) report.error(line, col, "Faltan W y H.", null);
+    }
+
+    // Lee "dimensiones": [W, H]
+    private static int[] dimensiones(JsonReader j, ValidationReport report) throws IOException {
+        if (j.next() != Token.BEGIN_ARRAY) { error(j, report, "Faltan W y H.", null); j.skipCurrent(); return null; }
+        int[] dim = new int[2];
+        int n = 0;
+        for (Token t; (t = j.next()) != Token.END_ARRAY; n++) {
+            if (n < 2) dim[n] = entero(j, report);
+            else j.skipCurrent();
+        }
+        if (n < 2) { error(j, report, "Faltan W y H.", null); return null; }
+        return dim;
+    }
+
+    // Lee una figura {"tipo": {atributos}}; las figuras sin sus coordenadas no se añaden
+    private static void figura(JsonReader j, ValidationReport report, Escena e) throws IOException {
+        if (j.next() != Token.NAME) { error(j, report, "Figura vacía", null); return; }
+        String tipo = j.textEquals("rectangulo") ? "rectangulo" : j.textEquals("circulo") ? "circulo"
+            : j.textEquals("linea") ? "linea" : null;
+        if (tipo == null) {
+            error(j, report, "Tipo desconocido", j.text());
+            j.skipValue();
+        } else if (j.next() != Token.BEGIN_OBJECT) {
+            error(j, report, tipo + ": se esperaba un objeto con los atributos", null);
+            j.skipCurrent();
+        } else {
+            Figura f = atributos(j, report, tipo);
+            if (f != null) e.add(f);
+        }
+        while (j.next() == Token.NAME) { warn(j, report, "Atributo desconocido", j.text()); j.skipValue(); }
+    }
+
+    // Nombres de las coordenadas de cada tipo de figura
+    private static final String[] RECT = { "x", "y", "width", "height" }, CIRC = { "cx", "cy", "r" },
+        LINEA = { "x1", "y1", "x2", "y2" };
+
+    // Lee el objeto de atributos de una figura y la construye
+    private static Figura atributos(JsonReader j, ValidationReport report, String tipo) throws IOException {
+        int line = j.line(), col = j.column();
+        String[] campos = "rectangulo".equals(tipo) ? RECT : "circulo".equals(tipo) ? CIRC : LINEA;
+        int[] v = new int[campos.length];
+        boolean[] hay = new boolean[campos.length];
+        int sw = 0;
+        String stroke = null, fill = null;
+        boolean haySw = false, haySo = false, hayFo = false;
+        double so = 0, fo = 0;
+        String label = null;
+        while (j.next() == Token.NAME) {
+            int k = indexOf(j, campos);
+            if (k >= 0) {
+                j.next(); v[k] = entero(j, report); hay[k] = true;
+            } else if (j.textEquals("stroke")) {
+                if (!valorColor(j, report, "stroke")) continue;
+                // Como en TXT, un borde que no es #RRGGBB se advierte pero se conserva tal cual
+                if (j.textEquals("none") || color(j) == ColorRGB.INVALID) warn(j, report, "Color no parece #RRGGBB", j.text());
+                stroke = j.text();
+                j.skipCurrent();
+            } else if (j.textEquals("fill")) {
+                if (!valorColor(j, report, "fill")) continue;
+                int c = j.textEquals("none") ? ColorRGB.NONE : color(j);
+                if (c == ColorRGB.INVALID) warn(j, report, "fill inválido", j.text());
+                else fill = j.text();
+                j.skipCurrent();
+            } else if (j.textEquals("stroke-width")) {
+                j.next();
+                if (j.toInt()) { sw = j.intValue; haySw = true; } else invalid(j, report, "stroke-width");
+            } else if (j.textEquals("stroke-opacity")) {
+                // null es como se escribe una opacidad NaN
+                if (j.next() == Token.NULL) { so = Double.NaN; haySo = true; }
+                else if (j.toDouble()) { so = j.doubleValue; haySo = true; } else invalid(j, report, "stroke-opacity");
+            } else if (j.textEquals("fill-opacity")) {
+                if (j.next() == Token.NULL) { fo = Double.NaN; hayFo = true; }
+                else if (j.toDouble()) { fo = j.doubleValue; hayFo = true; } else invalid(j, report, "fill-opacity");
+            } else if (j.textEquals("label")) {
+                Token t = j.next();
+                if (t == Token.STRING) label = j.text(); else if (t != Token.NULL) invalid(j, report, "label");
+            } else {
+                warn(j, report, "Atributo desconocido", j.text());
+                j.skipValue();
+            }
+        }
+        for (int k = 0; k < campos.length; k++) {
+            if (!hay[k]) { report.error(line, col, tipo + ": falta " + campos[k], null); return null; }
+        }
+        Figura f = campos == RECT ? new Rectangulo(v[0], v[1], v[2], v[3], stroke)
+            : campos == CIRC ? new Circulo(v[0], v[1], v[2], stroke) : new Linea(v[0], v[1], v[2], v[3], stroke);
+        if (fill != null) f.setFill(fill);
+        if (haySw) f.setStrokeWidth(sw);
+        if (haySo) f.setStrokeOpacity(so);
+        if (hayFo) f.setFillOpacity(fo);
+        if (label != null) f.setLabel(label);
+        return f;
+    }
+
+    // Posición del nombre actual en la lista de campos, o -1
+    private static int indexOf(JsonReader j, String[] campos){
+        for (int k = 0; k < campos.length; k++) if (j.textEquals(campos[k])) return k;
+        return -1;
+    }
+
+    // Lee el valor de un color: si no es una cadena ni un número (p.ej. un objeto o un array) lo registra
+    // como error y lo salta, como el TXT rechaza un valor que no se puede leer
+    private static boolean valorColor(JsonReader j, ValidationReport report, String key) throws IOException {
+        Token t = j.next();
+        if (t == Token.STRING || t == Token.NUMBER) return true;
+        error(j, report, "Valor inválido para " + key, j.text());
+        j.skipCurrent();
+        return false;
+    }
+
+    // Color del valor actual (debe ser una cadena #RRGGBB), o ColorRGB.INVALID
+    private static int color(JsonReader j){
+        return ColorRGB.parse(j.text());
+    }
+
+    // Entero del valor actual con reporte de error (admite números entre comillas)
+    private static int entero(JsonReader j, ValidationReport report) throws IOException {
+        if (j.toInt()) return j.intValue;
+        error(j, report, "No es entero válido", "'" + j.text() + "'");
+        j.skipCurrent();
+        return 0;
+    }
+
+    // Advierte de un valor no válido en un atributo
+    private static void invalid(JsonReader j, ValidationReport report, String key) throws IOException {
+        warn(j, report, "Valor inválido para " + key, j.text());
+        j.skipCurrent();
+    }
+
+    // El mensaje "columna N: tipo: detalle" solo se construye si la incidencia cabe en el informe
+    private static void error(JsonReader j, ValidationReport report, String tipo, String detalle){
+        report.error(j.line(), j.column(), tipo, detalle);
+    }
+
+    private static void warn(JsonReader j, ValidationReport report, String tipo, String detalle){
+        report.warn(j.line(), j.column(), tipo, detalle);
     }
 }
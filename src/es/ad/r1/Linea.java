@@ -1,4 +1,5 @@
 package es.ad.r1;
+import java.io.IOException;
 
 /**
  * Representa una figura geométrica de tipo línea.
@@ -19,6 +20,8 @@ public class Linea extends Figura {
     public int x2;
     /** Coordenada Y del punto final */
     public int y2;
+    /** Color de borde por defecto */
+    public static final int DEFAULT_STROKE = 0xff6d00;
 
     /**
      * Constructor de la línea.
@@ -27,60 +30,74 @@ public class Linea extends Figura {
      * @param y1    Coordenada Y del punto inicial.
      * @param x2    Coordenada X del punto final.
      * @param y2    Coordenada Y del punto final.
-     * @param color Color del borde (stroke). Si es nulo, se usa un color por defecto.
+     * @param color Color del borde (stroke), que se conserva tal cual aunque no sea #RRGGBB. Si es nulo, se usa un color por defecto.
      */
     public Linea(int x1,int y1,int x2,int y2,String color){
-        this.x1=x1; this.y1=y1; this.x2=x2; this.y2=y2;
-        this.stroke=color!=null?color:"#ff6d00";
+        this(x1,y1,x2,y2,DEFAULT_STROKE);
+        if (color!=null) setStroke(color);
     }
 
     /**
-     * Devuelve una representación en texto plano de la línea.
-     * @return Cadena con los datos de la línea.
+     * Constructor de la línea con el color ya empaquetado.
+     * 
+     * @param x1    Coordenada X del punto inicial.
+     * @param y1    Coordenada Y del punto inicial.
+     * @param x2    Coordenada X del punto final.
+     * @param y2    Coordenada Y del punto final.
+     * @param color Color del borde (0xRRGGBB). Si no es un color RGB (p.ej. ColorRGB.INVALID), se usa el color por defecto.
      */
-    @Override
-    public String toTxt(){
-        return String.format("linea %d %d %d %d %s", x1,y1,x2,y2,stroke);
+    public Linea(int x1,int y1,int x2,int y2,int color){
+        this.x1=x1; this.y1=y1; this.x2=x2; this.y2=y2;
+        this.stroke=ColorRGB.isRgb(color)?color:DEFAULT_STROKE;
     }
 
     /**
-     * Devuelve una representación SVG de la línea.
-     * @return Cadena SVG que describe la línea.
+     * Escribe la representación en texto plano de la línea en el destino.
+     * @param out Destino de la salida.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String toSvg(){
-        return String.format(
-            "<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"%s\" stroke-width=\"%d\" stroke-opacity=\"%s\"/>",
-            x1,y1,x2,y2,stroke,strokeWidth,fmt01(strokeOpacity)
-        );
+    public void writeTxt(Appendable out) throws IOException {
+        out.append("linea "); Fmt.num(out,x1); out.append(' '); Fmt.num(out,y1);
+        out.append(' '); Fmt.num(out,x2); out.append(' '); Fmt.num(out,y2);
+        out.append(' '); ColorRGB.append(out,stroke,strokeTexto);
     }
 
     /**
-     * Devuelve una etiqueta SVG para la línea, mostrando su descripción.
-     * @return Cadena SVG con la etiqueta de la línea.
+     * Escribe la representación SVG de la línea en el destino.
+     * @param out   Destino de la salida.
+     * @param clase Clase CSS con el estilo, o null para escribirlo en atributos.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String labelSvg(){
-        int lx=(x1+x2)/2+8, ly=(y1+y2)/2;
-        String t = label!=null?label:String.format("L (%d,%d→%d,%d)", x1,y1,x2,y2);
-        return String.format("<text class=\"lbl\" x=\"%d\" y=\"%d\">%s</text>", lx, ly, esc(t));
+    public void writeSvg(Appendable out, String clase) throws IOException {
+        out.append("<line x1=\""); Fmt.num(out,x1); out.append("\" y1=\""); Fmt.num(out,y1);
+        out.append("\" x2=\""); Fmt.num(out,x2); out.append("\" y2=\""); Fmt.num(out,y2);
+        out.append('"'); writeStyleAttrs(out, clase, false); out.append("/>");
     }
 
     /**
-     * Normaliza un valor double entre 0 y 1 para atributos SVG.
-     * @param v Valor a normalizar.
-     * @return Cadena con el valor entre 0 y 1.
+     * Escribe la etiqueta SVG de la línea en el destino, mostrando su descripción.
+     * @param out Destino de la salida.
+     * @throws IOException Si ocurre un error de E/S.
      */
-    private String fmt01(double v){
-        return String.valueOf(Math.max(0,Math.min(1,v)));
+    @Override
+    public void writeLabelSvg(Appendable out) throws IOException {
+        openLabel(out, (x1+x2)/2+8, (y1+y2)/2);
+        if (label!=null) Fmt.xml(out,label);
+        else {
+            out.append("L ("); Fmt.num(out,x1); out.append(','); Fmt.num(out,y1);
+            out.append('→'); Fmt.num(out,x2); out.append(','); Fmt.num(out,y2); out.append(')');
+        }
+        out.append("</text>");
     }
 
-    /**
-     * Escapa caracteres especiales para texto SVG.
-     * @param s Cadena a escapar.
-     * @return Cadena escapada.
-     */
-    private String esc(String s){
-        return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;");
-    }
+    @Override public int getMinX(){ return Math.min(x1, x2); }
+    @Override public int getMinY(){ return Math.min(y1, y2); }
+    @Override public int getMaxX(){ return Math.max(x1, x2); }
+    @Override public int getMaxY(){ return Math.max(y1, y2); }
+
+    /** Distancia al segmento (la línea no tiene relleno). */
+    @Override
+    public double distanceTo(double px, double py){ return distanceToSegment(px, py, x1, y1, x2, y2); }
 }
@@ -1,63 +1,178 @@
 package es.ad.r1;
-import java.nio.file.*; import java.util.Scanner;
+import java.io.IOException; import java.io.Writer; import java.nio.file.*; import java.util.*;
 
 /**
  * Clase principal del programa. Permite importar, exportar y manipular escenas gráficas desde la línea de comandos.
  * 
  * El algoritmo principal interpreta el primer argumento como comando y ejecuta la acción correspondiente:
- * - import-txt: importa una escena desde un archivo de texto, valida y exporta en varios formatos.
- * - export-svg: exporta una escena desde TXT a SVG.
- * - export-json: exporta una escena desde TXT a JSON.
- * - serialize: serializa una escena desde TXT a binario.
+ * - import-txt: importa una escena desde un archivo de texto, valida y exporta en varios formatos
+ *   (con --incremental solo se regeneran las figuras de las líneas cambiadas, ver IncrementalExport).
+ * - export-svg: exporta una escena (TXT, JSON o BIN) a SVG (con --viewport x,y,w,h solo esa ventana;
+ *   con --lod escala, con nivel de detalle para esa escala de salida; con --css, estilos repetidos como clases CSS).
+ * - export-tiles: exporta una escena a SVG por teselas, en paralelo (ver TileExporter).
+ * - export-json: exporta una escena (TXT, JSON o BIN) a JSON (--compact para JSON sin espacios).
+ * - serialize: serializa una escena (TXT, JSON o BIN) a binario.
  * - deserialize: deserializa una escena binaria y la exporta a TXT.
+ * - batch: convierte todas las escenas de un directorio (o patrón glob) en un pool de hilos.
+ * - serve: servidor de conversión de escenas en un puerto TCP local.
+ * - watch: vigila un directorio y revalida y reexporta las escenas que cambian.
+ * - info: muestra las dimensiones y el número de figuras de una escena binaria.
+ * - generate: genera una escena sintética reproducible (TXT, JSON o BIN) para pruebas de carga.
+ * - validate: solo valida una escena, sin construirla (con --fail-fast, hasta el primer error).
  * - wizard/interactivo: lanza el asistente interactivo por consola para crear una escena.
  * 
+ * Con --stats los comandos de lectura y exportación muestran al terminar las métricas de cada etapa
+ * (tiempo, bytes, figuras por segundo, memoria reservada e incidencias, ver Metricas); import-txt las
+ * guarda además en metricas.json junto a validacion.txt.
+ * 
  * Las llamadas a clases auxiliares gestionan la lectura, validación, serialización y exportación:
  * - TxtSceneIO: lectura y escritura de escenas en formato texto.
  * - SvgSceneIO: exportación a SVG.
- * - JsonSceneIO: exportación a JSON.
+ * - TileExporter: exportación a SVG por teselas.
+ * - JsonSceneIO: lectura y exportación de JSON.
  * - BinSceneIO: serialización y deserialización binaria.
  * - ConsoleWizard: asistente interactivo para crear escenas.
+ * - BatchConverter: conversión por lotes de varios ficheros.
+ * - SceneServer: servidor de conversión.
+ * - SceneWatcher: vigilancia de un directorio de escenas.
+ * - SceneGenerator: generación de escenas sintéticas.
  * - ValidationReport: informe de validación de la escena.
+ * - Metricas: tiempos y contadores de cada etapa.
  * 
- * El método exportAll centraliza la exportación en todos los formatos soportados.
+ * El método exportAll centraliza la exportación en todos los formatos soportados (en una sola pasada).
  * El método parseBase permite personalizar el nombre base de los archivos exportados.
+ * El método leer lee la entrada TXT, JSON o BIN según su extensión (TXT en paralelo si se indica --parallel,
+ * o por columnas con --columnar).
  * El método printHelp muestra la ayuda de uso y los atributos opcionales.
  */
 public class Main {
     public static void main(String[] args) throws Exception {
         if(args.length<1){ printHelp(); return; }
-        String cmd=args[0];
+        String cmd=args[0]; Metricas m=new Metricas(); boolean stats=hasFlag(args,"--stats",1);
         // Importa una escena desde TXT, valida y exporta en todos los formatos
         if("import-txt".equals(cmd)){
-            if(args.length<3){ System.err.println("Uso: import-txt <input.txt> <out_dir> [--name base]"); return; }
-            Path in=Paths.get(args[1]), out=Paths.get(args[2]); String base=parseBase(args,"escena",3); Files.createDirectories(out);
-            ParseResult pr=TxtSceneIO.parse(in); Path val=out.resolve("validacion.txt"); Files.writeString(val, pr.getReport().toText());
-            if(!pr.getReport().hasErrors()){ Escena e=pr.getEscena(); exportAll(e,out,base); TxtSceneIO.write(e,out.resolve(base+".txt"));
+            if(args.length<3){ System.err.println("Uso: import-txt <input> <out_dir> [--name base] [--incremental]"); return; }
+            Path in=Paths.get(args[1]), out=Paths.get(args[2]); String base=parseBase(args,"escena",3);
+            // Reexportación incremental: solo para TXT, guarda un índice junto a las salidas. Siempre revisa el
+            // fichero completo y guarda todas las incidencias en el índice, así que no admite las opciones que lo acotan
+            if(hasFlag(args,"--incremental",3) && !esJsonOBin(in)){
+                for(String o: new String[]{"--fail-fast","--max-errores","--max-incidencias","--stats"})
+                    if(hasFlag(args,o,3)){ System.err.println("Uso: import-txt <input.txt> <out_dir> --incremental [--name base] (no admite "+o+")"); return; }
+                IncrementalExport.run(in,out,base); return;
+            }
+            Files.createDirectories(out);
+            // Las incidencias se escriben en validacion.txt según se detectan (como mucho --max-incidencias)
+            Path val=out.resolve("validacion.txt"); ParseResult pr;
+            try(Writer w=Files.newBufferedWriter(val)){
+                ValidationReport rep=new ValidationReport(limite(args), w); pr=leer(in,args,rep,m,salidas(out,base));
+                medir(m,"validacion.txt",val,0,()->{ rep.writeResumen(w); w.flush(); });
+            }
+            if(!pr.getReport().hasErrors()){ Escena e=pr.getEscena(); exportAll(e,out,base,m);
                 System.out.println("OK. Exportados JSON/SVG/TXT/BIN en "+out.toAbsolutePath()); }
             else System.out.println("Se han detectado errores. Revise "+val.toAbsolutePath());
+            if(stats){ System.out.print(m.toText()); m.writeJson(out.resolve("metricas.json")); }
         // Exporta una escena TXT a SVG
         } else if("export-svg".equals(cmd)){
-            if(args.length<3){ System.err.println("Uso: export-svg <input.txt> <out.svg>"); return; }
-            Escena e=TxtSceneIO.parse(Paths.get(args[1])).getEscena(); SvgSceneIO.write(e, Paths.get(args[2]));
+            if(args.length<3){ System.err.println("Uso: export-svg <input> <out.svg> [--css] [--viewport x,y,w,h] [--lod escala [--min-label px]]"); return; }
+            String vp=option(args,"--viewport",null,3), lod=option(args,"--lod",null,3);
+            int[] v=vp==null ? null : enteros(vp,",",4);
+            if(v!=null && (v[2]<=0 || v[3]<=0)){ System.err.println("Uso: export-svg <input> <out.svg> --viewport x,y,w,h (w y h deben ser positivos: "+vp+")"); return; }
+            Path dst=Paths.get(args[2]); Escena e=leer(Paths.get(args[1]),args,m,dst).getEscena();
+            medir(m,"svg",dst,e.getFiguras().size(),()->{
+                if(lod!=null) SvgSceneIO.writeLod(e, dst, Double.parseDouble(lod), Integer.parseInt(option(args,"--min-label","16",3)));
+                else if(v==null) SvgSceneIO.write(e, dst, hasFlag(args,"--css",3));
+                else SvgSceneIO.writeViewport(e, dst, v[0], v[1], v[2], v[3]);
+            });
+            if(stats) System.out.print(m.toText());
+        // Exporta una escena a SVG por teselas (un fichero por tesela)
+        } else if("export-tiles".equals(cmd)){
+            if(args.length<3){ System.err.println("Uso: export-tiles <input> <out_dir> [--tile 1024|WxH] [--threads N]"); return; }
+            String t=option(args,"--tile","1024",3); int[] tam=t.indexOf('x')<0 ? new int[]{ Integer.parseInt(t), Integer.parseInt(t) } : enteros(t,"x",2);
+            int threads=Integer.parseInt(option(args,"--threads",String.valueOf(Runtime.getRuntime().availableProcessors()),3));
+            Escena e=leer(Paths.get(args[1]),args,m).getEscena(); Path out=Paths.get(args[2]); int n;
+            long t0=System.nanoTime();
+            try(Metricas.Etapa et=m.etapa("teselas")){
+                n=TileExporter.export(e, out, tam[0], tam[1], threads); et.figuras(e.getFiguras().size());
+                if(stats) try(DirectoryStream<Path> ds=Files.newDirectoryStream(out,"tile_*.svg")){ long b=0; for(Path p: ds) b+=Files.size(p); et.escritos(b); }
+            }
+            System.out.println(String.format(Locale.ROOT, "OK. %d teselas de %dx%d en %s (%.0f ms)", n, tam[0], tam[1], out.toAbsolutePath(), (System.nanoTime()-t0)/1e6));
+            if(stats) System.out.print(m.toText());
         // Exporta una escena TXT a JSON
         } else if("export-json".equals(cmd)){
-            if(args.length<3){ System.err.println("Uso: export-json <input.txt> <out.json>"); return; }
-            Escena e=TxtSceneIO.parse(Paths.get(args[1])).getEscena(); JsonSceneIO.write(e, Paths.get(args[2]));
+            if(args.length<3){ System.err.println("Uso: export-json <input> <out.json> [--compact]"); return; }
+            Path dst=Paths.get(args[2]); Escena e=leer(Paths.get(args[1]),args,m,dst).getEscena();
+            medir(m,"json",dst,e.getFiguras().size(),()->JsonSceneIO.write(e, dst, hasFlag(args,"--compact",3)));
+            if(stats) System.out.print(m.toText());
         // Serializa una escena TXT a binario
         } else if("serialize".equals(cmd)){
-            if(args.length<3){ System.err.println("Uso: serialize <input.txt> <out.bin>"); return; }
-            Escena e=TxtSceneIO.parse(Paths.get(args[1])).getEscena(); BinSceneIO.serialize(e, Paths.get(args[2]));
+            if(args.length<3){ System.err.println("Uso: serialize <input> <out.bin>"); return; }
+            Path dst=Paths.get(args[2]); Escena e=leer(Paths.get(args[1]),args,m,dst).getEscena();
+            medir(m,"bin",dst,e.getFiguras().size(),()->BinSceneIO.serialize(e, dst));
+            if(stats) System.out.print(m.toText());
         // Deserializa una escena binaria y la exporta a TXT
         } else if("deserialize".equals(cmd)){
             if(args.length<3){ System.err.println("Uso: deserialize <input.bin> <out.txt>"); return; }
-            Escena e=BinSceneIO.deserialize(Paths.get(args[1])); TxtSceneIO.write(e, Paths.get(args[2]));
+            Path src=Paths.get(args[1]), dst=Paths.get(args[2]); Escena e;
+            try(Metricas.Etapa et=m.etapa("lectura")){ e=proyectable(src,dst) ? BinSceneIO.open(src) : BinSceneIO.deserialize(src); et.leidos(Files.size(src)).figuras(e.getFiguras().size()); }
+            medir(m,"txt",dst,e.getFiguras().size(),()->TxtSceneIO.write(e, dst));
+            if(stats) System.out.print(m.toText());
+        // Muestra dimensiones y número de figuras de una escena binaria sin decodificarla
+        } else if("info".equals(cmd)){
+            if(args.length<2){ System.err.println("Uso: info <input.bin>"); return; }
+            Escena e=BinSceneIO.open(Paths.get(args[1]));
+            System.out.println("dimensiones "+e.getWidth()+" "+e.getHeight()+"\nfiguras "+e.getFiguras().size());
+        // Genera una escena sintética en streaming (memoria constante)
+        } else if("generate".equals(cmd)){
+            if(args.length<2){ System.err.println("Uso: generate <out.txt|out.json|out.bin> [--figuras N] [--seed 42] [--dimensiones WxH] [--mezcla 1:1:1] [--tamano 100] [--distribucion uniforme|lognormal] [--estilos K] [--atributos 0.5] [--etiquetas 0.1] [--errores 0] [--compact]"); return; }
+            Path out=Paths.get(args[1]); long n=Long.parseLong(option(args,"--figuras","1000000",2).replace("_",""));
+            int[] dim=enteros(option(args,"--dimensiones","10000x10000",2),"x",2), mezcla=enteros(option(args,"--mezcla","1:1:1",2),":",3);
+            SceneGenerator g=new SceneGenerator(Long.parseLong(option(args,"--seed","42",2)), dim[0], dim[1])
+                .mezcla(mezcla[0], mezcla[1], mezcla[2]).tamano(Integer.parseInt(option(args,"--tamano","100",2)))
+                .distribucion(SceneGenerator.Distribucion.valueOf(option(args,"--distribucion","uniforme",2).toUpperCase(Locale.ROOT)))
+                .estilos(Integer.parseInt(option(args,"--estilos","0",2)))
+                .atributos(Double.parseDouble(option(args,"--atributos","0.5",2))).etiquetas(Double.parseDouble(option(args,"--etiquetas","0.1",2)))
+                .errores(Double.parseDouble(option(args,"--errores","0",2)));
+            if(out.getParent()!=null) Files.createDirectories(out.getParent());
+            long t0=System.nanoTime(); long err=g.write(out, n, hasFlag(args,"--compact",2)); double s=(System.nanoTime()-t0)/1e9;
+            long bytes=Files.size(out);
+            System.out.println(String.format(Locale.ROOT, "OK. %d figuras (%d líneas con errores) en %s: %.1f MB en %.1f s (%.0f MB/s)",
+                n, err, out.toAbsolutePath(), bytes/1e6, s, bytes/1e6/Math.max(s,1e-9)));
+        // Solo valida la escena (TXT sin construir figuras ni escena); termina con código 1 si no es válida
+        } else if("validate".equals(cmd)){
+            if(args.length<2){ System.err.println("Uso: validate <input> [--fail-fast] [--max-errores K] [--max-incidencias N] [--stats]"); return; }
+            Path in=Paths.get(args[1]);
+            ValidationReport rep=new ValidationReport(Integer.parseInt(option(args,"--max-incidencias","10000",2)), System.out);
+            try(Metricas.Etapa et=m.etapa("validación")){
+                if(esJsonOBin(in)) et.figuras(leer(in,args,rep).getEscena().getFiguras().size());
+                else TxtSceneIO.validate(in, rep, maxErrores(args));
+            }
+            m.incidencias(rep); rep.writeResumen(System.out);
+            if(stats) System.out.print(m.toText());
+            System.out.println(rep.hasErrors() ? "NO VÁLIDO" : "VÁLIDO"); System.out.flush();
+            if(rep.hasErrors()) System.exit(1);
+        // Convierte por lotes todas las escenas de un directorio o patrón glob
+        } else if("batch".equals(cmd)){
+            if(args.length<3){ System.err.println("Uso: batch <dir|glob> <out_dir> [--threads N] [--fail-fast] [--parallel]"); return; }
+            int threads=Integer.parseInt(option(args,"--threads",String.valueOf(Runtime.getRuntime().availableProcessors()),3));
+            BatchConverter.run(args[1], Paths.get(args[2]), threads, hasFlag(args,"--fail-fast",3), args);
+        // Servidor de conversión en un puerto local (la JVM se mantiene arrancada)
+        } else if("serve".equals(cmd)){
+            int port=Integer.parseInt(option(args,"--port","7070",1));
+            int threads=Integer.parseInt(option(args,"--threads",String.valueOf(Runtime.getRuntime().availableProcessors()),1));
+            int maxBytes=Integer.parseInt(option(args,"--max-bytes",String.valueOf(SceneServer.DEFAULT_MAX_BYTES),1));
+            new SceneServer(port, threads, maxBytes, hasFlag(args,"--quiet",1)).run();
+        // Vigila un directorio y revalida/reexporta las escenas que cambian
+        } else if("watch".equals(cmd)){
+            if(args.length<3){ System.err.println("Uso: watch <dir> <out_dir> [--debounce ms] [--threads N]"); return; }
+            long debounce=Long.parseLong(option(args,"--debounce","200",3));
+            int threads=Integer.parseInt(option(args,"--threads",String.valueOf(Runtime.getRuntime().availableProcessors()),3));
+            new SceneWatcher(Paths.get(args[1]), Paths.get(args[2]), debounce, threads).run();
         // Asistente interactivo para crear una escena
         } else if("wizard".equals(cmd) || "interactivo".equals(cmd)){
             Path out=Paths.get(args.length>=2?args[1]:"out"); String base=parseBase(args,"escena",2); Files.createDirectories(out);
             ConsoleWizard w=new ConsoleWizard(); Scanner sc=new Scanner(System.in); Escena e=w.buildScene(sc);
             Path val=out.resolve("validacion.txt"); ValidationReport r=new ValidationReport(); Files.writeString(val, r.toText());
-            exportAll(e,out,base); TxtSceneIO.write(e,out.resolve(base+".txt"));
+            exportAll(e,out,base);
             System.out.println("OK. Escena creada y exportada a: "+out.toAbsolutePath());
         } else printHelp();
     }
@@ -73,18 +188,196 @@ public class Main {
     static String parseBase(String[] args,String def,int from){ for(int i=from;i<args.length-1;i++) if("--name".equals(args[i])) return args[i+1]; return def; }
 
     /**
-     * Exporta la escena en todos los formatos soportados (TXT, JSON, SVG, BIN).
+     * Obtiene el valor de una opción con argumento (p.ej. --threads 4).
+     * 
+     * @param args Array de argumentos.
+     * @param name Nombre de la opción.
+     * @param def  Valor por defecto.
+     * @param from Índice desde el que buscar.
+     * @return Valor de la opción o el valor por defecto.
+     */
+    static String option(String[] args,String name,String def,int from){ for(int i=from;i<args.length-1;i++) if(name.equals(args[i])) return args[i+1]; return def; }
+
+    /**
+     * Convierte una lista de enteros separados (p.ej. 0,0,800,600) en un array.
+     * 
+     * @param s   Texto con los enteros.
+     * @param sep Separador.
+     * @param n   Número de enteros esperado.
+     * @return Array de n enteros.
+     */
+    static int[] enteros(String s,String sep,int n){
+        String[] p=s.split(java.util.regex.Pattern.quote(sep)); if(p.length!=n) throw new IllegalArgumentException("Se esperaban "+n+" valores separados por '"+sep+"': "+s);
+        int[] v=new int[n]; for(int i=0;i<n;i++) v[i]=Integer.parseInt(p[i].trim()); return v;
+    }
+
+    /**
+     * Indica si un flag aparece entre los argumentos.
+     * 
+     * @param args Array de argumentos.
+     * @param flag Flag a buscar (p.ej. --parallel).
+     * @param from Índice desde el que buscar.
+     * @return true si el flag está presente.
+     */
+    static boolean hasFlag(String[] args,String flag,int from){ for(int i=from;i<args.length;i++) if(flag.equals(args[i])) return true; return false; }
+
+    /**
+     * Lee una escena según la extensión del fichero: .json con JsonSceneIO, .bin con BinSceneIO
+     * (proyectado en memoria, salvo que alguna de las salidas sea el propio fichero: entonces se lee completo
+     * porque escribirla lo sobrescribiría) y el resto como TXT; con --parallel el TXT se parsea por bloques en paralelo
+     * y con --columnar se guarda en una EscenaColumnar (menos memoria en escenas muy grandes). Con --fail-fast
+     * o --max-errores K el TXT se lee de forma secuencial y se deja de leer al llegar a 1 o K errores.
+     * 
+     * @param in      Fichero de entrada.
+     * @param args    Argumentos de la línea de comandos.
+     * @param salidas Ficheros que se van a escribir con la escena leída.
+     * @return Escena e informe de validación.
+     * @throws Exception Si ocurre un error de lectura.
+     */
+    static ParseResult leer(Path in,String[] args,Path... salidas) throws Exception { return leer(in,args,new ValidationReport(limite(args)),salidas); }
+
+    /**
+     * Lee una escena como {@link #leer(Path, String[])} registrando las incidencias en el informe indicado.
+     * 
+     * @param in     Fichero de entrada.
+     * @param args   Argumentos de la línea de comandos.
+     * @param report  Informe de validación destino.
+     * @param salidas Ficheros que se van a escribir con la escena leída.
+     * @return Escena e informe de validación.
+     * @throws Exception Si ocurre un error de lectura.
+     */
+    static ParseResult leer(Path in,String[] args,ValidationReport report,Path... salidas) throws Exception {
+        String name=in.getFileName().toString().toLowerCase(java.util.Locale.ROOT);
+        if(name.endsWith(".json")) return JsonSceneIO.read(in,report);
+        if(name.endsWith(".bin")) return new ParseResult(proyectable(in,salidas) ? BinSceneIO.open(in) : BinSceneIO.deserialize(in), report);
+        int maxErrores=maxErrores(args);
+        if(maxErrores<Integer.MAX_VALUE) return TxtSceneIO.parse(in,report,maxErrores);
+        if(hasFlag(args,"--columnar",3)) return TxtSceneIO.parseColumnar(in,report);
+        return hasFlag(args,"--parallel",3) ? TxtSceneIO.parseParallel(in,java.util.concurrent.ForkJoinPool.commonPool(),report) : TxtSceneIO.parse(in,report);
+    }
+
+    /**
+     * Obtiene el número máximo de incidencias que se conservan en el informe (--max-incidencias, 10000 por
+     * defecto); las demás solo se cuentan por tipo.
+     * 
+     * @param args Argumentos de la línea de comandos.
+     * @return Límite de incidencias.
+     */
+    static int limite(String[] args){ return Integer.parseInt(option(args,"--max-incidencias","10000",3)); }
+
+    /**
+     * Obtiene el número de errores a partir del que se deja de leer una entrada TXT: 1 con --fail-fast,
+     * el valor de --max-errores o, si no se indica ninguno, sin límite (Integer.MAX_VALUE).
+     * 
+     * @param args Argumentos de la línea de comandos.
+     * @return Presupuesto de errores.
+     */
+    static int maxErrores(String[] args){
+        if(hasFlag(args,"--fail-fast",2)) return 1;
+        int k=Integer.parseInt(option(args,"--max-errores",String.valueOf(Integer.MAX_VALUE),2));
+        if(k<1) throw new IllegalArgumentException("--max-errores debe ser al menos 1: "+k);
+        return k;
+    }
+
+    /**
+     * Lee una escena como {@link #leer(Path, String[])} midiendo la etapa de lectura (lectura, parseo y
+     * validación, que se hacen en la misma pasada) y registrando sus incidencias en las métricas.
+     * 
+     * @param in     Fichero de entrada.
+     * @param args   Argumentos de la línea de comandos.
+     * @param report  Informe de validación destino.
+     * @param m       Métricas de la ejecución.
+     * @param salidas Ficheros que se van a escribir con la escena leída.
+     * @return Escena e informe de validación.
+     * @throws Exception Si ocurre un error de lectura.
+     */
+    static ParseResult leer(Path in,String[] args,ValidationReport report,Metricas m,Path... salidas) throws Exception {
+        try(Metricas.Etapa et=m.etapa("lectura")){
+            ParseResult pr=leer(in,args,report,salidas); m.incidencias(pr.getReport());
+            et.leidos(Files.size(in)).figuras(pr.getEscena().getFiguras().size()); return pr;
+        }
+    }
+
+    // Lectura medida con un informe acotado según --max-incidencias
+    static ParseResult leer(Path in,String[] args,Metricas m,Path... salidas) throws Exception { return leer(in,args,new ValidationReport(limite(args)),m,salidas); }
+
+    // true si ninguna salida es el propio fichero de entrada, que entonces se puede proyectar en lugar de copiarlo
+    static boolean proyectable(Path in,Path... salidas) throws IOException {
+        for(Path s: salidas) if(Files.exists(s) && Files.isSameFile(in,s)) return false;
+        return true;
+    }
+
+    /** @return Ficheros que escribe {@link #exportAll(Escena, Path, String)} en el directorio indicado. */
+    static Path[] salidas(Path out,String base){
+        return new Path[]{ out.resolve(base+"_export.txt"), out.resolve(base+".json"), out.resolve(base+".svg"), out.resolve(base+".bin") };
+    }
+
+    /** Acción de un comando que puede lanzar excepciones (para medirla como etapa). */
+    interface Accion { void run() throws Exception; }
+
+    /**
+     * Ejecuta una acción como etapa de las métricas, anotando las figuras y el tamaño del fichero escrito.
+     * 
+     * @param m       Métricas de la ejecución.
+     * @param nombre  Nombre de la etapa.
+     * @param dst     Fichero que escribe la acción.
+     * @param figuras Figuras que procesa.
+     * @param a       Acción a ejecutar.
+     * @throws Exception Si la acción falla.
+     */
+    static void medir(Metricas m,String nombre,Path dst,long figuras,Accion a) throws Exception {
+        try(Metricas.Etapa et=m.etapa(nombre)){ a.run(); et.figuras(figuras); if(Files.exists(dst)) et.escritos(Files.size(dst)); }
+    }
+
+    // true si la entrada se lee como JSON o BIN (por su extensión)
+    static boolean esJsonOBin(Path in){
+        String name=in.getFileName().toString().toLowerCase(java.util.Locale.ROOT);
+        return name.endsWith(".json") || name.endsWith(".bin");
+    }
+
+    /**
+     * Exporta la escena en todos los formatos soportados (TXT, JSON, SVG, BIN) en una sola pasada:
+     * las figuras se recorren una vez y cada formato se escribe en su propio hilo (ExportPipeline).
+     * La copia base.txt se obtiene copiando base_export.txt en lugar de volver a generarla.
+     * 
+     * @param e    Escena a exportar.
+     * @param out  Directorio de salida.
+     * @param base Nombre base de los archivos.
+     * @throws Exception Si ocurre un error en la exportación.
+     */
+    static void exportAll(Escena e, Path out, String base) throws Exception { exportAll(e,out,base,null); }
+
+    /**
+     * Exporta la escena en todos los formatos como {@link #exportAll(Escena, Path, String)}, midiendo
+     * la exportación completa y cada formato por separado (tiempo, bytes y memoria de su hilo escritor).
      * 
      * @param e    Escena a exportar.
      * @param out  Directorio de salida.
      * @param base Nombre base de los archivos.
+     * @param m    Métricas de la ejecución (null para no medir).
      * @throws Exception Si ocurre un error en la exportación.
      */
-    static void exportAll(Escena e, Path out, String base) throws Exception {
-        TxtSceneIO.write(e, out.resolve(base+"_export.txt"));
-        JsonSceneIO.write(e, out.resolve(base+".json"));
-        SvgSceneIO.write(e, out.resolve(base+".svg"));
-        BinSceneIO.serialize(e, out.resolve(base+".bin"));
+    static void exportAll(Escena e, Path out, String base, Metricas m) throws Exception {
+        Path[] destinos=salidas(out,base); Path txt=destinos[0], json=destinos[1], svg=destinos[2], bin=destinos[3];
+        List<SceneEncoder> encoders=new ArrayList<>();
+        try (Metricas.Etapa et=m==null? null : m.etapa("exportación")) {
+            try {
+                encoders.add(TxtSceneIO.encoder(txt));
+                encoders.add(JsonSceneIO.encoder(json, false));
+                encoders.add(SvgSceneIO.encoder(svg));
+                encoders.add(BinSceneIO.encoder(bin));
+            } catch (IOException ex) {
+                for (SceneEncoder enc: encoders) try { enc.close(); } catch (IOException ex2) { ex.addSuppressed(ex2); }
+                throw ex;
+            }
+            if (m!=null) {
+                String[] nombres={ "txt", "json", "svg", "bin" };
+                for (int i=0;i<encoders.size();i++) encoders.set(i, m.medir(nombres[i], encoders.get(i), destinos[i]));
+            }
+            ExportPipeline.export(e, encoders);
+            Files.copy(txt, out.resolve(base+".txt"), StandardCopyOption.REPLACE_EXISTING);
+            if (et!=null) et.figuras(e.getFiguras().size()).escritos(Files.size(txt)*2+Files.size(json)+Files.size(svg)+Files.size(bin));
+        }
     }
 
     /**
@@ -92,12 +385,30 @@ public class Main {
      */
     static void printHelp(){
         System.out.println("Uso:\n"
-            +"  import-txt <input.txt> <out_dir> [--name base]\n"
-            +"  export-svg <input.txt> <out.svg>\n"
-            +"  export-json <input.txt> <out.json>\n"
-            +"  serialize  <input.txt> <out.bin>\n"
+            +"  import-txt <input> <out_dir> [--name base] [--parallel] [--incremental] [--fail-fast|--max-errores K]\n"
+            +"             [--max-incidencias N] [--stats]   (--incremental no admite --fail-fast, --max-errores,\n"
+            +"             --max-incidencias ni --stats)\n"
+            +"  export-svg <input> <out.svg> [--parallel] [--css] [--viewport x,y,w,h] [--lod escala [--min-label 16]]\n"
+            +"  export-tiles <input> <out_dir> [--tile 1024|WxH] [--threads N]\n"
+            +"  export-json <input> <out.json> [--parallel] [--compact]\n"
+            +"  serialize  <input> <out.bin> [--parallel]\n"
             +"  deserialize <input.bin> <out.txt>\n"
+            +"  info <input.bin>\n"
+            +"  generate <out.txt|out.json|out.bin> [--figuras 1000000] [--seed 42] [--dimensiones 10000x10000] [--mezcla 1:1:1]\n"
+            +"           [--tamano 100] [--distribucion uniforme|lognormal] [--estilos K] [--atributos 0.5] [--etiquetas 0.1]\n"
+            +"           [--errores 0] [--compact]\n"
+            +"  validate <input> [--fail-fast] [--max-errores K] [--max-incidencias N] [--stats]\n"
+            +"  batch <dir|\"glob\"> <out_dir> [--threads N] [--fail-fast] [--parallel]\n"
+            +"  serve [--port 7070] [--threads N] [--max-bytes 268435456] [--quiet]\n"
+            +"  watch <dir> <out_dir> [--debounce 200] [--threads N]\n"
             +"  wizard [out_dir] [--name base]\n"
+            +"La entrada <input> puede ser .txt, .json o .bin (según la extensión).\n"
+            +"Con --columnar la entrada TXT se guarda por columnas (escenas muy grandes con menos memoria).\n"
+            +"Con --fail-fast (o --max-errores K) la lectura TXT se detiene en el primer error (o en el K-ésimo).\n"
+            +"Con --max-incidencias N (10000 por defecto) el informe conserva las N primeras incidencias y cuenta\n"
+            +"el resto por tipo; import-txt las escribe en validacion.txt según las detecta.\n"
+            +"Con --stats se muestran al terminar el tiempo, los bytes, las figuras/s, la memoria reservada y las incidencias\n"
+            +"de cada etapa (import-txt las guarda también en metricas.json junto a validacion.txt).\n"
             +"Atributos TXT opcionales: fill=#rrggbb sw=3 so=0.8 fo=0.6 stroke=#rrggbb label=Mi_Figura");
     }
 }
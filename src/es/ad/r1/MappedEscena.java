@@ -0,0 +1,102 @@
+package es.ad.r1;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Escena de solo lectura respaldada por un fichero BIN proyectado en memoria.
+ *
+ * No decodifica nada al abrirse: las figuras se construyen desde el MappedByteBuffer cada vez
+ * que se accede a ellas a través de {@link #getFiguras()}, y la tabla de etiquetas solo se indexa
+ * la primera vez que se necesita una etiqueta. Los registros se proyectan en segmentos de como
+ * máximo 1 GiB, de modo que admite ficheros mayores que el límite de 2 GiB de un único buffer.
+ *
+ * Las figuras devueltas son copias: modificarlas no cambia el fichero. Se obtiene con
+ * {@link BinSceneIO#open(java.nio.file.Path)}.
+ */
+final class MappedEscena extends Escena {
+    private static final long serialVersionUID = 1L;
+
+    /** Registros por segmento proyectado */
+    private static final int RECORDS_PER_SEGMENT = (1 << 30) / BinSceneIO.RECORD_SIZE;
+
+    /** Segmentos con los registros de figura */
+    private final transient MappedByteBuffer[] segmentos;
+    /** Región con la tabla de etiquetas */
+    private final transient MappedByteBuffer etiquetas;
+    /** Número de figuras */
+    private final int count;
+    /** Posición de cada etiqueta dentro de la tabla (se calcula la primera vez que se usa) */
+    private transient volatile int[] offsets;
+    /** Vista de lista sobre los registros */
+    private final transient List<Figura> figuras = new Vista();
+
+    MappedEscena(FileChannel ch, int width, int height, int count, long labelsPos) throws IOException {
+        super(width, height);
+        this.count = count;
+        int n = (count + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT;
+        segmentos = new MappedByteBuffer[n];
+        for (int s = 0; s < n; s++) {
+            long first = (long) s * RECORDS_PER_SEGMENT;
+            long recs = Math.min(RECORDS_PER_SEGMENT, count - first);
+            segmentos[s] = ch.map(FileChannel.MapMode.READ_ONLY, BinSceneIO.HEADER_SIZE + first * BinSceneIO.RECORD_SIZE,
+                recs * BinSceneIO.RECORD_SIZE);
+        }
+        etiquetas = ch.map(FileChannel.MapMode.READ_ONLY, labelsPos, ch.size() - labelsPos);
+    }
+
+    /** @return Vista de solo lectura que decodifica cada figura al acceder a ella */
+    @Override
+    public List<Figura> getFiguras(){ return figuras; }
+
+    /** La escena proyectada es de solo lectura. */
+    @Override
+    public void add(Figura f){ throw new UnsupportedOperationException("Escena BIN proyectada: solo lectura"); }
+
+    /** Decodifica la figura i directamente desde el segmento que la contiene. */
+    private Figura decode(int i){
+        try {
+            return BinSceneIO.readFigura(segmentos[i / RECORDS_PER_SEGMENT],
+                (i % RECORDS_PER_SEGMENT) * BinSceneIO.RECORD_SIZE, this::label);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** Devuelve el texto de la etiqueta k, indexando la tabla si aún no se había hecho. */
+    private String label(int k){
+        int[] off = offsets;
+        if (off == null) {
+            // Los tamaños se comprueban contra la región antes de reservar nada (el fichero puede estar corrupto)
+            int n = etiquetas.getInt(0), lim = etiquetas.limit();
+            if (n < 0 || n > (lim - 4) / 4) throw new UncheckedIOException(new IOException("Tabla de etiquetas no válida: " + n + " cadenas"));
+            off = new int[n];
+            for (int i = 0, p = 4; i < off.length; i++) {
+                int len = p <= lim - 4 ? etiquetas.getInt(p) : -1;
+                if (len < 0 || len > lim - p - 4) throw new UncheckedIOException(new IOException("Tabla de etiquetas no válida"));
+                off[i] = p; p += 4 + len;
+            }
+            offsets = off;
+        }
+        int p = off[k], len = etiquetas.getInt(p);
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) b[i] = etiquetas.get(p + 4 + i);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // Al serializarse se guarda como una escena normal con todas sus figuras
+    private Object writeReplace() throws ObjectStreamException {
+        Escena e = new Escena(getWidth(), getHeight());
+        for (Figura f : figuras) e.add(f);
+        return e;
+    }
+
+    /** Lista de acceso aleatorio sobre los registros proyectados. */
+    private final class Vista extends AbstractList<Figura> implements RandomAccess {
+        @Override public Figura get(int i){ Objects.checkIndex(i, count); return decode(i); }
+        @Override public int size(){ return count; }
+    }
+}
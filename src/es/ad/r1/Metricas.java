@@ -0,0 +1,191 @@
+package es.ad.r1;
+import java.io.IOException; import java.lang.management.ManagementFactory; import java.nio.file.*; import java.util.*;
+
+/**
+ * Métricas de una ejecución: tiempo de cada etapa (lectura, escritura del informe, exportación y cada
+ * uno de los formatos), bytes leídos y escritos, figuras por segundo, memoria reservada e incidencias
+ * de validación por severidad.
+ *
+ * Cada etapa se mide con try-with-resources:
+ * <pre>
+ *   try (Metricas.Etapa et = m.etapa("lectura")) { ...; et.leidos(bytes).figuras(n); }
+ * </pre>
+ * La memoria reservada se obtiene de ThreadMXBean (getThreadAllocatedBytes). Las etapas que se miden
+ * desde el hilo principal suman la de todos los hilos vivos (incluidos los del pool de parseo en
+ * paralelo y los escritores del pipeline); los codificadores medidos con {@link #medir} cuentan solo
+ * la de su hilo escritor, porque se ejecutan a la vez. Si la JVM no ofrece la medida se indica -1.
+ *
+ * El resultado se muestra como tabla ({@link #toText()}) o como JSON ({@link #toJson()}), que
+ * import-txt guarda como metricas.json junto a validacion.txt cuando se indica --stats.
+ */
+public final class Metricas {
+
+    /** ThreadMXBean con medida de memoria reservada por hilo (null si la JVM no la ofrece) */
+    private static final com.sun.management.ThreadMXBean HILOS = hilos();
+
+    /** Etapas terminadas, en el orden en que se cierran */
+    private final List<Etapa> etapas = new ArrayList<>();
+    /** Incidencias de validación por severidad (null si no se ha validado nada) */
+    private int[] incidencias;
+
+    /**
+     * Empieza una etapa medida desde el hilo actual (memoria de todos los hilos).
+     * @param nombre Nombre de la etapa.
+     * @return Etapa en curso; se registra al cerrarla.
+     */
+    public Etapa etapa(String nombre){ return new Etapa(nombre, false); }
+
+    /**
+     * Envuelve un codificador para medir su tiempo (de begin a close), el tiempo que pasa dentro de
+     * sus llamadas (sin las esperas a la cola del pipeline: indica qué formato limita la exportación),
+     * los bytes del fichero que escribe y la memoria reservada por su hilo. Las llamadas se delegan sin cambios.
+     * @param nombre  Nombre de la etapa (p.ej. el formato).
+     * @param enc     Codificador medido.
+     * @param destino Fichero que escribe el codificador (null si no escribe en fichero).
+     * @return Codificador que mide y delega en enc.
+     */
+    public SceneEncoder medir(String nombre, SceneEncoder enc, Path destino){
+        return new SceneEncoder() {
+            private Etapa et;
+            private long n, ocupado;
+            public void begin(int width, int height, int count) throws IOException {
+                et = new Etapa(nombre, true);
+                long t = System.nanoTime(); enc.begin(width, height, count); ocupado += System.nanoTime() - t;
+            }
+            public void figura(Figura f) throws IOException { long t = System.nanoTime(); enc.figura(f); ocupado += System.nanoTime() - t; n++; }
+            public void end() throws IOException { long t = System.nanoTime(); enc.end(); ocupado += System.nanoTime() - t; }
+            public void close() throws IOException {
+                long t = System.nanoTime();
+                try { enc.close(); }
+                finally {
+                    if (et != null) {
+                        et.ocupado = ocupado + System.nanoTime() - t; et.figuras(n);
+                        if (destino != null && Files.exists(destino)) et.escritos(Files.size(destino));
+                        et.close(); et = null;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Registra las incidencias de un informe de validación por severidad.
+     * @param r Informe de validación.
+     */
+    public synchronized void incidencias(ValidationReport r){
+        if (incidencias == null) incidencias = new int[3];
+        incidencias[0] += r.getErrors(); incidencias[1] += r.getWarnings(); incidencias[2] += r.getInfos();
+    }
+
+    /** @return Etapas registradas hasta el momento. */
+    public synchronized List<Etapa> etapas(){ return new ArrayList<>(etapas); }
+
+    /** Devuelve las métricas como tabla de texto (una etapa por línea). */
+    public String toText(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-16s %10s %10s %12s %12s %12s %14s %12s%n", "etapa", "ms", "ocupado ms", "leído MB", "escrito MB", "figuras", "figuras/s", "reservado MB"));
+        for (Etapa e : etapas())
+            sb.append(String.format(Locale.ROOT, "%-16s %10.1f %10s %12s %12s %12d %14.0f %12s%n", e.nombre, e.nanos/1e6,
+                e.ocupado < 0 ? "-" : String.format(Locale.ROOT, "%.1f", e.ocupado/1e6), mb(e.leidos), mb(e.escritos), e.figuras, e.figurasPorSegundo(), mb(e.reservados)));
+        int[] inc = incidencias();
+        if (inc != null) sb.append(String.format("incidencias: %d ERROR, %d WARN, %d INFO%n", inc[0], inc[1], inc[2]));
+        return sb.toString();
+    }
+
+    /** Devuelve las métricas en JSON (bytes y nanosegundos; -1 si un dato no está disponible). */
+    public String toJson(){
+        StringBuilder sb = new StringBuilder("{\n  \"etapas\": [");
+        List<Etapa> l = etapas();
+        for (int i = 0; i < l.size(); i++) {
+            Etapa e = l.get(i);
+            sb.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.ROOT,
+                "    {\"nombre\": \"%s\", \"nanos\": %d, \"nanosOcupado\": %d, \"bytesLeidos\": %d, \"bytesEscritos\": %d, \"figuras\": %d, \"figurasPorSegundo\": %.1f, \"bytesReservados\": %d}",
+                e.nombre, e.nanos, e.ocupado, e.leidos, e.escritos, e.figuras, e.figurasPorSegundo(), e.reservados));
+        }
+        sb.append(l.isEmpty() ? "]" : "\n  ]");
+        int[] inc = incidencias();
+        if (inc != null) sb.append(String.format(",\n  \"incidencias\": {\"ERROR\": %d, \"WARN\": %d, \"INFO\": %d}", inc[0], inc[1], inc[2]));
+        return sb.append("\n}\n").toString();
+    }
+
+    /**
+     * Guarda las métricas en JSON.
+     * @param path Fichero destino.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public void writeJson(Path path) throws IOException { Files.writeString(path, toJson()); }
+
+    private synchronized int[] incidencias(){ return incidencias == null ? null : incidencias.clone(); }
+
+    private synchronized void registrar(Etapa e){ etapas.add(e); }
+
+    // Megabytes con un decimal, o "-" si el dato no se ha medido
+    private static String mb(long bytes){ return bytes < 0 ? "-" : String.format(Locale.ROOT, "%.1f", bytes/1e6); }
+
+    // Memoria reservada por el hilo actual o por todos los hilos vivos (-1 si no se puede medir)
+    private static long reservados(boolean hilo){
+        if (HILOS == null) return -1;
+        if (hilo) return HILOS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long total = 0;
+        for (long b : HILOS.getThreadAllocatedBytes(HILOS.getAllThreadIds())) if (b > 0) total += b;
+        return total;
+    }
+
+    private static com.sun.management.ThreadMXBean hilos(){
+        try {
+            java.lang.management.ThreadMXBean t = ManagementFactory.getThreadMXBean();
+            if (!(t instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean s = (com.sun.management.ThreadMXBean) t;
+            if (!s.isThreadAllocatedMemorySupported()) return null;
+            if (!s.isThreadAllocatedMemoryEnabled()) s.setThreadAllocatedMemoryEnabled(true);
+            return s;
+        } catch (UnsupportedOperationException | SecurityException ex) { return null; }
+    }
+
+    /**
+     * Etapa en curso: mide el tiempo y la memoria reservada desde que se crea hasta que se cierra.
+     * Los bytes y las figuras los indica quien la usa.
+     */
+    public final class Etapa implements AutoCloseable {
+        /** Nombre de la etapa */
+        public final String nombre;
+        /** true si la memoria se mide solo en el hilo que la creó */
+        private final boolean hilo;
+        private final long t0, r0;
+        /** Duración en nanosegundos (al cerrarse) */
+        public long nanos;
+        /** Nanosegundos dentro de las llamadas al codificador medido (-1 si no aplica) */
+        public long ocupado = -1;
+        /** Bytes leídos y escritos (-1 si no aplica) */
+        public long leidos = -1, escritos = -1;
+        /** Figuras procesadas */
+        public long figuras;
+        /** Bytes reservados en el heap durante la etapa (-1 si no se puede medir) */
+        public long reservados = -1;
+        private boolean cerrada;
+
+        private Etapa(String nombre, boolean hilo){
+            this.nombre = nombre; this.hilo = hilo; this.r0 = reservados(hilo); this.t0 = System.nanoTime();
+        }
+
+        /** Indica los bytes leídos. */
+        public Etapa leidos(long bytes){ leidos = bytes; return this; }
+        /** Indica los bytes escritos. */
+        public Etapa escritos(long bytes){ escritos = bytes; return this; }
+        /** Indica las figuras procesadas. */
+        public Etapa figuras(long n){ figuras = n; return this; }
+
+        /** @return Figuras por segundo (0 si la etapa no ha procesado figuras). */
+        public double figurasPorSegundo(){ return figuras == 0 ? 0 : figuras / Math.max(nanos/1e9, 1e-9); }
+
+        /** Termina la etapa y la registra en las métricas (solo la primera vez). */
+        @Override public void close(){
+            if (cerrada) return;
+            cerrada = true;
+            nanos = System.nanoTime() - t0;
+            long r = reservados(hilo);
+            if (r0 >= 0 && r >= 0) reservados = Math.max(0, r - r0);
+            registrar(this);
+        }
+    }
+}
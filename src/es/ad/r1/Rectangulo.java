@@ -1,4 +1,5 @@
 package es.ad.r1;
+import java.io.IOException;
 
 /**
  * Representa una figura geométrica de tipo rectángulo.
@@ -19,6 +20,8 @@ public class Rectangulo extends Figura {
     public int width;
     /** Alto del rectángulo */
     public int height;
+    /** Color de borde por defecto */
+    public static final int DEFAULT_STROKE = 0x333333;
 
     /**
      * Constructor del rectángulo.
@@ -27,54 +30,76 @@ public class Rectangulo extends Figura {
      * @param y     Coordenada Y de la esquina superior izquierda.
      * @param width Ancho del rectángulo.
      * @param height Alto del rectángulo.
-     * @param color Color del borde (stroke). Si es nulo, se usa un color por defecto.
+     * @param color Color del borde (stroke), que se conserva tal cual aunque no sea #RRGGBB. Si es nulo, se usa un color por defecto.
      */
     public Rectangulo(int x,int y,int width,int height,String color){
-        this.x=x; this.y=y; this.width=width; this.height=height; this.stroke = color!=null?color:"#333";
+        this(x,y,width,height,DEFAULT_STROKE);
+        if (color!=null) setStroke(color);
     }
 
     /**
-     * Devuelve una representación en texto plano del rectángulo.
-     * @return Cadena con los datos del rectángulo.
+     * Constructor del rectángulo con el color ya empaquetado.
+     * 
+     * @param x     Coordenada X de la esquina superior izquierda.
+     * @param y     Coordenada Y de la esquina superior izquierda.
+     * @param width Ancho del rectángulo.
+     * @param height Alto del rectángulo.
+     * @param color Color del borde (0xRRGGBB). Si no es un color RGB (p.ej. ColorRGB.INVALID), se usa el color por defecto.
      */
-    @Override
-    public String toTxt(){ 
-        return String.format("rectangulo %d %d %d %d %s", x,y,width,height,stroke); 
+    public Rectangulo(int x,int y,int width,int height,int color){
+        this.x=x; this.y=y; this.width=width; this.height=height; this.stroke = ColorRGB.isRgb(color)?color:DEFAULT_STROKE;
     }
 
     /**
-     * Devuelve una representación SVG del rectángulo.
-     * @return Cadena SVG que describe el rectángulo.
+     * Escribe la representación en texto plano del rectángulo en el destino.
+     * @param out Destino de la salida.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String toSvg(){
-        return String.format(
-            "<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" stroke=\"%s\" stroke-width=\"%d\" stroke-opacity=\"%s\" fill=\"%s\" fill-opacity=\"%s\"/>",
-            x,y,width,height,stroke,strokeWidth,fmt01(strokeOpacity),fill,fmt01(fillOpacity)
-        );
+    public void writeTxt(Appendable out) throws IOException {
+        out.append("rectangulo "); Fmt.num(out,x); out.append(' '); Fmt.num(out,y);
+        out.append(' '); Fmt.num(out,width); out.append(' '); Fmt.num(out,height);
+        out.append(' '); ColorRGB.append(out,stroke,strokeTexto);
     }
 
     /**
-     * Devuelve una etiqueta SVG para el rectángulo, mostrando su descripción.
-     * @return Cadena SVG con la etiqueta del rectángulo.
+     * Escribe la representación SVG del rectángulo en el destino.
+     * @param out   Destino de la salida.
+     * @param clase Clase CSS con el estilo, o null para escribirlo en atributos.
+     * @throws IOException Si ocurre un error de E/S.
      */
     @Override
-    public String labelSvg(){
-        String t = label!=null?label:String.format("Rect (%d,%d,%d,%d)", x,y,width,height);
-        return String.format("<text class=\"lbl\" x=\"%d\" y=\"%d\">%s</text>", x+8, y+16, esc(t));
+    public void writeSvg(Appendable out, String clase) throws IOException {
+        out.append("<rect x=\""); Fmt.num(out,x); out.append("\" y=\""); Fmt.num(out,y);
+        out.append("\" width=\""); Fmt.num(out,width); out.append("\" height=\""); Fmt.num(out,height);
+        out.append('"'); writeStyleAttrs(out, clase, true); out.append("/>");
     }
 
     /**
-     * Normaliza un valor double entre 0 y 1 para atributos SVG.
-     * @param v Valor a normalizar.
-     * @return Cadena con el valor entre 0 y 1.
+     * Escribe la etiqueta SVG del rectángulo en el destino, mostrando su descripción.
+     * @param out Destino de la salida.
+     * @throws IOException Si ocurre un error de E/S.
      */
-    private String fmt01(double v){ return String.valueOf(Math.max(0,Math.min(1,v))); }
+    @Override
+    public void writeLabelSvg(Appendable out) throws IOException {
+        openLabel(out, x+8, y+16);
+        if (label!=null) Fmt.xml(out,label);
+        else {
+            out.append("Rect ("); Fmt.num(out,x); out.append(','); Fmt.num(out,y);
+            out.append(','); Fmt.num(out,width); out.append(','); Fmt.num(out,height); out.append(')');
+        }
+        out.append("</text>");
+    }
 
-    /**
-     * Escapa caracteres especiales para texto SVG.
-     * @param s Cadena a escapar.
-     * @return Cadena escapada.
-     */
-    private String esc(String s){ return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;"); }
+    @Override public int getMinX(){ return sat(Math.min((long) x, (long) x + width)); }
+    @Override public int getMinY(){ return sat(Math.min((long) y, (long) y + height)); }
+    @Override public int getMaxX(){ return sat(Math.max((long) x, (long) x + width)); }
+    @Override public int getMaxY(){ return sat(Math.max((long) y, (long) y + height)); }
+
+    /** Distancia al rectángulo: 0 dentro si tiene relleno; si no, al contorno. */
+    @Override
+    public double distanceTo(double px, double py){
+        double x0 = x, x1 = (double) x + width, y0 = y, y1 = (double) y + height;
+        return distanceToBox(px, py, Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1), fill != ColorRGB.NONE);
+    }
 }
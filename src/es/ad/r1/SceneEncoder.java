@@ -0,0 +1,39 @@
+package es.ad.r1;
+import java.io.Closeable; import java.io.IOException;
+
+/**
+ * Codificador de escenas en streaming: recibe las dimensiones, cada figura en orden y el final
+ * del documento, sin necesitar la escena completa.
+ *
+ * Lo implementan los escritores de TXT, JSON, SVG y BIN, de modo que la escena se puede recorrer
+ * una sola vez y alimentar varios formatos a la vez (ver {@link ExportPipeline}). Al cerrarse
+ * libera el destino que haya abierto.
+ */
+public interface SceneEncoder extends Closeable {
+
+    /**
+     * Empieza el documento.
+     * @param width  Ancho de la escena.
+     * @param height Alto de la escena.
+     * @param count  Número de figuras que se van a codificar.
+     */
+    void begin(int width, int height, int count) throws IOException;
+
+    /** Codifica la siguiente figura. */
+    void figura(Figura f) throws IOException;
+
+    /** Termina el documento y vuelca lo pendiente al destino. */
+    void end() throws IOException;
+
+    /**
+     * Codifica una escena completa en el codificador (no lo cierra).
+     * @param e   Escena a codificar.
+     * @param enc Codificador destino.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    static void encode(Escena e, SceneEncoder enc) throws IOException {
+        enc.begin(e.getWidth(), e.getHeight(), e.getFiguras().size());
+        for (Figura f : e.getFiguras()) enc.figura(f);
+        enc.end();
+    }
+}
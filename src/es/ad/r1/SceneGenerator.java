@@ -0,0 +1,273 @@
+package es.ad.r1;
+import java.io.*; import java.nio.charset.StandardCharsets; import java.nio.file.*; import java.util.*;
+
+/**
+ * Generador de escenas sintéticas reproducibles para pruebas de rendimiento y de carga.
+ *
+ * Con la misma semilla y la misma configuración genera siempre las mismas figuras, en cualquier
+ * máquina. Se configura la proporción de rectángulos, círculos y líneas, el tamaño máximo de las
+ * figuras y su distribución (uniforme o log-normal: muchas pequeñas y pocas grandes), el número de
+ * estilos distintos, la fracción de figuras con atributos opcionales (relleno, grosor y opacidades),
+ * la fracción con etiqueta y, en TXT, la fracción de líneas con errores. Las figuras se pueden
+ * obtener como una Escena en memoria, enviarse una a una a un {@link SceneEncoder} o escribirse en
+ * un fichero TXT, JSON o BIN en streaming, sin guardarlas (memoria constante).
+ *
+ * Uso: new SceneGenerator(42, 10000, 10000).mezcla(2, 1, 1).atributos(0.5).etiquetas(0.1).escena(100000)
+ */
+public final class SceneGenerator {
+
+    /** Opacidades posibles (con tres decimales como mucho, como las de las escenas reales) */
+    private static final double[] OPACIDADES = { 0.25, 0.4, 0.5, 0.6, 0.75, 0.8, 0.9, 1.0 };
+    /** Prefijos de las etiquetas; cada uno va seguido de un número menor que NUMEROS_ETIQUETA */
+    private static final String[] PREFIJOS = { "Sensor", "Zona", "Nodo", "Tubo", "Figura" };
+    private static final int NUMEROS_ETIQUETA = 10000;
+    /** Tipos de error que se inyectan en TXT */
+    private static final int ERRORES = 6;
+
+    /** Distribución del tamaño de las figuras */
+    public enum Distribucion {
+        /** Entre 1 y el tamaño máximo con la misma probabilidad */
+        UNIFORME,
+        /** Log-normal con mediana tamaño/20, recortada al tamaño máximo: muchas pequeñas y pocas grandes */
+        LOGNORMAL
+    }
+
+    private final long seed;
+    private final int width, height;
+    private int rectangulos = 1, circulos = 1, lineas = 1;
+    private int tamano = 100;
+    private Distribucion distribucion = Distribucion.UNIFORME;
+    private double atributos = 0.5, etiquetas = 0.1, errores = 0;
+    /** Estilos posibles (0 = cada figura con colores al azar) y su paleta, creada al generar */
+    private int estilos;
+    private int[] paletaStroke, paletaFill, paletaGrosor;
+    private double[] paletaSo, paletaFo;
+
+    /**
+     * @param seed   Semilla: la misma semilla da la misma escena.
+     * @param width  Ancho de la escena.
+     * @param height Alto de la escena.
+     */
+    public SceneGenerator(long seed, int width, int height){
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Dimensiones no válidas: " + width + "x" + height);
+        this.seed = seed; this.width = width; this.height = height;
+    }
+
+    /**
+     * Proporción de cada tipo de figura (pesos relativos; 2, 1, 1 = mitad rectángulos).
+     * @return Este generador.
+     */
+    public SceneGenerator mezcla(int rectangulos, int circulos, int lineas){
+        if (rectangulos < 0 || circulos < 0 || lineas < 0 || rectangulos + circulos + lineas == 0) {
+            throw new IllegalArgumentException("Mezcla no válida: " + rectangulos + ":" + circulos + ":" + lineas);
+        }
+        this.rectangulos = rectangulos; this.circulos = circulos; this.lineas = lineas;
+        return this;
+    }
+
+    /**
+     * Tamaño máximo de las figuras (ancho y alto, diámetro o proyección de la línea).
+     * @return Este generador.
+     */
+    public SceneGenerator tamano(int max){
+        if (max < 1) throw new IllegalArgumentException("Tamaño no válido: " + max);
+        this.tamano = max;
+        return this;
+    }
+
+    /**
+     * Distribución del tamaño de las figuras.
+     * @return Este generador.
+     */
+    public SceneGenerator distribucion(Distribucion d){ this.distribucion = Objects.requireNonNull(d); return this; }
+
+    /**
+     * Número de estilos distintos (borde, relleno, grosor y opacidades): cada figura toma uno de
+     * una paleta de k estilos. Con 0 cada figura tiene colores al azar.
+     * @return Este generador.
+     */
+    public SceneGenerator estilos(int k){
+        if (k < 0) throw new IllegalArgumentException("Número de estilos no válido: " + k);
+        this.estilos = k;
+        return this;
+    }
+
+    /**
+     * Fracción (0 a 1) de líneas con errores al escribir TXT: tipo desconocido, parámetros que faltan,
+     * números o colores no válidos y atributos desconocidos o con valores no válidos. Sirve para
+     * probar el informe de validación; en JSON y BIN no se inyectan errores.
+     * @return Este generador.
+     */
+    public SceneGenerator errores(double p){ this.errores = fraccion(p); return this; }
+
+    /**
+     * Fracción (0 a 1) de figuras con atributos opcionales: relleno, grosor y opacidades.
+     * @return Este generador.
+     */
+    public SceneGenerator atributos(double p){ this.atributos = fraccion(p); return this; }
+
+    /**
+     * Fracción (0 a 1) de figuras con etiqueta.
+     * @return Este generador.
+     */
+    public SceneGenerator etiquetas(double p){ this.etiquetas = fraccion(p); return this; }
+
+    /** @return Ancho de las escenas generadas */
+    public int getWidth(){ return width; }
+
+    /** @return Alto de las escenas generadas */
+    public int getHeight(){ return height; }
+
+    /**
+     * Genera una escena en memoria.
+     * @param n Número de figuras.
+     * @return Escena con n figuras.
+     */
+    public Escena escena(int n){
+        Escena e = new Escena(width, height);
+        SplittableRandom rnd = aleatorio();
+        for (int i = 0; i < n; i++) e.add(figura(rnd, i));
+        return e;
+    }
+
+    /**
+     * Genera n figuras y las envía al codificador (begin, una llamada por figura y end) sin guardarlas.
+     * @param n   Número de figuras.
+     * @param enc Codificador destino (no se cierra).
+     * @throws IOException Si el codificador falla.
+     */
+    public void generar(long n, SceneEncoder enc) throws IOException {
+        SplittableRandom rnd = aleatorio();
+        enc.begin(width, height, (int) Math.min(n, Integer.MAX_VALUE));
+        for (long i = 0; i < n; i++) enc.figura(figura(rnd, i));
+        enc.end();
+    }
+
+    /**
+     * Escribe n figuras en un fichero en streaming; el formato se elige por la extensión
+     * (.json, .bin o TXT en otro caso). Solo en TXT se inyectan líneas con errores.
+     *
+     * @param out     Fichero destino.
+     * @param n       Número de figuras (en BIN, como mucho Integer.MAX_VALUE).
+     * @param compact En JSON, true para JSON sin espacios.
+     * @return Número de líneas con errores inyectados.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public long write(Path out, long n, boolean compact) throws IOException {
+        if (n < 0) throw new IllegalArgumentException("Número de figuras no válido: " + n);
+        String nombre = out.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".bin")) {
+            if (n > Integer.MAX_VALUE) throw new IllegalArgumentException("BIN admite como mucho " + Integer.MAX_VALUE + " figuras");
+            try (SceneEncoder enc = BinSceneIO.encoder(out)) { generar(n, enc); }
+            return 0;
+        }
+        if (nombre.endsWith(".json")) {
+            try (SceneEncoder enc = JsonSceneIO.encoder(out, compact)) { generar(n, enc); }
+            return 0;
+        }
+        try (FastWriter w = new FastWriter(new OutputStreamWriter(Files.newOutputStream(out), StandardCharsets.UTF_8.newEncoder()))) {
+            return writeTxt(w, n);
+        }
+    }
+
+    // Escribe la escena en TXT con atributos, sustituyendo una fracción de las líneas por líneas con errores
+    private long writeTxt(Writer w, long n) throws IOException {
+        SplittableRandom rnd = aleatorio(), fallos = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        long inyectados = 0;
+        w.write("dimensiones "); Fmt.num(w, width); w.write(' '); Fmt.num(w, height); w.write('\n');
+        for (long i = 0; i < n; i++) {
+            Figura f = figura(rnd, i);
+            if (errores > 0 && fallos.nextDouble() < errores) { lineaConError(w, f, fallos.nextInt(ERRORES)); inyectados++; }
+            else writeTxtLine(w, f);
+            w.write('\n');
+        }
+        return inyectados;
+    }
+
+    // Línea con un error: los tipos 0 a 2 son errores (la línea no crea figura) y los demás, avisos
+    private static void lineaConError(Writer w, Figura f, int tipo) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        f.writeTxt(sb);
+        int a = sb.indexOf(" ") + 1, b = sb.indexOf(" ", a);
+        switch (tipo) {
+            // Tipo desconocido
+            case 0: w.write("triangulo"); w.append(sb, a - 1, sb.length()); break;
+            // Faltan parámetros: solo el tipo y la primera coordenada
+            case 1: w.append(sb, 0, b); break;
+            // Un número no válido en la geometría
+            case 2: w.append(sb, 0, a).append('x').append(sb, a, sb.length()); break;
+            // Color de borde no válido
+            case 3: w.append(sb, 0, sb.lastIndexOf(" ")).append(" #zzzzzz"); break;
+            // Valor no válido de un atributo
+            case 4: w.append(sb).append(" sw=abc"); break;
+            // Atributo desconocido
+            default: writeTxtLine(w, f); w.write(" grosor=2");
+        }
+    }
+
+    // Generador de la secuencia de figuras; prepara la paleta de estilos si hace falta
+    private SplittableRandom aleatorio(){
+        if (estilos > 0 && (paletaStroke == null || paletaStroke.length != estilos)) {
+            SplittableRandom p = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+            paletaStroke = new int[estilos]; paletaFill = new int[estilos]; paletaGrosor = new int[estilos];
+            paletaSo = new double[estilos]; paletaFo = new double[estilos];
+            for (int k = 0; k < estilos; k++) {
+                paletaStroke[k] = p.nextInt(1 << 24); paletaFill[k] = p.nextInt(1 << 24); paletaGrosor[k] = 1 + p.nextInt(8);
+                paletaSo[k] = OPACIDADES[p.nextInt(OPACIDADES.length)]; paletaFo[k] = OPACIDADES[p.nextInt(OPACIDADES.length)];
+            }
+        }
+        return new SplittableRandom(seed);
+    }
+
+    // Figura i de la secuencia
+    Figura figura(SplittableRandom rnd, long i){
+        int tipo = rnd.nextInt(rectangulos + circulos + lineas);
+        int x = rnd.nextInt(width), y = rnd.nextInt(height);
+        int estilo = estilos > 0 ? rnd.nextInt(estilos) : -1;
+        int stroke = estilo >= 0 ? paletaStroke[estilo] : rnd.nextInt(1 << 24);
+        Figura f;
+        if (tipo < rectangulos) f = new Rectangulo(x, y, medida(rnd), medida(rnd), stroke);
+        else if (tipo < rectangulos + circulos) f = new Circulo(x, y, Math.max(1, medida(rnd) / 2), stroke);
+        else {
+            int dx = medida(rnd), dy = medida(rnd);
+            f = new Linea(x, y, x + (rnd.nextBoolean() ? dx : -dx), y + (rnd.nextBoolean() ? dy : -dy), stroke);
+        }
+        if (rnd.nextDouble() < atributos) {
+            if (!(f instanceof Linea)) {
+                f.setFillRgb(estilo >= 0 ? paletaFill[estilo] : rnd.nextInt(1 << 24));
+                f.setFillOpacity(estilo >= 0 ? paletaFo[estilo] : OPACIDADES[rnd.nextInt(OPACIDADES.length)]);
+            }
+            f.setStrokeWidth(estilo >= 0 ? paletaGrosor[estilo] : 1 + rnd.nextInt(8));
+            f.setStrokeOpacity(estilo >= 0 ? paletaSo[estilo] : OPACIDADES[rnd.nextInt(OPACIDADES.length)]);
+        }
+        // Vocabulario acotado: la tabla de etiquetas del BIN no crece con el número de figuras
+        if (rnd.nextDouble() < etiquetas) f.setLabel(PREFIJOS[rnd.nextInt(PREFIJOS.length)] + " " + rnd.nextInt(NUMEROS_ETIQUETA));
+        return f;
+    }
+
+    // Tamaño de una figura según la distribución (entre 1 y el tamaño máximo)
+    private int medida(SplittableRandom rnd){
+        if (distribucion == Distribucion.UNIFORME) return 1 + rnd.nextInt(tamano);
+        // Normal por Box-Muller: mediana tamaño/20 y una cola larga hasta el máximo
+        double g = Math.sqrt(-2 * Math.log(1 - rnd.nextDouble())) * Math.cos(2 * Math.PI * rnd.nextDouble());
+        return (int) Math.max(1, Math.min(tamano, Math.round(Math.max(1, tamano / 20.0) * Math.exp(g))));
+    }
+
+    /**
+     * Escribe la línea TXT de una figura con sus atributos opcionales (fill, sw, so, fo y label),
+     * sin salto de línea. A diferencia de Figura.writeTxt, la línea conserva todo el estilo.
+     */
+    static void writeTxtLine(Appendable out, Figura f) throws IOException {
+        f.writeTxt(out);
+        if (f.getFillRgb() != ColorRGB.NONE) { out.append(" fill="); ColorRGB.append(out, f.getFillRgb()); }
+        if (f.getStrokeWidth() != 3) { out.append(" sw="); Fmt.num(out, f.getStrokeWidth()); }
+        if (f.getStrokeOpacity() != 1.0) { out.append(" so="); Fmt.opacity(out, f.getStrokeOpacity()); }
+        if (f.getFillOpacity() != 1.0) { out.append(" fo="); Fmt.opacity(out, f.getFillOpacity()); }
+        if (f.getLabel() != null) out.append(" label=").append(f.getLabel().replace(' ', '_'));
+    }
+
+    private static double fraccion(double p){
+        if (!(p >= 0 && p <= 1)) throw new IllegalArgumentException("Fracción no válida: " + p);
+        return p;
+    }
+}
@@ -0,0 +1,259 @@
+package es.ad.r1;
+import java.io.*; import java.net.*; import java.nio.ByteBuffer; import java.nio.charset.StandardCharsets;
+import java.util.*; import java.util.concurrent.*; import java.util.concurrent.atomic.*;
+
+/**
+ * Servidor de conversión de escenas de larga duración.
+ *
+ * Escucha en un puerto TCP local y convierte las escenas que recibe usando los mismos lectores y
+ * escritores que la línea de comandos, con la JVM ya arrancada y el JIT caliente. Cada conexión se
+ * atiende en un pool de hilos acotado; si el pool y su cola están llenos, la conexión se rechaza
+ * con un error en lugar de acumularse.
+ *
+ * Protocolo (una conexión admite varias peticiones seguidas):
+ * <pre>
+ *   petición : "&lt;entrada&gt; &lt;salida&gt; &lt;longitud&gt;\n" seguido de &lt;longitud&gt; bytes con la escena
+ *              entrada = txt | json | bin ; salida = svg | json | json-compact | txt | bin
+ *   respuesta: "OK &lt;longitud&gt;\n" seguido de los bytes convertidos, o
+ *              "ERR &lt;longitud&gt;\n" seguido del mensaje (o el informe de validación) en UTF-8
+ *   "STATS\n": devuelve "OK &lt;longitud&gt;\n" con las métricas de latencia del servidor
+ * </pre>
+ * Una cabecera con una longitud mayor que el máximo configurado (maxBytes) se responde con ERR y
+ * se cierra la conexión sin reservar memoria para la escena. Un cliente que deja de enviar durante
+ * más de TIMEOUT_MS recibe ERR y se cierra su conexión, para que no retenga un hilo del pool. La
+ * entrada bin solo admite el formato binario actual: el antiguo (serialización Java) no se
+ * deserializa nunca a partir de datos recibidos por red.
+ */
+public class SceneServer {
+
+    /** Tamaño máximo por defecto de una escena recibida (256 MB) */
+    public static final int DEFAULT_MAX_BYTES = 256 << 20;
+    /** Tamaño máximo que admite un array de bytes */
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+    /** Tiempo máximo de espera de datos del cliente (ms) */
+    static final int TIMEOUT_MS = 30_000;
+    /** Longitud máxima de la línea de cabecera */
+    private static final int MAX_HEADER = 256;
+
+    private final int port, threads, maxBytes;
+    private final boolean quiet;
+    private final Latencias metricas = new Latencias();
+
+    /**
+     * @param port    Puerto TCP (en la interfaz local).
+     * @param threads Número máximo de conexiones atendidas a la vez.
+     * @param quiet   true para no escribir una línea por petición.
+     */
+    public SceneServer(int port, int threads, boolean quiet){ this(port, threads, DEFAULT_MAX_BYTES, quiet); }
+
+    /**
+     * @param port     Puerto TCP (en la interfaz local).
+     * @param threads  Número máximo de conexiones atendidas a la vez.
+     * @param maxBytes Tamaño máximo en bytes de una escena recibida.
+     * @param quiet    true para no escribir una línea por petición.
+     */
+    public SceneServer(int port, int threads, int maxBytes, boolean quiet){
+        if (maxBytes < 0 || maxBytes > MAX_LENGTH) throw new IllegalArgumentException("Tamaño máximo no válido: " + maxBytes);
+        this.port = port; this.threads = Math.max(1, threads); this.maxBytes = maxBytes; this.quiet = quiet;
+    }
+
+    /**
+     * Arranca el servidor y atiende conexiones hasta que se detiene el proceso.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public void run() throws IOException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(threads * 4), r -> { Thread t = new Thread(r, "scene-conn"); t.setDaemon(true); return t; },
+            new ThreadPoolExecutor.AbortPolicy());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(metricas.toText())));
+        try (ServerSocket ss = new ServerSocket(port, 128, InetAddress.getLoopbackAddress())) {
+            System.out.println("Escuchando en " + ss.getLocalSocketAddress() + " (" + threads + " hilos)");
+            for (;;) {
+                Socket s = ss.accept();
+                try {
+                    s.setSoTimeout(TIMEOUT_MS);
+                    pool.execute(() -> atender(s));
+                } catch (RejectedExecutionException | SocketException ex) {
+                    rechazar(s);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Responde a una conexión que no cabe en el pool y la cierra
+    private void rechazar(Socket s){
+        metricas.rechazadas.incrementAndGet();
+        try (Socket c = s; OutputStream out = new BufferedOutputStream(c.getOutputStream())) {
+            responder(out, "ERR", "Servidor ocupado".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ignored) { }
+    }
+
+    // Atiende todas las peticiones de una conexión
+    private void atender(Socket s){
+        try (Socket c = s;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(c.getInputStream(), 1 << 16));
+             OutputStream out = new BufferedOutputStream(c.getOutputStream(), 1 << 16)) {
+            try {
+                peticiones(in, out);
+            } catch (SocketTimeoutException ex) {
+                responder(out, "ERR", ("Tiempo de espera agotado (" + TIMEOUT_MS + " ms)").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException ex) {
+            if (!quiet) System.err.println("Conexión cerrada con error: " + ex);
+        }
+    }
+
+    // Lee y responde las peticiones de una conexión hasta que el cliente la cierra o envía algo no válido
+    private void peticiones(DataInputStream in, OutputStream out) throws IOException {
+        for (String cab; (cab = cabecera(in)) != null; ) {
+            if ("STATS".equals(cab.trim())) { responder(out, "OK", metricas.toText().getBytes(StandardCharsets.UTF_8)); continue; }
+            String[] p = cab.trim().split(" ");
+            int len;
+            try {
+                if (p.length != 3) throw new NumberFormatException();
+                len = Integer.parseInt(p[2]);
+                if (len < 0) throw new NumberFormatException();
+            } catch (NumberFormatException ex) {
+                responder(out, "ERR", ("Cabecera no válida: " + cab).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            // La longitud se comprueba antes de reservar nada: el resto de la petición no se lee
+            if (len > maxBytes) {
+                responder(out, "ERR", ("Escena demasiado grande: " + len + " bytes (máximo " + maxBytes + ")").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] datos;
+            try {
+                datos = new byte[len];
+            } catch (OutOfMemoryError ex) {
+                responder(out, "ERR", ("Sin memoria para una escena de " + len + " bytes").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            in.readFully(datos);
+            peticion(out, p[0], p[1], datos);
+        }
+    }
+
+    // Convierte una escena y envía la respuesta, midiendo la latencia de la petición
+    private void peticion(OutputStream out, String entrada, String salida, byte[] datos) throws IOException {
+        long t0 = System.nanoTime();
+        String estado = "OK";
+        byte[] res;
+        try {
+            ParseResult pr = leer(entrada, datos);
+            if (pr.getReport().hasErrors()) {
+                estado = "ERR";
+                res = pr.getReport().toText().getBytes(StandardCharsets.UTF_8);
+            } else {
+                res = escribir(pr.getEscena(), salida);
+            }
+        } catch (IOException | RuntimeException ex) {
+            estado = "ERR";
+            res = String.valueOf(ex.getMessage()).getBytes(StandardCharsets.UTF_8);
+        } catch (OutOfMemoryError ex) {
+            estado = "ERR";
+            res = "Sin memoria para convertir la escena".getBytes(StandardCharsets.UTF_8);
+        }
+        responder(out, estado, res);
+        long nanos = System.nanoTime() - t0;
+        metricas.registrar(nanos, "OK".equals(estado), datos.length, res.length);
+        if (!quiet) {
+            System.out.println(String.format(Locale.ROOT, "%s %s->%s %d B -> %d B en %.2f ms",
+                estado, entrada, salida, datos.length, res.length, nanos / 1e6));
+        }
+    }
+
+    // Lee la escena recibida con el lector de su formato
+    static ParseResult leer(String entrada, byte[] datos) throws IOException {
+        switch (entrada) {
+            case "txt":
+                return TxtSceneIO.parse(new InputStreamReader(new ByteArrayInputStream(datos), StandardCharsets.UTF_8.newDecoder()));
+            case "json":
+                return JsonSceneIO.read(new InputStreamReader(new ByteArrayInputStream(datos), StandardCharsets.UTF_8.newDecoder()));
+            case "bin":
+                return new ParseResult(BinSceneIO.readActual(ByteBuffer.wrap(datos)), new ValidationReport());
+            default:
+                throw new IOException("Formato de entrada no soportado: " + entrada);
+        }
+    }
+
+    // Convierte la escena al formato de salida en memoria
+    static byte[] escribir(Escena e, String salida) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+        if ("bin".equals(salida)) { BinSceneIO.write(e, bos); return bos.toByteArray(); }
+        Writer w = new FastWriter(new OutputStreamWriter(bos, StandardCharsets.UTF_8.newEncoder()));
+        switch (salida) {
+            case "svg": SvgSceneIO.write(e, w); break;
+            case "json": JsonSceneIO.write(e, w, false); break;
+            case "json-compact": JsonSceneIO.write(e, w, true); break;
+            case "txt": TxtSceneIO.write(e, w); break;
+            default: throw new IOException("Formato de salida no soportado: " + salida);
+        }
+        w.flush();
+        return bos.toByteArray();
+    }
+
+    // Lee la línea de cabecera (ASCII); devuelve null si el cliente ha cerrado la conexión
+    private static String cabecera(DataInputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c; (c = in.read()) != '\n'; ) {
+            if (c < 0) {
+                if (sb.length() == 0) return null;
+                throw new EOFException("Cabecera incompleta");
+            }
+            if (sb.length() == MAX_HEADER) throw new IOException("Cabecera demasiado larga");
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static void responder(OutputStream out, String estado, byte[] datos) throws IOException {
+        out.write((estado + " " + datos.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(datos);
+        out.flush();
+    }
+
+    /**
+     * Métricas de latencia por petición: contadores y un histograma en potencias de 2 de
+     * microsegundos para estimar percentiles sin guardar cada muestra.
+     */
+    static final class Latencias {
+        final AtomicLong peticiones = new AtomicLong(), errores = new AtomicLong(), rechazadas = new AtomicLong();
+        final LongAdder nanos = new LongAdder(), bytesIn = new LongAdder(), bytesOut = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+        /** Cubeta k: latencias en [2^(k-1), 2^k) microsegundos */
+        final AtomicLongArray histograma = new AtomicLongArray(40);
+
+        void registrar(long ns, boolean ok, long in, long out){
+            peticiones.incrementAndGet();
+            if (!ok) errores.incrementAndGet();
+            nanos.add(ns); bytesIn.add(in); bytesOut.add(out);
+            max.accumulateAndGet(ns, Math::max);
+            histograma.incrementAndGet(64 - Long.numberOfLeadingZeros(ns / 1000));
+        }
+
+        // Límite superior (en ms) de la cubeta que contiene el percentil p
+        double percentil(double p){
+            long total = 0;
+            for (int k = 0; k < histograma.length(); k++) total += histograma.get(k);
+            if (total == 0) return 0;
+            long objetivo = (long) Math.ceil(total * p), acc = 0;
+            for (int k = 0; k < histograma.length(); k++) {
+                acc += histograma.get(k);
+                if (acc >= objetivo) return (1L << k) / 1000.0;
+            }
+            return max.get() / 1e6;
+        }
+
+        String toText(){
+            long n = peticiones.get();
+            return String.format(Locale.ROOT,
+                "peticiones %d\nerrores %d\nrechazadas %d\nbytes_entrada %d\nbytes_salida %d\n"
+                + "latencia_media_ms %.3f\nlatencia_p50_ms %.3f\nlatencia_p99_ms %.3f\nlatencia_max_ms %.3f\n",
+                n, errores.get(), rechazadas.get(), bytesIn.sum(), bytesOut.sum(),
+                n == 0 ? 0 : nanos.sum() / 1e6 / n, percentil(0.5), percentil(0.99), max.get() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package es.ad.r1;
+import java.io.IOException; import java.nio.file.*; import java.time.LocalTime; import java.time.temporal.ChronoUnit;
+import java.util.*; import java.util.concurrent.*;
+
+/**
+ * Vigila un directorio de escenas y las vuelve a validar y exportar cuando cambian.
+ *
+ * Usa el WatchService del sistema de ficheros. Las ráfagas de escrituras sobre un mismo fichero
+ * (un editor que guarda varias veces seguidas) se agrupan: el fichero se procesa cuando lleva el
+ * tiempo de espera indicado sin cambios. Cada fichero se procesa en un pool de hilos en segundo
+ * plano y nunca dos veces a la vez; si cambia mientras se procesa, se vuelve a procesar al terminar.
+ *
+ * Las salidas van a un subdirectorio por fichero, como en batch. Los TXT se reexportan de forma
+ * incremental (ver {@link IncrementalExport}); los JSON y BIN se exportan completos. El resultado
+ * y las incidencias de validación se muestran por consola y se escriben en el validacion.txt
+ * del subdirectorio.
+ */
+public class SceneWatcher {
+
+    /** Espera mínima antes de reintentar un fichero que se está procesando */
+    private static final long REINTENTO = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path dir, out;
+    private final long debounceNanos;
+    private final int threads;
+    /** Ficheros pendientes y el instante (System.nanoTime) a partir del cual se procesan */
+    private final Map<Path,Long> pendientes = new HashMap<>();
+    /** Ficheros que se están procesando */
+    private final Set<Path> enCurso = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param dir        Directorio vigilado.
+     * @param out        Directorio de salida (no puede ser el vigilado).
+     * @param debounceMs Milisegundos sin cambios antes de procesar un fichero.
+     * @param threads    Número de hilos de procesado.
+     */
+    public SceneWatcher(Path dir, Path out, long debounceMs, int threads){
+        this.dir = dir; this.out = out;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMs));
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Procesa las escenas que ya hay en el directorio y vigila los cambios hasta que se detiene el proceso.
+     * @throws IOException Si el directorio no se puede vigilar.
+     */
+    public void run() throws IOException {
+        if (dir.toAbsolutePath().normalize().equals(out.toAbsolutePath().normalize())) {
+            throw new IOException("El directorio de salida no puede ser el vigilado: " + dir);
+        }
+        Files.createDirectories(out);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "scene-watch");
+            t.setDaemon(true);
+            return t;
+        });
+        try (WatchService ws = dir.getFileSystem().newWatchService()) {
+            dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            for (Path f : BatchConverter.entradas(dir.toString())) programar(f, 0);
+            System.out.println("Vigilando " + dir.toAbsolutePath() + " -> " + out.toAbsolutePath() + " (Ctrl+C para terminar)");
+            for (;;) {
+                long espera = lanzar(pool);
+                WatchKey key = espera < 0 ? ws.take() : ws.poll(espera, TimeUnit.MILLISECONDS);
+                if (key == null) continue;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    // Se han perdido eventos: se revisan todos los ficheros
+                    if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        for (Path f : BatchConverter.entradas(dir.toString())) programar(f, debounceNanos);
+                        continue;
+                    }
+                    Path f = dir.resolve((Path) ev.context());
+                    if (BatchConverter.esEscena(f)) programar(f, debounceNanos);
+                }
+                if (!key.reset()) throw new IOException("El directorio vigilado ya no está disponible: " + dir);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Aplaza el procesado del fichero: cada cambio nuevo reinicia la espera
+    private void programar(Path f, long nanos){
+        pendientes.put(f, System.nanoTime() + nanos);
+    }
+
+    // Envía al pool los ficheros cuya espera ha terminado; devuelve los ms hasta el siguiente (-1 si no hay)
+    private long lanzar(ExecutorService pool){
+        long ahora = System.nanoTime(), proximo = Long.MAX_VALUE;
+        for (Iterator<Map.Entry<Path,Long>> it = pendientes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path,Long> e = it.next();
+            Path f = e.getKey();
+            long resta = e.getValue() - ahora;
+            // Si todavía se está procesando el cambio anterior, se reintenta un poco después
+            if (resta <= 0 && !enCurso.add(f)) {
+                resta = Math.max(debounceNanos, REINTENTO);
+                e.setValue(ahora + resta);
+            }
+            if (resta > 0) { proximo = Math.min(proximo, resta); continue; }
+            it.remove();
+            pool.execute(() -> {
+                try { procesar(f); } finally { enCurso.remove(f); }
+            });
+        }
+        return proximo == Long.MAX_VALUE ? -1 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(proximo + 999_999));
+    }
+
+    // Valida y exporta un fichero en su subdirectorio y muestra el resultado
+    private void procesar(Path f){
+        if (!Files.isRegularFile(f)) return;
+        String base = base(f);
+        Path dst = out.resolve(base);
+        String hora = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        try {
+            ValidationReport rep;
+            String modo;
+            long nanos;
+            if (Main.esJsonOBin(f)) {
+                long t0 = System.nanoTime();
+                ParseResult pr = Main.leer(f, new String[0], Main.salidas(dst, base));
+                rep = pr.getReport();
+                Files.createDirectories(dst);
+                Files.writeString(dst.resolve("validacion.txt"), rep.toText());
+                if (!rep.hasErrors()) Main.exportAll(pr.getEscena(), dst, base);
+                modo = "completo";
+                nanos = System.nanoTime() - t0;
+            } else {
+                IncrementalExport.Resultado r = IncrementalExport.actualizar(f, dst, base);
+                rep = r.report; modo = r.modo; nanos = r.nanos;
+            }
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "[%s] %s: %s (%s) en %.1f ms",
+                hora, f.getFileName(), rep.hasErrors() ? "ERRORES" : "OK", modo, nanos / 1e6));
+            for (ValidationReport.Issue i : rep.issues()) sb.append("\n  ").append(i.toText());
+            if (rep.getOmitidas() > 0) { StringBuilder r = new StringBuilder(); rep.writeResumen(r); sb.append("\n  ").append(r.toString().trim().replace("\n", "\n  ")); }
+            System.out.println(sb);
+        } catch (Exception ex) {
+            System.out.println("[" + hora + "] " + f.getFileName() + ": FALLO " + ex);
+        }
+    }
+
+    // Nombre del subdirectorio de salida: sin extensión, salvo que otra escena tenga el mismo nombre
+    private static String base(Path f){
+        String b = BatchConverter.sinExtension(f);
+        int n = 0;
+        for (String ext : BatchConverter.EXTENSIONES) if (Files.exists(f.resolveSibling(b + ext))) n++;
+        return n > 1 ? f.getFileName().toString().replace('.', '_') : b;
+    }
+}
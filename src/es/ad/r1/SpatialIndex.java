@@ -0,0 +1,308 @@
+package es.ad.r1;
+import java.util.*; import java.util.function.IntConsumer;
+
+/**
+ * Índice espacial de las figuras de una escena sobre una rejilla uniforme.
+ *
+ * Guarda la caja de cada figura ampliada con la mitad del grosor del borde y reparte las figuras
+ * entre las celdas que toca su caja (en arrays de primitivos: el inicio de cada celda y la lista
+ * de figuras de todas las celdas seguidas). El tamaño de celda se elige para que haya del orden
+ * de una figura por celda. Las figuras que ocuparían muchas celdas se guardan aparte y se
+ * comprueban en cada consulta.
+ *
+ * Las consultas devuelven índices de figura de la escena (en el orden de la escena, que es el de
+ * dibujo). Se mantiene al día con {@link Escena#add(Figura)}: las figuras nuevas se comprueban
+ * aparte hasta que son bastantes y entonces se reconstruye la rejilla. Admite consultas desde varios
+ * hilos a la vez mientras no se añadan figuras.
+ */
+public final class SpatialIndex {
+
+    /** Celdas que puede ocupar una figura antes de guardarse aparte */
+    private static final int MAX_CELDAS_FIGURA = 16;
+    /** Máximo de celdas de la rejilla */
+    private static final int MAX_CELDAS = 1 << 24;
+    /** Figuras añadidas sin reconstruir a partir de las que se reconstruye la rejilla (mínimo) */
+    private static final int MIN_PENDIENTES = 1024;
+    private static final int[] VACIO = new int[0];
+
+    private final Escena escena;
+    /** La misma escena si es por columnas (las cajas se leen sin crear figuras) */
+    private final EscenaColumnar columnar;
+    private final IntConsumer observador = this::added;
+
+    /** Número de figuras indexadas */
+    private int n;
+    /** Caja de cada figura, con el borde */
+    private int[] minX, minY, maxX, maxY;
+
+    /** Origen, tamaño de celda (potencia de 2: 1 << shift) y dimensiones de la rejilla */
+    private long ox, oy, tam;
+    private int shift, gx, gy;
+    /** Figuras de la celda c: items[inicio[c]] .. items[inicio[c+1]-1] */
+    private int[] inicio, items;
+    /** Figuras que ocupan demasiadas celdas */
+    private int[] grandes;
+    /** Figuras añadidas desde la última construcción */
+    private int[] pendientes = new int[16];
+    private int nPendientes;
+
+    private SpatialIndex(Escena e){
+        this.escena = e;
+        this.columnar = e instanceof EscenaColumnar ? (EscenaColumnar) e : null;
+    }
+
+    /**
+     * Construye el índice de todas las figuras de la escena y lo registra para recibir las que se añadan.
+     * @param e Escena a indexar.
+     * @return Índice de la escena.
+     */
+    public static SpatialIndex build(Escena e){
+        SpatialIndex idx = new SpatialIndex(e);
+        int count = e.getFiguras().size();
+        idx.reservar(Math.max(16, count));
+        for (int i = 0; i < count; i++) idx.caja(i);
+        idx.n = count;
+        idx.construir();
+        e.addListener(idx.observador);
+        return idx;
+    }
+
+    /** Deja de recibir las figuras añadidas a la escena. */
+    public void detach(){ escena.removeListener(observador); }
+
+    /** @return Número de figuras indexadas */
+    public int size(){ return n; }
+
+    /**
+     * Figuras cuya caja (con el borde) corta el rectángulo [x0,x1]x[y0,y1] (extremos incluidos).
+     * @return Índices de figura en orden creciente.
+     */
+    public int[] query(int x0, int y0, int x1, int y1){
+        if (x0 > x1) { int t = x0; x0 = x1; x1 = t; }
+        if (y0 > y1) { int t = y0; y0 = y1; y1 = t; }
+        int[] res = new int[16];
+        int m = 0;
+        int cx0 = celdaX(x0), cx1 = celdaX(x1), cy0 = celdaY(y0), cy1 = celdaY(y1);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0, c = cy * gx + cx0; cx <= cx1; cx++, c++) {
+                for (int k = inicio[c], fin = inicio[c + 1]; k < fin; k++) {
+                    int i = items[k];
+                    if (!corta(i, x0, y0, x1, y1)) continue;
+                    // Cada figura se devuelve solo desde la celda de la esquina de la intersección
+                    if (celdaX(Math.max(x0, minX[i])) != cx || celdaY(Math.max(y0, minY[i])) != cy) continue;
+                    if (m == res.length) res = Arrays.copyOf(res, m * 2);
+                    res[m++] = i;
+                }
+            }
+        }
+        for (int i : grandes) {
+            if (!corta(i, x0, y0, x1, y1)) continue;
+            if (m == res.length) res = Arrays.copyOf(res, m * 2);
+            res[m++] = i;
+        }
+        for (int k = 0; k < nPendientes; k++) {
+            int i = pendientes[k];
+            if (!corta(i, x0, y0, x1, y1)) continue;
+            if (m == res.length) res = Arrays.copyOf(res, m * 2);
+            res[m++] = i;
+        }
+        res = Arrays.copyOf(res, m);
+        Arrays.sort(res);
+        return res;
+    }
+
+    /**
+     * Figura que se ve en el punto: la última en orden de dibujo que lo toca, teniendo en cuenta
+     * el relleno y el grosor del borde (ver {@link Figura#hitTest(double, double)}).
+     * @return Índice de la figura o -1 si no hay ninguna.
+     */
+    public int hitTest(double x, double y){ return hitTest(x, y, 0); }
+
+    /**
+     * Como {@link #hitTest(double, double)} admitiendo una distancia de tolerancia alrededor del punto.
+     * @return Índice de la figura o -1 si no hay ninguna.
+     */
+    public int hitTest(double x, double y, double tolerancia){
+        int x0 = Figura.sat((long) Math.floor(x - tolerancia)), x1 = Figura.sat((long) Math.ceil(x + tolerancia));
+        int y0 = Figura.sat((long) Math.floor(y - tolerancia)), y1 = Figura.sat((long) Math.ceil(y + tolerancia));
+        int mejor = -1;
+        for (int cy = celdaY(y0), cy1 = celdaY(y1); cy <= cy1; cy++) {
+            for (int cx = celdaX(x0), cx1 = celdaX(x1); cx <= cx1; cx++) {
+                int c = cy * gx + cx;
+                // Las figuras de cada celda están en orden: se recorren de la última a la primera
+                for (int k = inicio[c + 1] - 1; k >= inicio[c] && items[k] > mejor; k--) {
+                    if (toca(items[k], x, y, x0, y0, x1, y1, tolerancia)) mejor = items[k];
+                }
+            }
+        }
+        for (int i : grandes) if (i > mejor && toca(i, x, y, x0, y0, x1, y1, tolerancia)) mejor = i;
+        for (int k = 0; k < nPendientes; k++) {
+            int i = pendientes[k];
+            if (i > mejor && toca(i, x, y, x0, y0, x1, y1, tolerancia)) mejor = i;
+        }
+        return mejor;
+    }
+
+    /**
+     * Las k figuras más cercanas al punto, midiendo hasta la parte pintada (relleno y borde con su
+     * grosor): las que tocan el punto están a distancia 0.
+     * @return Índices de figura ordenados de más cercana a más lejana (menos de k si no hay tantas).
+     */
+    public int[] nearest(double x, double y, int k){
+        if (k <= 0 || n == 0) return VACIO;
+        int[] ids = new int[k];
+        double[] dist = new double[k];
+        int m = 0;
+        Set<Integer> vistas = new HashSet<>();
+        for (int i : grandes) m = candidata(i, x, y, ids, dist, m, vistas);
+        for (int j = 0; j < nPendientes; j++) m = candidata(pendientes[j], x, y, ids, dist, m, vistas);
+        int px = celdaX(Figura.sat((long) Math.floor(x))), py = celdaY(Figura.sat((long) Math.floor(y)));
+        for (int r = 0; ; r++) {
+            int cx0 = px - r, cx1 = px + r, cy0 = py - r, cy1 = py + r;
+            if (cx0 < 0 && cy0 < 0 && cx1 >= gx && cy1 >= gy) break;
+            // Celdas del anillo r alrededor de la celda del punto
+            for (int cy = Math.max(0, cy0); cy <= Math.min(gy - 1, cy1); cy++) {
+                if (cy == cy0 || cy == cy1) {
+                    for (int cx = Math.max(0, cx0); cx <= Math.min(gx - 1, cx1); cx++) m = celda(cy * gx + cx, x, y, ids, dist, m, vistas);
+                } else {
+                    if (cx0 >= 0) m = celda(cy * gx + cx0, x, y, ids, dist, m, vistas);
+                    if (cx1 < gx) m = celda(cy * gx + cx1, x, y, ids, dist, m, vistas);
+                }
+            }
+            // Distancia mínima a cualquier celda fuera del bloque ya recorrido
+            double fuera = Double.POSITIVE_INFINITY;
+            if (cx0 > 0) fuera = Math.min(fuera, x - (ox + cx0 * tam));
+            if (cx1 < gx - 1) fuera = Math.min(fuera, ox + (cx1 + 1) * tam - x);
+            if (cy0 > 0) fuera = Math.min(fuera, y - (oy + cy0 * tam));
+            if (cy1 < gy - 1) fuera = Math.min(fuera, oy + (cy1 + 1) * tam - y);
+            if (m == k && dist[m - 1] <= fuera) break;
+        }
+        return Arrays.copyOf(ids, m);
+    }
+
+    private int celda(int c, double x, double y, int[] ids, double[] dist, int m, Set<Integer> vistas){
+        for (int j = inicio[c]; j < inicio[c + 1]; j++) m = candidata(items[j], x, y, ids, dist, m, vistas);
+        return m;
+    }
+
+    // Considera la figura i para los k vecinos (ids/dist ordenados por distancia); devuelve cuántos hay
+    private int candidata(int i, double x, double y, int[] ids, double[] dist, int m, Set<Integer> vistas){
+        if (!vistas.add(i)) return m;
+        int k = ids.length;
+        if (m == k && distanciaCaja(i, x, y) >= dist[m - 1]) return m;
+        Figura f = escena.getFiguras().get(i);
+        double d = Math.max(0, f.distanceTo(x, y) - Math.max(0, f.getStrokeWidth()) / 2.0);
+        if (m == k && d >= dist[m - 1]) return m;
+        int p = m < k ? m++ : k - 1;
+        // Inserción ordenada (a igual distancia, la figura de menor índice primero)
+        while (p > 0 && (dist[p - 1] > d || (dist[p - 1] == d && ids[p - 1] > i))) { dist[p] = dist[p - 1]; ids[p] = ids[p - 1]; p--; }
+        dist[p] = d; ids[p] = i;
+        return m;
+    }
+
+    private boolean corta(int i, int x0, int y0, int x1, int y1){
+        return minX[i] <= x1 && maxX[i] >= x0 && minY[i] <= y1 && maxY[i] >= y0;
+    }
+
+    // Comprueba la caja y después la geometría de la figura
+    private boolean toca(int i, double x, double y, int x0, int y0, int x1, int y1, double tolerancia){
+        if (!corta(i, x0, y0, x1, y1)) return false;
+        Figura f = escena.getFiguras().get(i);
+        return f.distanceTo(x, y) <= Math.max(0, f.getStrokeWidth()) / 2.0 + tolerancia;
+    }
+
+    // Distancia del punto a la caja de la figura (cota inferior de la distancia a la figura)
+    private double distanciaCaja(int i, double x, double y){
+        double dx = Math.max(Math.max(minX[i] - x, x - maxX[i]), 0), dy = Math.max(Math.max(minY[i] - y, y - maxY[i]), 0);
+        return Math.hypot(dx, dy);
+    }
+
+    private int celdaX(int v){ return (int) Math.max(0, Math.min(gx - 1, (v - ox) >> shift)); }
+    private int celdaY(int v){ return (int) Math.max(0, Math.min(gy - 1, (v - oy) >> shift)); }
+
+    // Recibe cada figura añadida a la escena
+    private void added(int i){
+        if (i != n) { rehacer(); return; }
+        if (n == minX.length) reservar(n + (n >> 1));
+        caja(i);
+        n++;
+        if (nPendientes == pendientes.length) pendientes = Arrays.copyOf(pendientes, nPendientes * 2);
+        pendientes[nPendientes++] = i;
+        if (nPendientes > Math.max(MIN_PENDIENTES, n / 4)) construir();
+    }
+
+    // Vuelve a leer todas las cajas y reconstruye la rejilla
+    private void rehacer(){
+        int count = escena.getFiguras().size();
+        reservar(Math.max(16, count));
+        for (int i = 0; i < count; i++) caja(i);
+        n = count;
+        construir();
+    }
+
+    // Calcula la caja con el borde de la figura i
+    private void caja(int i){
+        long x0, y0, x1, y1;
+        int m;
+        if (columnar != null) {
+            long a = columnar.a(i), b = columnar.b(i), c = columnar.c(i), d = columnar.d(i);
+            m = Figura.strokeMargin(columnar.strokeWidth(i));
+            switch (columnar.tipo(i)) {
+                case EscenaColumnar.RECTANGULO:
+                    x0 = Math.min(a, a + c); x1 = Math.max(a, a + c); y0 = Math.min(b, b + d); y1 = Math.max(b, b + d); break;
+                case EscenaColumnar.CIRCULO:
+                    x0 = a - Math.abs(c); x1 = a + Math.abs(c); y0 = b - Math.abs(c); y1 = b + Math.abs(c); break;
+                default:
+                    x0 = Math.min(a, c); x1 = Math.max(a, c); y0 = Math.min(b, d); y1 = Math.max(b, d);
+            }
+        } else {
+            Figura f = escena.getFiguras().get(i);
+            m = f.getStrokeMargin();
+            x0 = f.getMinX(); y0 = f.getMinY(); x1 = f.getMaxX(); y1 = f.getMaxY();
+        }
+        minX[i] = Figura.sat(x0 - m); minY[i] = Figura.sat(y0 - m);
+        maxX[i] = Figura.sat(x1 + m); maxY[i] = Figura.sat(y1 + m);
+    }
+
+    private void reservar(int cap){
+        if (minX != null && cap <= minX.length) return;
+        minX = minX == null ? new int[cap] : Arrays.copyOf(minX, cap);
+        minY = minY == null ? new int[cap] : Arrays.copyOf(minY, cap);
+        maxX = maxX == null ? new int[cap] : Arrays.copyOf(maxX, cap);
+        maxY = maxY == null ? new int[cap] : Arrays.copyOf(maxY, cap);
+    }
+
+    // Elige la rejilla para las cajas actuales y reparte las figuras entre las celdas
+    private void construir(){
+        nPendientes = 0;
+        long x0 = Long.MAX_VALUE, y0 = Long.MAX_VALUE, x1 = Long.MIN_VALUE, y1 = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, minX[i]); y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]); y1 = Math.max(y1, maxY[i]);
+        }
+        if (n == 0) { x0 = y0 = x1 = y1 = 0; }
+        long w = x1 - x0 + 1, h = y1 - y0 + 1, celdas = Math.max(1, Math.min(n, MAX_CELDAS));
+        long t = Long.highestOneBit(Math.max(1, (long) Math.ceil(Math.sqrt((double) w * h / celdas))) * 2 - 1);
+        while ((w + t - 1) / t * ((h + t - 1) / t) > MAX_CELDAS) t *= 2;
+        ox = x0; oy = y0; tam = t; shift = Long.numberOfTrailingZeros(t);
+        gx = (int) ((w + t - 1) / t); gy = (int) ((h + t - 1) / t);
+        // Primera pasada: figuras por celda; segunda: reparto (en orden de figura)
+        int[] cuenta = new int[gx * gy + 1];
+        int nGrandes = 0;
+        for (int i = 0; i < n; i++) {
+            int cx0 = celdaX(minX[i]), cx1 = celdaX(maxX[i]), cy0 = celdaY(minY[i]), cy1 = celdaY(maxY[i]);
+            if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > MAX_CELDAS_FIGURA) { nGrandes++; continue; }
+            for (int cy = cy0; cy <= cy1; cy++) for (int cx = cx0; cx <= cx1; cx++) cuenta[cy * gx + cx + 1]++;
+        }
+        for (int c = 0; c < gx * gy; c++) cuenta[c + 1] += cuenta[c];
+        inicio = cuenta.clone();
+        items = new int[cuenta[gx * gy]];
+        grandes = new int[nGrandes];
+        nGrandes = 0;
+        for (int i = 0; i < n; i++) {
+            int cx0 = celdaX(minX[i]), cx1 = celdaX(maxX[i]), cy0 = celdaY(minY[i]), cy1 = celdaY(maxY[i]);
+            if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > MAX_CELDAS_FIGURA) { grandes[nGrandes++] = i; continue; }
+            for (int cy = cy0; cy <= cy1; cy++) for (int cx = cx0; cx <= cx1; cx++) items[cuenta[cy * gx + cx]++] = i;
+        }
+    }
+}
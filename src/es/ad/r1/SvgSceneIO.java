@@ -1,44 +1,444 @@
 package es.ad.r1;
-import java.io.IOException; import java.nio.file.*;
+import java.io.*; import java.nio.channels.*; import java.nio.charset.StandardCharsets;
+import java.nio.file.*; import java.util.*;
 /**
  * Clase de utilidades para exportar una escena en formato SVG.
  * 
  * Permite generar un archivo SVG a partir de una instancia de Escena, incluyendo
- * la cuadrícula, el fondo, el borde y todas las figuras geométricas con sus etiquetas.
+ * la cuadrícula, el fondo, el borde y todas las figuras geométricas con sus etiquetas,
+ * o solo una ventana de la escena con las figuras que la cortan (ver TileExporter para teselas).
+ * Para vistas generales de escenas enormes hay una salida con nivel de detalle (writeLod).
+ * Con la opción css los estilos repetidos se escriben una vez como clases CSS.
  * El SVG generado es compatible con navegadores y editores gráficos.
  */
 public class SvgSceneIO {
 
+    /** Número máximo de clases CSS de estilo (los demás estilos se escriben en atributos) */
+    static final int MAX_CLASES = 1 << 16;
+
     /**
      * Escribe una escena en formato SVG en el archivo especificado.
+     * El documento se genera en streaming sobre un FastWriter, sin construirlo en memoria.
      * 
      * @param e    Escena a exportar.
      * @param path Ruta del archivo destino.
      * @throws IOException Si ocurre un error de E/S.
      */
     public static void write(Escena e, Path path) throws IOException {
-        StringBuilder sb=new StringBuilder();
-        // Cabecera SVG con dimensiones y vista
-        sb.append(String.format("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" viewBox=\"0 0 %d %d\">\n",
-            e.getWidth(), e.getHeight(), e.getWidth(), e.getHeight()));
-        // Definiciones de estilos y cuadrícula
-        sb.append("<defs>\n<style><![CDATA[\n.grid{stroke:#e6e6e6;stroke-width:1}\n.lbl{font-family:monospace;font-size:12px;fill:#333}\n]]></style>\n</defs>\n");
-        // Fondo blanco
-        sb.append("<rect x=\"0\" y=\"0\" width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n");
-        int step=50;
-        // Líneas de la cuadrícula verticales
-        for(int x=0;x<=e.getWidth();x+=step) sb.append(String.format("<line x1=\"%d\" y1=\"0\" x2=\"%d\" y2=\"%d\" class=\"grid\"/>\n",x,x,e.getHeight()));
-        // Líneas de la cuadrícula horizontales
-        for(int y=0;y<=e.getHeight();y+=step) sb.append(String.format("<line x1=\"0\" y1=\"%d\" x2=\"%d\" y2=\"%d\" class=\"grid\"/>\n",y,e.getWidth(),y));
-        // Borde de la escena
-        sb.append(String.format("<rect x=\"0\" y=\"0\" width=\"%d\" height=\"%d\" fill=\"none\" stroke=\"#ccc\" stroke-width=\"2\"/>\n", e.getWidth(), e.getHeight()));
-        // Figuras y etiquetas
-        for(Figura f:e.getFiguras()){ 
-            sb.append("  ").append(f.toSvg()).append("\n"); 
-            sb.append("  ").append(f.labelSvg()).append("\n"); 
-        }
-        sb.append("</svg>\n");
-        // Escribe el SVG en el archivo destino
-        Files.writeString(path, sb.toString());
+        try (SceneEncoder enc = encoder(path)) {
+            SceneEncoder.encode(e, enc);
+        }
+    }
+
+    /**
+     * Escribe una escena en formato SVG con los estilos repetidos como clases CSS. Recorre la
+     * escena dos veces: la primera recoge los estilos (borde y relleno) que usa más de una figura,
+     * que se escriben una vez en el bloque &lt;style&gt;; en la segunda cada figura con uno de esos
+     * estilos lleva solo su clase en lugar de los atributos stroke y fill.
+     * 
+     * @param e    Escena a exportar.
+     * @param path Ruta del archivo destino.
+     * @param css  true para usar clases CSS; false equivale a write(e, path).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, Path path, boolean css) throws IOException {
+        if (!css) { write(e, path); return; }
+        Map<Estilo,String> clases = clases(e);
+        try (SceneEncoder enc = new Encoder(new FastWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder())), null, 1, clases)) {
+            SceneEncoder.encode(e, enc);
+        }
+    }
+
+    /**
+     * Primera pasada de la salida con clases CSS: asigna una clase (s0, s1...) a cada estilo que usa
+     * más de una figura, en orden de aparición y hasta MAX_CLASES. Solo se cuentan los primeros
+     * 4 * MAX_CLASES estilos distintos, para que una escena sin estilos repetidos no llene la memoria.
+     */
+    static Map<Estilo,String> clases(Escena e){
+        Map<Estilo,int[]> usos = new LinkedHashMap<>();
+        for (Figura f : e.getFiguras()) {
+            Estilo k = Estilo.svg(f);
+            int[] c = usos.get(k);
+            if (c != null) c[0]++;
+            else if (usos.size() < 4 * MAX_CLASES) usos.put(k, new int[]{ 1 });
+        }
+        Map<Estilo,String> clases = new LinkedHashMap<>();
+        for (Map.Entry<Estilo,int[]> u : usos.entrySet()) {
+            if (clases.size() == MAX_CLASES) break;
+            if (u.getValue()[0] > 1) clases.put(u.getKey(), "s" + Integer.toString(clases.size(), 36));
+        }
+        return clases;
+    }
+
+    /**
+     * Escribe una escena en formato SVG en un canal (por ejemplo, un socket o un FileChannel).
+     * 
+     * @param e  Escena a exportar.
+     * @param ch Canal destino (no se cierra).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, WritableByteChannel ch) throws IOException {
+        write(e, new FastWriter(Channels.newWriter(ch, StandardCharsets.UTF_8.newEncoder(), -1)));
+    }
+
+    /**
+     * Escribe una escena en formato SVG en un Writer. Cada figura añade su marcado directamente
+     * al Writer, por lo que la memoria usada no depende del tamaño de la escena.
+     * 
+     * @param e   Escena a exportar.
+     * @param out Destino (no se cierra).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, Writer out) throws IOException {
+        SceneEncoder.encode(e, new Encoder(out));
+    }
+
+    /**
+     * Crea un codificador SVG que escribe en el archivo indicado.
+     * 
+     * @param path Ruta del archivo destino.
+     * @return Codificador; al cerrarlo se cierra el archivo.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public static SceneEncoder encoder(Path path) throws IOException {
+        return new Encoder(new FastWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder())));
+    }
+
+    /**
+     * Crea un codificador SVG de una ventana de la escena: el documento mide w x h y su viewBox
+     * empieza en (x, y), de modo que solo se ve esa parte. La cuadrícula se limita a la ventana.
+     * Las figuras que se le entregan no se filtran: el llamador envía solo las que cortan la ventana.
+     * 
+     * @param path Ruta del archivo destino.
+     * @return Codificador; al cerrarlo se cierra el archivo.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public static SceneEncoder encoder(Path path, int x, int y, int w, int h) throws IOException {
+        return new Encoder(new FastWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder())), x, y, w, h);
+    }
+
+    /**
+     * Exporta solo la ventana (x, y, w, h) de la escena: recorre las figuras una vez comprobando su
+     * caja (con el grosor del borde) y escribe únicamente las que cortan la ventana.
+     * 
+     * @param e    Escena a exportar.
+     * @param path Ruta del archivo destino.
+     * @throws IOException Si ocurre un error de E/S.
+     * @throws IllegalArgumentException Si el ancho o el alto de la ventana no son positivos.
+     */
+    public static void writeViewport(Escena e, Path path, int x, int y, int w, int h) throws IOException {
+        if (w <= 0 || h <= 0) throw new IllegalArgumentException("La ventana debe tener ancho y alto positivos: " + w + "x" + h);
+        long x1 = (long) x + w, y1 = (long) y + h;
+        try (SceneEncoder enc = encoder(path, x, y, w, h)) {
+            enc.begin(e.getWidth(), e.getHeight(), -1);
+            for (Figura f : e.getFiguras()) {
+                int m = f.getStrokeMargin();
+                if ((long) f.getMinX() - m <= x1 && (long) f.getMaxX() + m >= x && (long) f.getMinY() - m <= y1 && (long) f.getMaxY() + m >= y) enc.figura(f);
+            }
+            enc.end();
+        }
+    }
+
+    /**
+     * Escribe la escena con nivel de detalle para mostrarla a la escala indicada (píxeles de salida
+     * por unidad de la escena). Las figuras de menos de un píxel no se escriben: se acumulan en una
+     * rejilla de píxeles y cada píxel ocupado se pinta con el color medio y la cobertura de sus
+     * figuras, como elementos &lt;rect&gt; por tramos de píxeles iguales. Las etiquetas de las figuras de menos
+     * de minLabelPx píxeles se omiten y las líneas seguidas con el mismo estilo se unen en un único &lt;path&gt;. El tamaño del resultado depende del número de
+     * píxeles de salida, no del número de figuras.
+     * 
+     * @param e          Escena a exportar.
+     * @param path       Ruta del archivo destino.
+     * @param scale      Escala de salida (p.ej. 0.1: el SVG mide la décima parte de la escena).
+     * @param minLabelPx Tamaño mínimo en píxeles de salida de una figura para escribir su etiqueta.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void writeLod(Escena e, Path path, double scale, int minLabelPx) throws IOException {
+        try (SceneEncoder enc = lodEncoder(path, scale, minLabelPx)) {
+            SceneEncoder.encode(e, enc);
+        }
+    }
+
+    /**
+     * Crea un codificador SVG con nivel de detalle (ver writeLod).
+     * 
+     * @param path       Ruta del archivo destino.
+     * @param scale      Escala de salida.
+     * @param minLabelPx Tamaño mínimo en píxeles de salida de una figura para escribir su etiqueta.
+     * @return Codificador; al cerrarlo se cierra el archivo.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public static SceneEncoder lodEncoder(Path path, double scale, int minLabelPx) throws IOException {
+        if (!(scale > 0) || Double.isInfinite(scale)) throw new IllegalArgumentException("Escala no válida: " + scale);
+        return new LodEncoder(new FastWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder())), scale, minLabelPx);
+    }
+
+    /** Codificador SVG en streaming sobre un Writer. */
+    static final class Encoder implements SceneEncoder {
+        private final Writer out;
+        /** Ventana (x, y, ancho, alto) o null para la escena completa */
+        private final int[] vista;
+        /** Píxeles de salida por unidad de la escena (solo cambia el tamaño del documento) */
+        private final double escala;
+        /** Clase CSS de cada estilo, o null para escribir siempre el estilo en atributos */
+        private final Map<Estilo,String> clases;
+
+        Encoder(Writer out){ this(out, null, 1, null); }
+
+        Encoder(Writer out, int x, int y, int w, int h){ this(out, new int[]{ x, y, w, h }, 1, null); }
+
+        Encoder(Writer out, int[] vista, double escala, Map<Estilo,String> clases){
+            this.out = out; this.vista = vista; this.escala = escala; this.clases = clases;
+        }
+
+        @Override
+        public void begin(int w, int h, int count) throws IOException {
+            int vx = 0, vy = 0, vw = w, vh = h;
+            if (vista != null) { vx = vista[0]; vy = vista[1]; vw = vista[2]; vh = vista[3]; }
+            // Cabecera SVG con dimensiones y vista
+            out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\""); Fmt.num(out, escalar(vw));
+            out.write("\" height=\""); Fmt.num(out, escalar(vh));
+            out.write("\" viewBox=\""); Fmt.num(out, vx); out.write(' '); Fmt.num(out, vy); out.write(' ');
+            Fmt.num(out, vw); out.write(' '); Fmt.num(out, vh); out.write("\">\n");
+            // Definiciones de estilos y cuadrícula
+            out.write("<defs>\n<style><![CDATA[\n.grid{stroke:#e6e6e6;stroke-width:1}\n.lbl{font-family:monospace;font-size:12px;fill:#333}\n");
+            if (clases != null) {
+                // Clases de estilo en orden de aparición
+                for (Map.Entry<Estilo,String> c : clases.entrySet()) {
+                    out.write('.'); out.write(c.getValue()); out.write('{'); c.getKey().writeCss(out); out.write("}\n");
+                }
+            }
+            out.write("]]></style>\n</defs>\n");
+            // Fondo blanco
+            if (vista == null) out.write("<rect x=\"0\" y=\"0\" width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n");
+            else {
+                out.write("<rect x=\""); Fmt.num(out, vx); out.write("\" y=\""); Fmt.num(out, vy);
+                out.write("\" width=\""); Fmt.num(out, vw); out.write("\" height=\""); Fmt.num(out, vh); out.write("\" fill=\"#fff\"/>\n");
+            }
+            int step=50;
+            // Parte de la escena que cae en la ventana (la cuadrícula no sale de ella)
+            long xa = Math.max(0, vx), xb = Math.min(w, (long) vx + vw), ya = Math.max(0, vy), yb = Math.min(h, (long) vy + vh);
+            // Líneas de la cuadrícula verticales
+            for(long x=(xa+step-1)/step*step;x<=xb;x+=step){
+                out.write("<line x1=\""); Fmt.num(out,(int)x); out.write("\" y1=\""); Fmt.num(out,(int)ya); out.write("\" x2=\""); Fmt.num(out,(int)x);
+                out.write("\" y2=\""); Fmt.num(out,(int)yb); out.write("\" class=\"grid\"/>\n");
+            }
+            // Líneas de la cuadrícula horizontales
+            for(long y=(ya+step-1)/step*step;y<=yb;y+=step){
+                out.write("<line x1=\""); Fmt.num(out,(int)xa); out.write("\" y1=\""); Fmt.num(out,(int)y); out.write("\" x2=\""); Fmt.num(out,(int)xb);
+                out.write("\" y2=\""); Fmt.num(out,(int)y); out.write("\" class=\"grid\"/>\n");
+            }
+            // Borde de la escena
+            out.write("<rect x=\"0\" y=\"0\" width=\""); Fmt.num(out, w); out.write("\" height=\""); Fmt.num(out, h);
+            out.write("\" fill=\"none\" stroke=\"#ccc\" stroke-width=\"2\"/>\n");
+        }
+
+        // Tamaño del documento en píxeles de salida
+        private int escalar(int v){ return escala == 1 ? v : (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceil(v * escala))); }
+
+        @Override
+        public void figura(Figura f) throws IOException {
+            // Figura y etiqueta
+            out.write("  "); f.writeSvg(out, clases == null ? null : clases.get(Estilo.svg(f))); out.write("\n");
+            out.write("  "); f.writeLabelSvg(out); out.write("\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            out.write("</svg>\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    /**
+     * Codificador SVG con nivel de detalle: las figuras de menos de un píxel se acumulan por píxel de
+     * salida y las líneas consecutivas del mismo estilo se unen en un elemento &lt;path&gt;. Se respeta
+     * el orden de pintado: los píxeles acumulados se escriben en cuanto llega una figura de tamaño
+     * completo, y el trazo pendiente en cuanto llega cualquier otra cosa (una línea de otro estilo, una
+     * figura, una etiqueta o una figura de menos de un píxel).
+     */
+    static final class LodEncoder implements SceneEncoder {
+        /** Longitud máxima de los datos de un &lt;path&gt; antes de escribirlo y empezar otro */
+        private static final int MAX_PATH = 1 << 16;
+
+        private final Writer out;
+        private final Encoder base;
+        private final double escala;
+        private final int minLabel;
+        /** Estilo del trazo pendiente (null si no hay), sus datos y el último punto escrito */
+        private Estilo estilo;
+        private final StringBuilder d = new StringBuilder();
+        private int x, y;
+        private final Pixeles pixeles = new Pixeles();
+
+        LodEncoder(Writer out, double escala, int minLabel){
+            this.out = out; this.escala = escala; this.minLabel = minLabel;
+            this.base = new Encoder(out, null, escala, null);
+        }
+
+        @Override
+        public void begin(int w, int h, int count) throws IOException {
+            base.begin(w, h, count);
+            pixeles.limites(base.escalar(w), base.escalar(h));
+        }
+
+        @Override
+        public void figura(Figura f) throws IOException {
+            int m = f.getStrokeMargin();
+            double ancho = ((long) f.getMaxX() - f.getMinX() + 2L * m) * escala, alto = ((long) f.getMaxY() - f.getMinY() + 2L * m) * escala;
+            double tam = Math.max(ancho, alto);
+            if (tam < 1) { volcarTrazo(); pixeles.add(f, ancho, alto, escala); return; }
+            pixeles.write(out, escala);
+            if (f instanceof Linea) linea((Linea) f);
+            else { volcarTrazo(); out.write("  "); f.writeSvg(out); out.write("\n"); }
+            if (tam >= minLabel) { volcarTrazo(); out.write("  "); f.writeLabelSvg(out); out.write("\n"); }
+        }
+
+        // Añade la línea al trazo pendiente si es del mismo estilo (continúa el subtrazo si empieza donde
+        // acabó la anterior); si no, escribe el pendiente y empieza otro
+        private void linea(Linea l) throws IOException {
+            Estilo k = Estilo.borde(l);
+            if (!k.equals(estilo)) { volcarTrazo(); estilo = k; }
+            if (d.length() == 0 || x != l.x1 || y != l.y1) {
+                if (d.length() > 0) d.append(' ');
+                d.append('M').append(l.x1).append(' ').append(l.y1);
+            }
+            d.append(' ').append(l.x2).append(' ').append(l.y2);
+            x = l.x2; y = l.y2;
+            if (d.length() >= MAX_PATH) volcarTrazo();
+        }
+
+        // Escribe el trazo pendiente
+        private void volcarTrazo() throws IOException {
+            if (estilo == null) return;
+            out.write("  <path d=\""); out.append(d); out.write('"');
+            Figura.strokeAttrs(out, estilo.stroke, estilo.strokeTexto, estilo.strokeWidth, estilo.strokeOpacity);
+            out.write(" fill=\"none\"/>\n");
+            d.setLength(0);
+            estilo = null;
+        }
+
+        @Override
+        public void end() throws IOException {
+            volcarTrazo();
+            pixeles.write(out, escala);
+            base.end();
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    /**
+     * Acumulación de las figuras de menos de un píxel por píxel de salida (tabla hash dispersa:
+     * solo ocupan memoria los píxeles con alguna figura, y solo los del lienzo). Se escribe (y se vacía) como
+     * elementos &lt;rect&gt; de una fila de alto, uno por cada tramo de píxeles contiguos de la misma
+     * fila con el mismo color y la misma cobertura.
+     * Cada figura aporta su color (el del relleno o, si no tiene, el del borde) con un peso igual a la
+     * fracción del píxel que cubre su caja por su opacidad; la cobertura del píxel compone esos pesos
+     * como capas semitransparentes.
+     */
+    private static final class Pixeles {
+        private long[] claves = new long[64];
+        private double[] r = new double[64], g = new double[64], b = new double[64], peso = new double[64], cobertura = new double[64];
+        /** Posición en los arrays más 1 de cada hueco de la tabla (0 = libre) */
+        private int[] tabla = new int[128];
+        private int n;
+        /** Tamaño del lienzo en píxeles de salida */
+        private int ancho = Integer.MAX_VALUE, alto = Integer.MAX_VALUE;
+
+        void limites(int ancho, int alto){ this.ancho = ancho; this.alto = alto; }
+
+        void add(Figura f, double w, double h, double escala){
+            int color = f.getFillRgb() != ColorRGB.NONE ? f.getFillRgb() : f.getStrokeRgb();
+            if (!ColorRGB.isRgb(color)) return;
+            double op = Math.max(0, Math.min(1, f.getFillRgb() != ColorRGB.NONE ? f.getFillOpacity() : f.getStrokeOpacity()));
+            double p = Math.min(1, Math.max(w, 1e-3) * Math.max(h, 1e-3)) * op;
+            if (p <= 0) return;
+            int px = Figura.sat((long) Math.floor(((double) f.getMinX() + f.getMaxX()) / 2 * escala));
+            int py = Figura.sat((long) Math.floor(((double) f.getMinY() + f.getMaxY()) / 2 * escala));
+            if (px < 0 || py < 0 || px >= ancho || py >= alto) return;
+            int i = indice((long) py << 32 | (px & 0xFFFFFFFFL));
+            r[i] += (color >>> 16 & 255) * p; g[i] += (color >>> 8 & 255) * p; b[i] += (color & 255) * p;
+            peso[i] += p;
+            cobertura[i] = 1 - (1 - cobertura[i]) * (1 - p);
+        }
+
+        // Posición del píxel en los arrays (-1 si no está)
+        private int buscar(long k){
+            int mask = tabla.length - 1;
+            for (int h = Long.hashCode(k * 0x9E3779B97F4A7C15L) & mask; ; h = (h + 1) & mask) {
+                int v = tabla[h];
+                if (v == 0) return -1;
+                if (claves[v - 1] == k) return v - 1;
+            }
+        }
+
+        // Posición del píxel en los arrays (lo añade si no estaba)
+        private int indice(long k){
+            int i = buscar(k);
+            if (i >= 0) return i;
+            if (n == claves.length) {
+                int c = n * 2;
+                claves = Arrays.copyOf(claves, c); r = Arrays.copyOf(r, c); g = Arrays.copyOf(g, c); b = Arrays.copyOf(b, c);
+                peso = Arrays.copyOf(peso, c); cobertura = Arrays.copyOf(cobertura, c);
+            }
+            if ((n + 1) * 2 > tabla.length) {
+                tabla = new int[tabla.length * 2];
+                for (int j = 0; j < n; j++) colocar(claves[j], j);
+            }
+            claves[n] = k;
+            r[n] = g[n] = b[n] = peso[n] = cobertura[n] = 0;
+            colocar(k, n);
+            return n++;
+        }
+
+        private void colocar(long k, int i){
+            int mask = tabla.length - 1, h = Long.hashCode(k * 0x9E3779B97F4A7C15L) & mask;
+            while (tabla[h] != 0) h = (h + 1) & mask;
+            tabla[h] = i + 1;
+        }
+
+        // Tramos de píxeles en coordenadas de salida (grupo escalado), por filas
+        void write(Writer out, double escala) throws IOException {
+            if (n == 0) return;
+            // Las claves de los píxeles del lienzo no son negativas: ordenadas quedan por fila y columna
+            long[] orden = Arrays.copyOf(claves, n);
+            Arrays.sort(orden);
+            out.write("  <g transform=\"scale("); out.write(String.valueOf(1 / escala)); out.write(")\" shape-rendering=\"crispEdges\">\n");
+            for (int j = 0; j < n; ) {
+                long k = orden[j];
+                int c = argb(buscar(k)), w = 1;
+                while (j + w < n && orden[j + w] == k + w && argb(buscar(k + w)) == c) w++;
+                j += w;
+                if (c >>> 24 == 0) continue;
+                out.write("  <rect x=\""); Fmt.num(out, (int) k); out.write("\" y=\""); Fmt.num(out, (int) (k >> 32));
+                out.write("\" width=\""); Fmt.num(out, w); out.write("\" height=\"1\" fill=\""); ColorRGB.append(out, c & 0xFFFFFF);
+                if (c >>> 24 != 255) { out.write("\" fill-opacity=\""); Fmt.opacity(out, Math.round((c >>> 24) / 255.0 * 1000) / 1000.0); }
+                out.write("\"/>\n");
+            }
+            out.write("  </g>\n");
+            vaciar();
+        }
+
+        // Quita todos los píxeles recorriendo solo los huecos ocupados (la tabla puede ser mucho mayor que n)
+        private void vaciar(){
+            int mask = tabla.length - 1;
+            for (int j = 0; j < n; j++) {
+                int h = Long.hashCode(claves[j] * 0x9E3779B97F4A7C15L) & mask;
+                while (tabla[h] != j + 1) h = (h + 1) & mask;
+                tabla[h] = 0;
+            }
+            n = 0;
+        }
+
+        // Color medio y cobertura (alfa) del píxel i
+        private int argb(int i){
+            int alfa = (int) Math.round(cobertura[i] * 255);
+            return alfa << 24 | (int) Math.round(r[i] / peso[i]) << 16 | (int) Math.round(g[i] / peso[i]) << 8 | (int) Math.round(b[i] / peso[i]);
+        }
     }
 }
@@ -0,0 +1,73 @@
+package es.ad.r1;
+import java.io.*; import java.nio.file.*; import java.util.*; import java.util.concurrent.*;
+
+/**
+ * Exportación de una escena a SVG por teselas.
+ *
+ * Divide el lienzo en una rejilla de teselas (p.ej. 1024x1024) y escribe un SVG por tesela con su
+ * propio viewBox y solo las figuras cuya caja (con el grosor del borde) corta la tesela, para que un
+ * visor web cargue las escenas grandes por partes. Las figuras de cada tesela se obtienen de un
+ * {@link SpatialIndex} construido una vez; las teselas se escriben en paralelo en un pool de hilos.
+ *
+ * Los ficheros se llaman tile_&lt;columna&gt;_&lt;fila&gt;.svg y se acompañan de tiles.json con las
+ * dimensiones de la escena y de la rejilla. Las etiquetas se escriben con su figura, así que una
+ * etiqueta que sobresale de la tesela se recorta en el borde.
+ */
+public final class TileExporter {
+
+    private TileExporter(){}
+
+    /**
+     * Escribe todas las teselas de la escena en un directorio.
+     *
+     * @param e       Escena a exportar.
+     * @param dir     Directorio de salida (se crea si no existe).
+     * @param tw      Ancho de tesela.
+     * @param th      Alto de tesela.
+     * @param threads Número de hilos.
+     * @return Número de teselas escritas.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static int export(Escena e, Path dir, int tw, int th, int threads) throws IOException {
+        if (tw <= 0 || th <= 0) throw new IllegalArgumentException("Tamaño de tesela no válido: " + tw + "x" + th);
+        Files.createDirectories(dir);
+        int cols = Math.max(1, (int) ((Math.max(0L, e.getWidth()) + tw - 1) / tw));
+        int rows = Math.max(1, (int) ((Math.max(0L, e.getHeight()) + th - 1) / th));
+        SpatialIndex idx = SpatialIndex.build(e);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<?>> futuros = new ArrayList<>(cols * rows);
+            for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) {
+                int x = (int) Math.min(Integer.MAX_VALUE, (long) c * tw), y = (int) Math.min(Integer.MAX_VALUE, (long) r * th);
+                Path file = dir.resolve("tile_" + c + "_" + r + ".svg");
+                futuros.add(pool.submit(() -> { tesela(e, idx, file, x, y, tw, th); return null; }));
+            }
+            for (Future<?> fu : futuros) {
+                try { fu.get(); }
+                catch (InterruptedException ex) { Thread.currentThread().interrupt(); throw new InterruptedIOException(); }
+                catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+                    throw new IOException(ex.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            idx.detach();
+        }
+        Files.writeString(dir.resolve("tiles.json"), "{\n  \"width\": " + e.getWidth() + ",\n  \"height\": " + e.getHeight()
+            + ",\n  \"tileWidth\": " + tw + ",\n  \"tileHeight\": " + th + ",\n  \"cols\": " + cols + ",\n  \"rows\": " + rows
+            + ",\n  \"pattern\": \"tile_{col}_{row}.svg\"\n}\n");
+        return cols * rows;
+    }
+
+    // Escribe una tesela con las figuras que la cortan, en el orden de la escena
+    private static void tesela(Escena e, SpatialIndex idx, Path file, int x, int y, int w, int h) throws IOException {
+        int[] ids = idx.query(x, y, (int) Math.min(Integer.MAX_VALUE, (long) x + w), (int) Math.min(Integer.MAX_VALUE, (long) y + h));
+        List<Figura> figuras = e.getFiguras();
+        try (SceneEncoder enc = SvgSceneIO.encoder(file, x, y, w, h)) {
+            enc.begin(e.getWidth(), e.getHeight(), ids.length);
+            for (int i : ids) enc.figura(figuras.get(i));
+            enc.end();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package es.ad.r1;
-import java.io.*; import java.nio.file.*; import java.util.*;
+import java.io.*; import java.nio.*; import java.nio.channels.FileChannel; import java.nio.charset.StandardCharsets;
+import java.nio.file.*; import java.util.*; import java.util.concurrent.*;
 
 /**
  * Clase de utilidades para importar y exportar escenas en formato texto plano.
@@ -10,6 +11,21 @@ import java.io.*; import java.nio.file.*; import java.util.*;
  */
 public class TxtSceneIO {
 
+    /**
+     * Receptor de los elementos producidos por el parseo en streaming.
+     * Permite validar o convertir una escena sin mantenerla completa en memoria.
+     */
+    public interface Handler {
+        /** Recibe las dimensiones de la escena (solo si la cabecera es válida). */
+        void dimensiones(int width, int height);
+        /** Recibe cada figura en el orden en que aparece en el fichero. */
+        void figura(Figura f);
+        /** Recibe cada figura junto a la línea (desde 1) en la que está definida. */
+        default void figura(Figura f, int line){ figura(f); }
+        /** Recibe cada incidencia de validación en cuanto se detecta. */
+        void incidencia(ValidationReport.Issue issue);
+    }
+
     /**
      * Parsea un archivo de texto y construye una instancia de Escena junto a su informe de validación.
      * 
@@ -17,72 +33,350 @@ public class TxtSceneIO {
      * @return ParseResult con la escena y el informe de validación.
      * @throws IOException Si ocurre un error de E/S.
      */
-    public static ParseResult parse(Path path) throws IOException {
-        java.util.List<String> lines = Files.readAllLines(path);
-        ValidationReport report = new ValidationReport();
-        if (lines.isEmpty()) {
+    public static ParseResult parse(Path path) throws IOException { return parse(path, new ValidationReport()); }
+
+    /**
+     * Parsea un archivo de texto registrando las incidencias en el informe indicado
+     * (p.ej. un informe acotado que las escribe directamente en validacion.txt).
+     * 
+     * @param path   Ruta del archivo TXT.
+     * @param report Informe de validación destino.
+     * @return ParseResult con la escena y el informe.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult parse(Path path, ValidationReport report) throws IOException {
+        try (Reader in = openReader(path)) {
+            return parse(in, report);
+        }
+    }
+
+    /**
+     * Parsea una escena en formato texto desde un Reader (no lo cierra).
+     * 
+     * @param in Origen del texto.
+     * @return ParseResult con la escena y el informe de validación.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult parse(Reader in) throws IOException { return parse(in, new ValidationReport()); }
+
+    // Parseo desde un Reader con un informe dado
+    static ParseResult parse(Reader in, ValidationReport report) throws IOException {
+        Escena[] e = { new Escena(0,0) };
+        parse(in, new Handler() {
+            public void dimensiones(int width, int height){ e[0] = new Escena(width,height); }
+            public void figura(Figura f){ e[0].add(f); }
+            public void incidencia(ValidationReport.Issue issue){ }
+        }, report);
+        return new ParseResult(e[0],report);
+    }
+
+    /**
+     * Parsea un archivo de texto en una escena con almacenamiento por columnas ({@link EscenaColumnar}).
+     * El parseo es el mismo que el de {@link #parse(Path)}: cada línea crea una Figura temporal que se
+     * copia a las columnas en cuanto se lee y se descarta. Lo que se reduce es la memoria retenida
+     * (una fracción de la de parse en escenas muy grandes), no la memoria reservada durante el parseo.
+     * 
+     * @param path Ruta del archivo TXT.
+     * @return ParseResult con la escena por columnas y el informe de validación.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult parseColumnar(Path path) throws IOException { return parseColumnar(path, new ValidationReport()); }
+
+    /**
+     * Parsea un archivo de texto por columnas registrando las incidencias en el informe indicado.
+     * @see #parseColumnar(Path)
+     */
+    public static ParseResult parseColumnar(Path path, ValidationReport report) throws IOException {
+        EscenaColumnar[] e = { new EscenaColumnar(0,0) };
+        try (Reader in = openReader(path)) {
+            parse(in, new Handler() {
+                public void dimensiones(int width, int height){ e[0] = new EscenaColumnar(width,height); }
+                public void figura(Figura f){ e[0].add(f); }
+                public void incidencia(ValidationReport.Issue issue){ }
+            }, report);
+        }
+        e[0].trimToSize();
+        return new ParseResult(e[0],report);
+    }
+
+    /**
+     * Parsea un archivo de texto con un presupuesto de errores: la lectura se detiene en cuanto el informe
+     * llega a maxErrores errores (1 = fail-fast), sin leer el resto del fichero. La escena contiene las
+     * figuras leídas hasta ese punto; si se ha detenido, el informe lo indica con una incidencia INFO.
+     * 
+     * @param path       Ruta del archivo TXT.
+     * @param report     Informe de validación destino.
+     * @param maxErrores Errores a partir de los que se deja de leer.
+     * @return ParseResult con la escena (posiblemente parcial) y el informe.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult parse(Path path, ValidationReport report, int maxErrores) throws IOException {
+        Escena[] e = { new Escena(0,0) };
+        try (Reader in = openReader(path)) {
+            parse(in, new Handler() {
+                public void dimensiones(int width, int height){ e[0] = new Escena(width,height); }
+                public void figura(Figura f){ e[0].add(f); }
+                public void incidencia(ValidationReport.Issue issue){ }
+            }, report, maxErrores);
+        }
+        return new ParseResult(e[0],report);
+    }
+
+    /**
+     * Valida un archivo de texto sin construir la escena: se comprueban la cabecera, la sintaxis de cada
+     * línea, los enteros, los colores y los atributos igual que en {@link #parse(Path)}, pero no se crea
+     * ninguna Figura ni Escena. Con maxErrores la validación se detiene al llegar a ese número de errores
+     * (1 = responder solo si el fichero es válido o no, leyendo hasta el primer error).
+     * 
+     * @param path       Ruta del archivo TXT.
+     * @param report     Informe de validación destino.
+     * @param maxErrores Errores a partir de los que se deja de leer (Integer.MAX_VALUE = todo el fichero).
+     * @return El mismo informe, con las incidencias encontradas.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ValidationReport validate(Path path, ValidationReport report, int maxErrores) throws IOException {
+        try (Reader in = openReader(path)) {
+            parse(in, null, report, maxErrores);
+        }
+        return report;
+    }
+
+    /**
+     * Parsea un archivo de texto en streaming, línea a línea, entregando cada figura y cada
+     * incidencia al receptor sin construir la escena ni guardar las líneas en memoria.
+     * 
+     * @param path Ruta del archivo TXT.
+     * @param h    Receptor de dimensiones, figuras e incidencias.
+     * @return Informe de validación en modo streaming (solo conserva si hubo errores).
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ValidationReport parse(Path path, Handler h) throws IOException {
+        ValidationReport report = new ValidationReport(h::incidencia);
+        try (Reader in = openReader(path)) {
+            parse(in, h, report);
+        }
+        return report;
+    }
+
+    /**
+     * Parsea un archivo de texto en paralelo usando el pool común de ForkJoin.
+     * @see #parseParallel(Path, ForkJoinPool)
+     */
+    public static ParseResult parseParallel(Path path) throws IOException {
+        return parseParallel(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parsea un archivo de texto en paralelo. El fichero se divide en bloques que terminan
+     * en salto de línea; cada bloque se proyecta en memoria (FileChannel.map), se decodifica
+     * y se parsea en el pool. Las figuras se añaden a la escena en el orden original y los
+     * informes parciales se unen con los números de línea absolutos, de modo que el resultado
+     * es el mismo que el de {@link #parse(Path)}.
+     * 
+     * @param path Ruta del archivo TXT.
+     * @param pool Pool en el que se parsean los bloques.
+     * @return ParseResult con la escena y el informe de validación.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static ParseResult parseParallel(Path path, ForkJoinPool pool) throws IOException {
+        return parseParallel(path, pool, new ValidationReport());
+    }
+
+    /**
+     * Parsea un archivo de texto en paralelo registrando las incidencias en el informe indicado.
+     * Cada bloque usa un informe parcial con el mismo límite, de modo que un informe acotado
+     * conserva las mismas incidencias que en el parseo secuencial.
+     * @see #parseParallel(Path, ForkJoinPool)
+     */
+    public static ParseResult parseParallel(Path path, ForkJoinPool pool, ValidationReport report) throws IOException {
+        int limite = report.getLimite();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, size / (pool.getParallelism() * 4L)));
+            // Límites de los bloques, siempre justo detrás de un '\n'
+            List<long[]> bloques = new ArrayList<>();
+            for (long start = 0; start < size; ) {
+                long end = start + chunk >= size ? size : nextLineStart(ch, start + chunk, size);
+                if (end - start > Integer.MAX_VALUE) throw new IOException("Línea demasiado larga cerca de la posición " + start);
+                bloques.add(new long[]{ start, end });
+                start = end;
+            }
+            List<Callable<Bloque>> tareas = new ArrayList<>();
+            for (int k = 0; k < bloques.size(); k++) {
+                long[] b = bloques.get(k); boolean primero = k == 0;
+                tareas.add(() -> parseChunk(ch, b[0], b[1], primero, limite));
+            }
+            Escena e = new Escena(0,0);
+            if (tareas.isEmpty()) { report.error(1, "Fichero vacío."); return new ParseResult(e, report); }
+            int offset = 0;
+            for (Future<Bloque> f : pool.invokeAll(tareas)) {
+                Bloque b = join(f);
+                if (b.cabeceraInvalida) { report.merge(b.report, 0); return new ParseResult(e, report); }
+                if (b.escena != null) e = b.escena;
+                report.merge(b.report, offset);
+                for (Figura fig : b.figuras) e.add(fig);
+                offset += b.lineas;
+            }
+            return new ParseResult(e, report);
+        }
+    }
+
+    /** Tamaño mínimo y máximo de un bloque del parseo paralelo. */
+    private static final long MIN_CHUNK = 1 << 20, MAX_CHUNK = 64 << 20;
+
+    /** Resultado del parseo de un bloque: figuras, informe con líneas relativas y líneas leídas. */
+    private static final class Bloque {
+        final List<Figura> figuras = new ArrayList<>();
+        final ValidationReport report;
+        /** Escena creada por la cabecera (solo en el primer bloque) */
+        Escena escena;
+        /** Indica que la cabecera no es válida y el resto del fichero no debe procesarse */
+        boolean cabeceraInvalida;
+        int lineas;
+        Bloque(int limite){ report = new ValidationReport(limite); }
+    }
+
+    // Proyecta, decodifica y parsea un bloque; el primero incluye la cabecera
+    private static Bloque parseChunk(FileChannel ch, long start, long end, boolean primero, int limite) throws IOException {
+        MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharBuffer cb = StandardCharsets.UTF_8.newDecoder().decode(map);
+        TxtTokenizer t = new TxtTokenizer(cb.array(), cb.limit());
+        Bloque b = new Bloque(limite);
+        Handler h = new Handler() {
+            public void dimensiones(int width, int height){ b.escena = new Escena(width,height); }
+            public void figura(Figura f){ b.figuras.add(f); }
+            public void incidencia(ValidationReport.Issue issue){ }
+        };
+        if (primero) {
+            if (!header(t, h, b.report)) { b.cabeceraInvalida = true; return b; }
+            b.lineas = 1 + lines(t, 2, h, b.report);
+        } else {
+            b.lineas = lines(t, 1, h, b.report);
+        }
+        return b;
+    }
+
+    // Devuelve la posición siguiente al primer '\n' a partir de from (o size si no hay más)
+    private static long nextLineStart(FileChannel ch, long from, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        for (long pos = from; pos < size; ) {
+            buf.clear();
+            int r = ch.read(buf, pos);
+            if (r < 0) break;
+            for (int i = 0; i < r; i++) if (buf.get(i) == '\n') return pos + i + 1;
+            pos += r;
+        }
+        return size;
+    }
+
+    // Espera el resultado de un bloque propagando los errores de E/S
+    private static Bloque join(Future<Bloque> f) throws IOException {
+        try { return f.get(); }
+        catch (InterruptedException ex) { Thread.currentThread().interrupt(); throw new InterruptedIOException(); }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    // Abre el fichero en UTF-8 estricto (igual que Files.readAllLines)
+    static Reader openReader(Path path) throws IOException {
+        return new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8.newDecoder());
+    }
+
+    // Núcleo del parseo: lee la cabecera y procesa cada línea de figura según se lee
+    static void parse(Reader in, Handler dst, ValidationReport report) throws IOException {
+        parse(in, dst, report, Integer.MAX_VALUE);
+    }
+
+    // Núcleo del parseo con presupuesto de errores; sin receptor (dst null) solo se valida
+    static void parse(Reader in, Handler dst, ValidationReport report, int maxErrores) throws IOException {
+        TxtTokenizer t = new TxtTokenizer(in);
+        if (header(t, dst, report)) lines(t, 2, dst, report, maxErrores);
+    }
+
+    // Parsea líneas de figura sueltas (sin cabecera) ya decodificadas, numerándolas desde first
+    static void parseLines(char[] data, int len, int first, Handler dst, ValidationReport report) throws IOException {
+        lines(new TxtTokenizer(data, len), first, dst, report);
+    }
+
+    // Lee y valida la cabecera "dimensiones W H"; devuelve false si no se puede seguir parseando
+    private static boolean header(TxtTokenizer t, Handler dst, ValidationReport report) throws IOException {
+        if (!t.nextLine()) {
             report.error(1, "Fichero vacío.");
-            return new ParseResult(new Escena(0,0), report);
+            return false;
         }
-        String l1 = lines.get(0).trim();
-        if (!l1.toLowerCase(Locale.ROOT).startsWith("dimensiones")) {
+        t.tokenize();
+        if (!t.startsWithLower("dimensiones")) {
             report.error(1, "La primera línea debe ser: dimensiones <ancho> <alto>");
-            return new ParseResult(new Escena(0,0), report);
+            return false;
         }
-        String[] p = l1.split("\\s+");
-        if (p.length < 3) {
+        if (t.n < 3) {
             report.error(1, "Faltan W y H.");
-            return new ParseResult(new Escena(0,0), report);
+            return false;
         }
-        int w = parseIntSafe(p[1],1,report), h = parseIntSafe(p[2],1,report);
-        Escena e = new Escena(w,h);
+        int w = parseIntSafe(t,1,1,report), h = parseIntSafe(t,2,1,report);
+        if (dst != null) dst.dimensiones(w,h);
+        return true;
+    }
 
-        // Procesa cada línea y crea las figuras correspondientes
-        for (int i=1;i<lines.size();i++){
-            String ln = lines.get(i).trim();
-            if (ln.isEmpty() || ln.startsWith("#")) continue;
+    // Procesa las líneas de figura restantes numerándolas desde first; devuelve cuántas líneas ha leído
+    private static int lines(TxtTokenizer t, int first, Handler dst, ValidationReport report) throws IOException {
+        return lines(t, first, dst, report, Integer.MAX_VALUE);
+    }
 
-            String[] tok = ln.split("\\s+");
-            String tipo = tok[0].toLowerCase(Locale.ROOT);
+    // Como lines, pero deja de leer al alcanzar maxErrores errores (si quedan líneas, con una incidencia INFO que lo indica).
+    // Sin receptor (dst null) no se crea ninguna figura: solo se comprueban la sintaxis y los valores.
+    private static int lines(TxtTokenizer t, int first, Handler dst, ValidationReport report, int maxErrores) throws IOException {
+        // Procesa cada línea y crea las figuras correspondientes
+        int i=first-1;
+        boolean detenida=false;
+        for (;t.nextLine();i++){
+            if (report.getErrors()>=maxErrores) { detenida=true; break; }
+            t.tokenize();
+            if (t.n == 0 || t.isComment()) continue;
             try{
-                if ("rectangulo".equals(tipo)) {
-                    if (tok.length < 6) { report.error(i+1,"rectangulo: x y width height #RRGGBB"); continue; }
-                    Rectangulo r = new Rectangulo(
-                        parseIntSafe(tok[1],i+1,report), parseIntSafe(tok[2],i+1,report),
-                        parseIntSafe(tok[3],i+1,report), parseIntSafe(tok[4],i+1,report), tok[5]
-                    );
-                    if (!isColor(tok[5])) report.warn(i+1,"Color no parece #RRGGBB: "+tok[5]);
-                    applyAttrs(r, tok, 6, report, i+1);
-                    e.add(r);
-
-                } else if ("circulo".equals(tipo)) {
-                    if (tok.length < 5) { report.error(i+1,"circulo: cx cy r #RRGGBB"); continue; }
-                    Circulo c = new Circulo(
-                        parseIntSafe(tok[1],i+1,report), parseIntSafe(tok[2],i+1,report),
-                        parseIntSafe(tok[3],i+1,report), tok[4]
-                    );
-                    if (!isColor(tok[4])) report.warn(i+1,"Color no parece #RRGGBB: "+tok[4]);
-                    applyAttrs(c, tok, 5, report, i+1);
-                    e.add(c);
-
-                } else if ("linea".equals(tipo)) {
-                    if (tok.length < 6) { report.error(i+1,"linea: x1 y1 x2 y2 #RRGGBB"); continue; }
-                    Linea l = new Linea(
-                        parseIntSafe(tok[1],i+1,report), parseIntSafe(tok[2],i+1,report),
-                        parseIntSafe(tok[3],i+1,report), parseIntSafe(tok[4],i+1,report), tok[5]
-                    );
-                    if (!isColor(tok[5])) report.warn(i+1,"Color no parece #RRGGBB: "+tok[5]);
-                    applyAttrs(l, tok, 6, report, i+1);
-                    e.add(l);
+                if (t.equalsLower(0,"rectangulo")) {
+                    if (t.n < 6) { report.error(i+1,"rectangulo: x y width height #RRGGBB"); continue; }
+                    int color = t.color(5);
+                    int x = parseIntSafe(t,1,i+1,report), y = parseIntSafe(t,2,i+1,report);
+                    int w = parseIntSafe(t,3,i+1,report), h = parseIntSafe(t,4,i+1,report);
+                    Rectangulo r = dst == null ? null : new Rectangulo(x, y, w, h, color);
+                    if (r != null && !t.colorExacto(5, color)) r.setStroke(t.text(5));
+                    if (color == ColorRGB.INVALID) report.warn(i+1,"Color no parece #RRGGBB",t.text(5));
+                    applyAttrs(r, t, 6, report, i+1);
+                    if (dst != null) dst.figura(r, i+1);
+
+                } else if (t.equalsLower(0,"circulo")) {
+                    if (t.n < 5) { report.error(i+1,"circulo: cx cy r #RRGGBB"); continue; }
+                    int color = t.color(4);
+                    int cx = parseIntSafe(t,1,i+1,report), cy = parseIntSafe(t,2,i+1,report), radio = parseIntSafe(t,3,i+1,report);
+                    Circulo c = dst == null ? null : new Circulo(cx, cy, radio, color);
+                    if (c != null && !t.colorExacto(4, color)) c.setStroke(t.text(4));
+                    if (color == ColorRGB.INVALID) report.warn(i+1,"Color no parece #RRGGBB",t.text(4));
+                    applyAttrs(c, t, 5, report, i+1);
+                    if (dst != null) dst.figura(c, i+1);
+
+                } else if (t.equalsLower(0,"linea")) {
+                    if (t.n < 6) { report.error(i+1,"linea: x1 y1 x2 y2 #RRGGBB"); continue; }
+                    int color = t.color(5);
+                    int x1 = parseIntSafe(t,1,i+1,report), y1 = parseIntSafe(t,2,i+1,report);
+                    int x2 = parseIntSafe(t,3,i+1,report), y2 = parseIntSafe(t,4,i+1,report);
+                    Linea l = dst == null ? null : new Linea(x1, y1, x2, y2, color);
+                    if (l != null && !t.colorExacto(5, color)) l.setStroke(t.text(5));
+                    if (color == ColorRGB.INVALID) report.warn(i+1,"Color no parece #RRGGBB",t.text(5));
+                    applyAttrs(l, t, 6, report, i+1);
+                    if (dst != null) dst.figura(l, i+1);
 
                 } else {
-                    report.error(i+1,"Tipo desconocido: "+tipo);
+                    report.error(i+1,"Tipo desconocido",t.text(0).toLowerCase(Locale.ROOT));
                 }
             }catch(Exception ex){
-                report.error(i+1,"Error procesando línea: "+ex.getMessage());
+                report.error(i+1,"Error procesando línea",ex.getMessage());
             }
         }
-        return new ParseResult(e,report);
+        if (detenida) report.info(i, "Lectura detenida al alcanzar el máximo de errores ("+maxErrores+"); el resto del fichero no se ha revisado.");
+        return i-(first-1);
     }
 
     /**
@@ -93,41 +387,96 @@ public class TxtSceneIO {
      * @throws IOException Si ocurre un error de E/S.
      */
     public static void write(Escena e, Path path) throws IOException {
-        java.util.List<String> out = new java.util.ArrayList<>();
-        out.add("dimensiones " + e.getWidth() + " " + e.getHeight());
-        for (Figura f : e.getFiguras()) out.add(f.toTxt());
-        Files.write(path, out);
-    }
-
-    // Aplica atributos opcionales a la figura desde el TXT
-    private static void applyAttrs(Figura f, String[] tok, int start, ValidationReport report, int line){
-        for (int i=start;i<tok.length;i++){
-            String t = tok[i];
-            if (!t.contains("=")) continue;
-            String[] kv = t.split("=",2);
-            if (kv.length < 2) continue;
-            String k = kv[0].toLowerCase(Locale.ROOT), v = kv[1];
-            try{
-                switch(k){
-                    case "fill":   if (isColor(v) || "none".equals(v)) f.setFill(v); else report.warn(line,"fill inválido: "+v); break;
-                    case "stroke": if (isColor(v)) f.setStroke(v); else report.warn(line,"stroke inválido: "+v); break;
-                    case "sw":     f.setStrokeWidth(Integer.parseInt(v)); break;
-                    case "so":     f.setStrokeOpacity(Double.parseDouble(v)); break;
-                    case "fo":     f.setFillOpacity(Double.parseDouble(v)); break;
-                    case "label":  f.setLabel(v.replace("_"," ")); break;
-                    default: report.warn(line,"Atributo desconocido: "+k);
-                }
-            }catch(Exception ex){
-                report.warn(line,"Valor inválido para "+k+": "+v);
+        try (SceneEncoder enc = encoder(path)) {
+            SceneEncoder.encode(e, enc);
+        }
+    }
+
+    /**
+     * Exporta una escena en formato texto plano a un Writer (no lo cierra).
+     * 
+     * @param e   Escena a exportar.
+     * @param out Destino.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public static void write(Escena e, Writer out) throws IOException {
+        SceneEncoder.encode(e, new Encoder(out instanceof FastWriter ? (FastWriter) out : new FastWriter(out)));
+    }
+
+    /**
+     * Crea un codificador TXT que escribe en el archivo indicado.
+     * 
+     * @param path Ruta del archivo destino.
+     * @return Codificador; al cerrarlo se cierra el archivo.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public static SceneEncoder encoder(Path path) throws IOException {
+        return new Encoder(new FastWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8.newEncoder())));
+    }
+
+    /** Codificador TXT en streaming: una línea por figura. */
+    static final class Encoder implements SceneEncoder {
+        private final FastWriter out;
+
+        Encoder(FastWriter out){ this.out = out; }
+
+        @Override
+        public void begin(int width, int height, int count) throws IOException {
+            out.write("dimensiones "); out.num(width); out.write(' '); out.num(height);
+            out.write(System.lineSeparator());
+        }
+
+        @Override
+        public void figura(Figura f) throws IOException { f.writeTxt(out); out.write(System.lineSeparator()); }
+
+        @Override
+        public void end() throws IOException { out.flush(); }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    // Aplica atributos opcionales (clave=valor) a la figura directamente sobre el buffer del escáner
+    // (con f null solo los valida)
+    private static void applyAttrs(Figura f, TxtTokenizer t, int start, ValidationReport report, int line){
+        for (int i=start;i<t.n;i++){
+            int eq = t.indexOf(i,'=');
+            if (eq < 0) continue;
+            int ks = t.ts[i], vs = eq+1, ve = t.te[i];
+            if (t.regionEqualsLower(ks,eq,"fill")) {
+                int c = t.regionEquals(vs,ve,"none") ? ColorRGB.NONE : t.color(vs,ve);
+                if (c == ColorRGB.INVALID) report.warn(line,"fill inválido",t.text(i,vs)); else if (f != null) { if (c == ColorRGB.NONE || t.colorExacto(vs, ve, c)) f.setFillRgb(c); else f.setFill(t.text(i, vs)); }
+            } else if (t.regionEqualsLower(ks,eq,"stroke")) {
+                int c = t.color(vs,ve);
+                if (c == ColorRGB.INVALID) report.warn(line,"stroke inválido",t.text(i,vs)); else if (f != null) { if (t.colorExacto(vs, ve, c)) f.setStrokeRgb(c); else f.setStroke(t.text(i, vs)); }
+            } else if (t.regionEqualsLower(ks,eq,"sw")) {
+                if (!t.toInt(vs,ve)) invalid(t,i,eq,report,line); else if (f != null) f.setStrokeWidth(t.intValue);
+            } else if (t.regionEqualsLower(ks,eq,"so")) {
+                if (!t.toDouble(vs,ve)) invalid(t,i,eq,report,line); else if (f != null) f.setStrokeOpacity(t.doubleValue);
+            } else if (t.regionEqualsLower(ks,eq,"fo")) {
+                if (!t.toDouble(vs,ve)) invalid(t,i,eq,report,line); else if (f != null) f.setFillOpacity(t.doubleValue);
+            } else if (t.regionEqualsLower(ks,eq,"label")) {
+                if (f != null) f.setLabel(t.text(i,vs).replace('_',' '));
+            } else {
+                report.warn(line,"Atributo desconocido",key(t,i,eq));
             }
         }
     }
 
-    // Conversión segura de String a int con reporte de error
-    private static int parseIntSafe(String s, int line, ValidationReport report){
-        try{ return Integer.parseInt(s); }
-        catch(Exception e){ report.error(line,"No es entero válido: '"+s+"'"); return 0; }
+    // Clave del atributo en minúsculas (solo para los mensajes del informe)
+    private static String key(TxtTokenizer t, int i, int eq){
+        return new String(t.buf, t.ts[i], eq-t.ts[i]).toLowerCase(Locale.ROOT);
+    }
+
+    // Advierte de un valor numérico no válido en un atributo
+    private static void invalid(TxtTokenizer t, int i, int eq, ValidationReport report, int line){
+        report.warn(line,"Valor inválido para "+key(t,i,eq),t.text(i,eq+1));
+    }
+
+    // Conversión segura del token k a int con reporte de error
+    private static int parseIntSafe(TxtTokenizer t, int k, int line, ValidationReport report){
+        if (t.toInt(k)) return t.intValue;
+        report.error(line,"No es entero válido","'"+t.text(k)+"'");
+        return 0;
     }
-    // Comprueba si el color tiene formato hexadecimal válido
-    private static boolean isColor(String s){ return s.matches("#[0-9a-fA-F]{6}"); }
 }
@@ -0,0 +1,227 @@
+package es.ad.r1;
+import java.io.IOException; import java.io.Reader;
+
+/**
+ * Escáner de líneas y tokens para la gramática TXT de escenas.
+ *
+ * Lee el fichero por bloques sobre un único buffer de caracteres y, para cada línea,
+ * guarda solo las posiciones de inicio y fin de cada token. Los enteros, decimales y
+ * colores se interpretan directamente sobre el buffer, sin crear un String por token;
+ * solo se crean cadenas cuando hacen falta (etiquetas y mensajes del informe de validación).
+ *
+ * Reproduce exactamente el comportamiento de {@code trim()} + {@code split("\\s+")},
+ * {@code Integer.parseInt} y {@code Double.parseDouble}: los casos poco habituales
+ * (dígitos no ASCII, exponentes, NaN, hexadecimales...) se delegan en la API estándar.
+ */
+final class TxtTokenizer {
+
+    /** Potencias de 10 representables de forma exacta en un double. */
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader in;
+    /** Buffer de lectura; los datos válidos están entre pos y lim. */
+    char[] buf = new char[16 * 1024];
+    private int pos, lim;
+    private boolean eof, skipLF;
+
+    /** Límites de la línea actual dentro de buf. */
+    int lineStart, lineEnd;
+    /** Inicio y fin (exclusivo) de cada token de la línea actual. */
+    int[] ts = new int[16], te = new int[16];
+    /** Número de tokens de la línea actual. */
+    int n;
+
+    /** Resultado de la última conversión correcta con toInt. */
+    int intValue;
+    /** Resultado de la última conversión correcta con toDouble. */
+    double doubleValue;
+
+    TxtTokenizer(Reader in){ this.in = in; }
+
+    /** Crea un escáner sobre caracteres ya leídos (por ejemplo, un bloque del fichero ya decodificado). */
+    TxtTokenizer(char[] data, int len){ this.in = null; this.buf = data; this.lim = len; this.eof = true; }
+
+    /**
+     * Avanza a la siguiente línea. Acepta los mismos terminadores que BufferedReader.readLine
+     * (\n, \r y \r\n).
+     * @return false si no quedan líneas.
+     */
+    boolean nextLine() throws IOException {
+        if (skipLF) {
+            if (pos == lim && !eof) fill();
+            if (pos < lim && buf[pos] == '\n') pos++;
+            skipLF = false;
+        }
+        int i = pos;
+        for (;;) {
+            while (i < lim) {
+                char c = buf[i];
+                if (c == '\n' || c == '\r') {
+                    lineStart = pos; lineEnd = i; pos = i + 1; skipLF = c == '\r';
+                    return true;
+                }
+                i++;
+            }
+            if (eof) {
+                if (pos == lim) return false;
+                lineStart = pos; lineEnd = lim; pos = lim;
+                return true;
+            }
+            i -= pos;
+            fill();
+            i += pos;
+        }
+    }
+
+    // Compacta el buffer (o lo amplía si la línea no cabe) y lee más caracteres
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, lim - pos);
+            lim -= pos; pos = 0;
+        } else if (lim == buf.length) {
+            buf = java.util.Arrays.copyOf(buf, buf.length * 2);
+        }
+        int r = in.read(buf, lim, buf.length - lim);
+        if (r < 0) eof = true; else lim += r;
+    }
+
+    /**
+     * Divide la línea actual en tokens: recorta los extremos como trim() y separa
+     * por secuencias de espacios como split("\\s+").
+     */
+    void tokenize() {
+        int s = lineStart, e = lineEnd;
+        while (s < e && buf[s] <= ' ') s++;
+        while (e > s && buf[e - 1] <= ' ') e--;
+        n = 0;
+        int i = s;
+        while (i < e) {
+            int start = i;
+            while (i < e && !isSpace(buf[i])) i++;
+            if (n == ts.length) {
+                ts = java.util.Arrays.copyOf(ts, n * 2);
+                te = java.util.Arrays.copyOf(te, n * 2);
+            }
+            ts[n] = start; te[n] = i; n++;
+            while (i < e && isSpace(buf[i])) i++;
+        }
+    }
+
+    // Espacios de la clase \s de las expresiones regulares
+    private static boolean isSpace(char c){
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** @return true si la línea es un comentario (# tras recortar espacios). */
+    boolean isComment(){ return n > 0 && buf[ts[0]] == '#'; }
+
+    /** @return Texto del token k (crea un String). */
+    String text(int k){ return new String(buf, ts[k], te[k] - ts[k]); }
+
+    /** @return Texto desde el carácter from hasta el final del token k (crea un String). */
+    String text(int k, int from){ return new String(buf, from, te[k] - from); }
+
+    /** Compara el token k con una palabra ASCII en minúsculas sin distinguir mayúsculas. */
+    boolean equalsLower(int k, String lower){ return regionEqualsLower(ts[k], te[k], lower); }
+
+    /** Compara la región [s,e) con una palabra ASCII en minúsculas, como toLowerCase(Locale.ROOT). */
+    boolean regionEqualsLower(int s, int e, String lower){
+        if (e - s != lower.length()) return false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = buf[s + i];
+            if (c >= 'A' && c <= 'Z') c += 32;
+            else if (c == '\u212A') c = 'k';   // KELVIN SIGN pasa a 'k' en minúsculas
+            if (c != lower.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** @return true si la línea (recortada) empieza por la palabra indicada, sin distinguir mayúsculas. */
+    boolean startsWithLower(String lower){
+        return n > 0 && te[0] - ts[0] >= lower.length() && regionEqualsLower(ts[0], ts[0] + lower.length(), lower);
+    }
+
+    /** @return Posición del primer '=' del token k, o -1 si no tiene. */
+    int indexOf(int k, char ch){
+        for (int i = ts[k]; i < te[k]; i++) if (buf[i] == ch) return i;
+        return -1;
+    }
+
+    /** @return Color empaquetado del token k, o ColorRGB.INVALID si no es #RRGGBB. */
+    int color(int k){ return ColorRGB.parse(buf, ts[k], te[k]); }
+
+    /** @return Color empaquetado de la región [s,e), o ColorRGB.INVALID si no es #RRGGBB. */
+    int color(int s, int e){ return ColorRGB.parse(buf, s, e); }
+
+    /** @return true si el token k es un color #rrggbb que se puede empaquetar sin perder el texto (ver {@link ColorRGB#exacto(String)}), dado c = color(k). */
+    boolean colorExacto(int k, int c){ return ColorRGB.exacto(buf, ts[k], te[k], c); }
+
+    /** @return true si la región [s,e) es un color #rrggbb que se puede empaquetar sin perder el texto, dado c = color(s, e). */
+    boolean colorExacto(int s, int e, int c){ return ColorRGB.exacto(buf, s, e, c); }
+
+    /** @return true si la región [s,e) contiene exactamente el texto indicado. */
+    boolean regionEquals(int s, int e, String txt){
+        if (e - s != txt.length()) return false;
+        for (int i = 0; i < txt.length(); i++) if (buf[s + i] != txt.charAt(i)) return false;
+        return true;
+    }
+
+    /** Convierte el token k a entero. @return false si no es un entero válido. */
+    boolean toInt(int k){ return toInt(ts[k], te[k]); }
+
+    /** Convierte la región [s,e) a entero con la semántica de Integer.parseInt. */
+    boolean toInt(int s, int e){
+        int i = s;
+        boolean neg = false;
+        if (i < e && (buf[i] == '-' || buf[i] == '+')) { neg = buf[i] == '-'; i++; }
+        if (i == e) return false;
+        long v = 0;
+        for (; i < e; i++) {
+            char c = buf[i];
+            if (c < '0' || c > '9') return c < 128 ? false : toIntSlow(s, e);
+            v = v * 10 + (c - '0');
+            if (v > 2147483648L) return false;
+        }
+        if (neg) v = -v;
+        if (v > Integer.MAX_VALUE) return false;
+        intValue = (int) v;
+        return true;
+    }
+
+    // Caso general (dígitos Unicode): se delega en Integer.parseInt
+    private boolean toIntSlow(int s, int e){
+        try { intValue = Integer.parseInt(new String(buf, s, e - s)); return true; }
+        catch (NumberFormatException ex) { return false; }
+    }
+
+    /**
+     * Convierte la región [s,e) a double con la semántica de Double.parseDouble.
+     * Los decimales simples de hasta 15 cifras se calculan de forma exacta sobre el buffer.
+     */
+    boolean toDouble(int s, int e){
+        int i = s;
+        boolean neg = false;
+        if (i < e && (buf[i] == '-' || buf[i] == '+')) { neg = buf[i] == '-'; i++; }
+        long m = 0;
+        int digits = 0, frac = -1;
+        for (; i < e; i++) {
+            char c = buf[i];
+            if (c >= '0' && c <= '9') { m = m * 10 + (c - '0'); digits++; if (frac >= 0) frac++; }
+            else if (c == '.' && frac < 0) frac = 0;
+            else return toDoubleSlow(s, e);
+        }
+        if (digits == 0 || digits > 15) return toDoubleSlow(s, e);
+        double v = frac > 0 ? m / POW10[frac] : m;
+        doubleValue = neg ? -v : v;
+        return true;
+    }
+
+    // Caso general (exponentes, NaN, hexadecimales, sufijos...): se delega en Double.parseDouble
+    private boolean toDoubleSlow(int s, int e){
+        try { doubleValue = Double.parseDouble(new String(buf, s, e - s)); return true; }
+        catch (NumberFormatException ex) { return false; }
+    }
+}
@@ -1,5 +1,5 @@
 package es.ad.r1;
-import java.util.*; import java.util.stream.Collectors;
+import java.io.IOException; import java.io.UncheckedIOException; import java.util.*; import java.util.function.Consumer;
 
 /**
  * Clase que representa el informe de validación de una escena.
@@ -8,6 +8,11 @@ import java.util.*; import java.util.stream.Collectors;
  * o validación de los datos. Cada incidencia se almacena como un objeto Issue, indicando la línea,
  * el tipo (INFO, WARN, ERROR) y el mensaje descriptivo.
  * 
+ * En entradas con muchos errores el informe se puede acotar: solo se conservan (o se entregan al
+ * destino) las primeras incidencias y el resto se cuentan agrupadas por tipo de mensaje
+ * ("[ERROR] 123456 más de: No es entero válido"), sin construir su mensaje. Los contadores por
+ * severidad incluyen siempre todas las incidencias.
+ * 
  * Es utilizada por clases como TxtSceneIO y ParseResult para informar al usuario sobre problemas
  * en los datos importados, facilitando la depuración y la calidad del proyecto.
  */
@@ -21,6 +26,8 @@ public class ValidationReport {
         public final int line;
         public final String severity;
         public final String message;
+        /** Tipo del mensaje para agruparlo por encima del límite (null = el propio mensaje) */
+        final String tipo;
 
         /**
          * Constructor de Issue.
@@ -28,32 +35,212 @@ public class ValidationReport {
          * @param severity Severidad (INFO, WARN, ERROR).
          * @param message Mensaje descriptivo.
          */
-        public Issue(int line,String severity,String message){
-            this.line=line; this.severity=severity; this.message=message;
+        public Issue(int line,String severity,String message){ this(line,severity,message,null); }
+
+        Issue(int line,String severity,String message,String tipo){
+            this.line=line; this.severity=severity; this.message=message; this.tipo=tipo;
         }
 
         /** Devuelve la incidencia en formato texto. */
         public String toText(){
-            return String.format("[%s] línea %d: %s", severity, line, message);
+            return "["+severity+"] línea "+line+": "+message;
         }
     }
 
+    /** Tipos distintos que se agrupan como máximo (el resto cuentan como {@link #OTROS}) */
+    static final int MAX_TIPOS = 256;
+    /** Tipo de las incidencias agrupadas por encima de {@link #MAX_TIPOS} */
+    static final String OTROS = "otras incidencias";
+
     /** Lista de incidencias detectadas en la validación. */
     private final List<Issue> issues=new ArrayList<>();
+    /** Destino de las incidencias en modo streaming (null = se guardan en la lista). */
+    private final Consumer<Issue> sink;
+    /** Incidencias que se conservan o entregan como máximo (el resto se agrupan por tipo). */
+    private final int limite;
+    /** Número de errores, advertencias e incidencias informativas registradas (también en modo streaming). */
+    private int errors, warnings, infos;
+    /** Incidencias conservadas o entregadas al destino. */
+    private int retenidas;
+    /** Incidencias por encima del límite, por severidad y tipo (en orden de aparición). */
+    private final Map<String,int[]> omitidas=new LinkedHashMap<>();
+
+    /** Crea un informe que guarda las incidencias en memoria. */
+    public ValidationReport(){ this(Integer.MAX_VALUE); }
+
+    /**
+     * Crea un informe acotado en memoria: guarda las primeras incidencias y las demás solo se cuentan por tipo.
+     * @param limite Incidencias que se guardan como máximo.
+     */
+    public ValidationReport(int limite){ this(limite, (Consumer<Issue>) null); }
+
+    /**
+     * Crea un informe en modo streaming: cada incidencia se entrega al consumidor
+     * en cuanto se detecta y no se guarda en el informe (toText() solo incluye el resumen de {@link #writeResumen}).
+     * @param sink Consumidor de incidencias.
+     */
+    public ValidationReport(Consumer<Issue> sink){ this(Integer.MAX_VALUE, sink); }
+
+    /**
+     * Crea un informe acotado: las primeras incidencias se guardan (o se entregan al consumidor)
+     * y las demás solo se cuentan por tipo.
+     * @param limite Incidencias que se conservan como máximo.
+     * @param sink   Consumidor de incidencias (null = se guardan en memoria).
+     */
+    public ValidationReport(int limite, Consumer<Issue> sink){
+        if (limite<0) throw new IllegalArgumentException("Límite de incidencias negativo: "+limite);
+        this.limite=limite; this.sink=sink;
+    }
+
+    /**
+     * Crea un informe acotado que escribe cada incidencia conservada como una línea de texto
+     * en cuanto se detecta (p.ej. en el Writer de validacion.txt), sin guardarlas en memoria.
+     * Al terminar hay que llamar a {@link #writeResumen(Appendable)} con el mismo destino.
+     * Los errores de escritura se propagan como UncheckedIOException.
+     * @param limite Incidencias que se escriben como máximo.
+     * @param out    Destino del texto.
+     */
+    public ValidationReport(int limite, Appendable out){
+        this(limite, i -> {
+            try { out.append(i.toText()).append('\n'); }
+            catch (IOException ex) { throw new UncheckedIOException(ex); }
+        });
+    }
+
+    /** @return Incidencias que se conservan como máximo (Integer.MAX_VALUE si no hay límite). */
+    public int getLimite(){ return limite; }
 
     /** Añade una incidencia informativa. */
-    public void info(int line,String msg){ issues.add(new Issue(line,"INFO",msg)); }
+    public void info(int line,String msg){ if (cabe("INFO",null,msg)) add(new Issue(line,"INFO",msg)); }
     /** Añade una advertencia. */
-    public void warn(int line,String msg){ issues.add(new Issue(line,"WARN",msg)); }
+    public void warn(int line,String msg){ if (cabe("WARN",null,msg)) add(new Issue(line,"WARN",msg)); }
     /** Añade un error. */
-    public void error(int line,String msg){ issues.add(new Issue(line,"ERROR",msg)); }
+    public void error(int line,String msg){ if (cabe("ERROR",null,msg)) add(new Issue(line,"ERROR",msg)); }
+
+    /**
+     * Añade una advertencia con mensaje "tipo: detalle". Por encima del límite el mensaje
+     * no se construye y solo se cuenta el tipo.
+     */
+    public void warn(int line,String tipo,String detalle){ if (cabe("WARN",tipo,null)) add(new Issue(line,"WARN",tipo+": "+detalle,tipo)); }
+    /**
+     * Añade un error con mensaje "tipo: detalle". Por encima del límite el mensaje
+     * no se construye y solo se cuenta el tipo.
+     */
+    public void error(int line,String tipo,String detalle){ if (cabe("ERROR",tipo,null)) add(new Issue(line,"ERROR",tipo+": "+detalle,tipo)); }
+
+    /**
+     * Añade una advertencia con mensaje "columna N: tipo: detalle" (o "columna N: tipo" si detalle es null).
+     * Por encima del límite el mensaje no se construye y solo se cuenta el tipo.
+     */
+    public void warn(int line,int columna,String tipo,String detalle){ if (cabe("WARN",tipo,null)) add(new Issue(line,"WARN",mensaje(columna,tipo,detalle),tipo)); }
+    /**
+     * Añade un error con mensaje "columna N: tipo: detalle" (o "columna N: tipo" si detalle es null).
+     * Por encima del límite el mensaje no se construye y solo se cuenta el tipo.
+     */
+    public void error(int line,int columna,String tipo,String detalle){ if (cabe("ERROR",tipo,null)) add(new Issue(line,"ERROR",mensaje(columna,tipo,detalle),tipo)); }
+
+    private static String mensaje(int columna,String tipo,String detalle){
+        return "columna "+columna+": "+tipo+(detalle==null? "" : ": "+detalle);
+    }
+
+    /**
+     * Añade las incidencias de otro informe desplazando sus números de línea.
+     * Se usa al unir los informes parciales del parseo por bloques.
+     * @param other Informe parcial (en memoria).
+     * @param lineOffset Número de líneas que preceden al bloque del informe parcial.
+     */
+    void merge(ValidationReport other,int lineOffset){
+        for (Issue i: other.issues) add(i,lineOffset);
+        for (Map.Entry<String,int[]> o: other.omitidas.entrySet()) {
+            String k=o.getKey(); int sep=k.indexOf(' ');
+            contar(k.substring(0,sep), k.substring(sep+1), o.getValue()[0]);
+        }
+    }
+
+    /** Añade una incidencia ya creada desplazando su número de línea. */
+    void add(Issue i,int lineOffset){
+        if (cabe(i.severity,i.tipo,i.message)) add(lineOffset==0? i : new Issue(i.line+lineOffset,i.severity,i.message,i.tipo));
+    }
+
+    /** @return Incidencias guardadas en el informe (vacía en modo streaming). */
+    List<Issue> issues(){ return Collections.unmodifiableList(issues); }
+
+    // Cuenta la incidencia; devuelve false si supera el límite (queda agrupada por tipo y no se guarda)
+    private boolean cabe(String severity,String tipo,String msg){
+        if (retenidas<limite) { retenidas++; return true; }
+        contar(severity, tipo!=null? tipo : tipo(msg), 1);
+        return false;
+    }
+
+    // Guarda la incidencia o la entrega al consumidor en modo streaming
+    private void add(Issue i){
+        severidad(i.severity, 1);
+        if (sink!=null) sink.accept(i); else issues.add(i);
+    }
+
+    // Suma n incidencias omitidas de un tipo
+    private void contar(String severity,String tipo,int n){
+        severidad(severity, n);
+        String k=severity+" "+tipo;
+        int[] c=omitidas.get(k);
+        if (c==null) {
+            if (omitidas.size()>=MAX_TIPOS) { k=severity+" "+OTROS; c=omitidas.get(k); }
+            if (c==null) omitidas.put(k, c=new int[1]);
+        }
+        c[0]+=n;
+    }
+
+    private void severidad(String severity,int n){
+        if ("ERROR".equals(severity)) errors+=n; else if ("WARN".equals(severity)) warnings+=n; else infos+=n;
+    }
+
+    // Tipo de un mensaje completo: el propio mensaje sin el prefijo "columna N: " de los mensajes de JSON
+    static String tipo(String msg){
+        int c=msg.startsWith("columna ")? msg.indexOf(": ") : -1;
+        return c<0? msg : msg.substring(c+2);
+    }
 
     /** Indica si hay errores en el informe. */
-    public boolean hasErrors(){ return issues.stream().anyMatch(i->i.severity.equals("ERROR")); }
+    public boolean hasErrors(){ return errors>0; }
+
+    /** @return Número de errores registrados. */
+    public int getErrors(){ return errors; }
+    /** @return Número de advertencias registradas. */
+    public int getWarnings(){ return warnings; }
+    /** @return Número de incidencias informativas registradas. */
+    public int getInfos(){ return infos; }
+    /** @return Número de incidencias que han superado el límite (solo contadas por tipo). */
+    public int getOmitidas(){ return errors+warnings+infos-retenidas; }
 
     /** Devuelve el informe en formato texto plano. */
     public String toText(){
-        return issues.isEmpty()? "Sin incidencias. Formato correcto.\n"
-            : issues.stream().map(Issue::toText).collect(Collectors.joining("\n"))+"\n";
+        StringBuilder sb=new StringBuilder();
+        try { writeTo(sb); } catch (IOException ex) { throw new UncheckedIOException(ex); }
+        return sb.toString();
+    }
+
+    /**
+     * Escribe el informe en formato texto (una incidencia por línea) sin construirlo entero en memoria.
+     * @param out Destino del texto.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (Issue i: issues) out.append(i.toText()).append('\n');
+        writeResumen(out);
+    }
+
+    /**
+     * Escribe el final del informe: una línea por cada tipo de incidencia que ha superado el límite
+     * o, si no ha habido ninguna incidencia, "Sin incidencias. Formato correcto.". En modo streaming
+     * es lo único que falta por escribir tras las incidencias entregadas.
+     * @param out Destino del texto.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public void writeResumen(Appendable out) throws IOException {
+        if (issues.isEmpty() && retenidas==0 && omitidas.isEmpty()) { out.append("Sin incidencias. Formato correcto.\n"); return; }
+        for (Map.Entry<String,int[]> o: omitidas.entrySet()) {
+            String k=o.getKey(); int sep=k.indexOf(' ');
+            out.append('[').append(k, 0, sep).append("] ").append(String.valueOf(o.getValue()[0])).append(" más de: ").append(k, sep+1, k.length()).append('\n');
+        }
     }
 }